@@ -0,0 +1,89 @@
+package com.inomera.ssl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a trust decision of {@link CompositeX509TrustManager} depending on the number of delegates and
+ * on which delegate, if any, anchors the presented chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompositeTrustManagerBenchmark {
+
+    public enum Anchor {
+        FIRST, LAST, UNTRUSTED
+    }
+
+    @Param({"1", "4", "8"})
+    public int delegates;
+
+    @Param({"FIRST", "LAST", "UNTRUSTED"})
+    public Anchor anchor;
+
+    private CompositeX509TrustManager trustManager;
+    private X509Certificate[] chain;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final CertificateGenerator.Issued[] authorities = new CertificateGenerator.Issued[delegates];
+        final X509TrustManager[] trustManagers = new X509TrustManager[delegates];
+        for (int i = 0; i < delegates; i++) {
+            authorities[i] = CertificateGenerator.ca("Benchmark CA " + i);
+            trustManagers[i] = trustManager(authorities[i].certificate);
+        }
+        final CertificateGenerator.Issued root;
+        switch (anchor) {
+            case FIRST:
+                root = authorities[0];
+                break;
+            case LAST:
+                root = authorities[delegates - 1];
+                break;
+            default:
+                root = CertificateGenerator.ca("Untrusted CA");
+                break;
+        }
+        final CertificateGenerator.Issued intermediate = CertificateGenerator.intermediate("Benchmark Intermediate", root);
+        final CertificateGenerator.Issued leaf = CertificateGenerator.leaf("localhost", intermediate, "localhost");
+        // peers send the chain without the root
+        this.chain = new X509Certificate[]{leaf.certificate, intermediate.certificate};
+        this.trustManager = new CompositeX509TrustManager(null, trustManagers);
+    }
+
+    @Benchmark
+    public X509Certificate[] checkServerTrusted() {
+        trustManager.checkServerTrusted(chain, "ECDHE_ECDSA");
+        return chain;
+    }
+
+    @Benchmark
+    public X509Certificate[] checkClientTrusted() {
+        trustManager.checkClientTrusted(chain, "EC");
+        return chain;
+    }
+
+    @Benchmark
+    public X509Certificate[] getAcceptedIssuers() {
+        return trustManager.getAcceptedIssuers();
+    }
+
+    static X509TrustManager trustManager(final X509Certificate... anchors) throws GeneralSecurityException {
+        final TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(CertificateGenerator.trustStore(anchors));
+        return (X509TrustManager) factory.getTrustManagers()[0];
+    }
+}
@@ -0,0 +1,409 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handshake load test of an {@code SSLContext} built by {@link MultiTrustSSLContextBuilder}, over loopback
+ * sockets with certificates generated in memory.
+ * <p>
+ * The server requires client authentication and validates client chains with a composite of one trust store
+ * per delegate; the trusted client chain is anchored by the last of them. A share of the clients presents a
+ * chain of an unknown authority, which the trust manager strategy rejects. For each combination of thread
+ * kind, handshake kind, delegate count, failure share and concurrency the test reports handshakes per second,
+ * latency percentiles and the allocation rate:
+ * <pre>
+ * ./gradlew handshakeLoadTest -PloadTestArgs="seconds=5 concurrency=1,8,64 delegates=1,8 failures=0,20"
+ * </pre>
+ * Arguments are {@code name=value} pairs: {@code seconds} and {@code warmup} per run, comma-separated lists of
+ * {@code concurrency}, {@code delegates}, {@code failures} (percent), {@code threads} ({@code platform},
+ * {@code virtual}) and {@code handshakes} ({@code full}, {@code resumed}). Virtual threads are skipped on
+ * runtimes without them.
+ */
+public final class HandshakeLoadTest {
+
+    private static final char[] PASSWORD = "load-test".toCharArray();
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private final int seconds;
+    private final int warmupSeconds;
+
+    private HandshakeLoadTest(final int seconds, final int warmupSeconds) {
+        this.seconds = seconds;
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new LinkedHashMap<String, String>();
+        options.put("seconds", "5");
+        options.put("warmup", "2");
+        options.put("concurrency", "1,8,64");
+        options.put("delegates", "1,8");
+        options.put("failures", "0,20");
+        options.put("threads", "platform,virtual");
+        options.put("handshakes", "full,resumed");
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0 || !options.containsKey(arg.substring(0, separator))) {
+                System.err.println("Unknown argument " + arg + ", expected one of " + options.keySet() + " as name=value");
+                System.exit(2);
+                return;
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        final HandshakeLoadTest test = new HandshakeLoadTest(Integer.parseInt(options.get("seconds")),
+            Integer.parseInt(options.get("warmup")));
+        System.out.printf(Locale.ROOT, "%-8s %-7s %9s %8s %11s %12s %8s %9s %9s %11s %12s%n", "threads", "mode",
+            "delegates", "failures", "concurrency", "handshakes/s", "failed", "p50 ms", "p99 ms", "alloc MB/s",
+            "KB/handshake");
+        for (final String threads : list(options.get("threads"))) {
+            if ("virtual".equals(threads) && !virtualThreadsAvailable()) {
+                System.out.println("Virtual threads are not available on this runtime, skipping them");
+                continue;
+            }
+            for (final String mode : list(options.get("handshakes"))) {
+                for (final String delegates : list(options.get("delegates"))) {
+                    for (final String failures : list(options.get("failures"))) {
+                        try (Server server = Server.start(Integer.parseInt(delegates))) {
+                            for (final String concurrency : list(options.get("concurrency"))) {
+                                test.run(server, threads, "resumed".equals(mode), Integer.parseInt(failures),
+                                    Integer.parseInt(concurrency));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void run(final Server server, final String threads, final boolean resumed, final int failurePercent,
+                     final int concurrency) throws Exception {
+        final Clients clients = server.clients();
+        final ExecutorService executor = "virtual".equals(threads)
+            ? DefaultExecutors.newVirtualThreadPerTaskExecutor("load-client")
+            : Executors.newFixedThreadPool(concurrency, DefaultExecutors.daemonThreadFactory("load-client"));
+        try {
+            drive(executor, clients, server, resumed, failurePercent, concurrency, warmupSeconds, new Result());
+            final Result result = new Result();
+            final long allocatedBefore = allocatedBytes();
+            final long start = System.nanoTime();
+            drive(executor, clients, server, resumed, failurePercent, concurrency, seconds, result);
+            final double elapsed = (System.nanoTime() - start) / 1e9;
+            final long allocated = allocatedBytes() - allocatedBefore;
+            final long handshakes = result.latency.getCount();
+            System.out.printf(Locale.ROOT, "%-8s %-7s %9d %7d%% %11d %12.1f %8d %9.2f %9.2f %11s %12s%n", threads,
+                resumed ? "resumed" : "full", server.delegates, failurePercent, concurrency, handshakes / elapsed,
+                result.failed.sum(), result.latency.getPercentileNanos(50) / 1e6, result.latency.getPercentileNanos(99) / 1e6,
+                allocatedBefore < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f", allocated / elapsed / (1 << 20)),
+                allocatedBefore < 0 || handshakes == 0 ? "n/a" : String.format(Locale.ROOT, "%.1f", allocated / 1024.0 / handshakes));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void drive(final ExecutorService executor, final Clients clients, final Server server,
+                              final boolean resumed, final int failurePercent, final int concurrency, final int seconds,
+                              final Result result) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final List<Future<?>> workers = new ArrayList<Future<?>>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(executor.submit(() -> {
+                while (System.nanoTime() - deadline < 0) {
+                    final boolean trusted = ThreadLocalRandom.current().nextInt(100) >= failurePercent;
+                    final long start = System.nanoTime();
+                    final boolean completed = handshake(trusted ? clients.trusted : clients.untrusted, server.port, resumed);
+                    result.latency.record(System.nanoTime() - start);
+                    if (!completed) {
+                        result.failed.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (final Future<?> worker : workers) {
+            worker.get();
+        }
+    }
+
+    /**
+     * Connects, completes the handshake and exchanges one byte, so the server has validated the client chain
+     * by the time this returns. A full handshake invalidates the session to keep it from being resumed.
+     */
+    private static boolean handshake(final SSLSocketFactory factory, final int port, final boolean resumed) {
+        try (SSLSocket socket = (SSLSocket) factory.createSocket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.startHandshake();
+            final OutputStream out = socket.getOutputStream();
+            out.write(1);
+            out.flush();
+            final boolean completed = socket.getInputStream().read() == 1;
+            if (!resumed) {
+                socket.getSession().invalidate();
+            }
+            return completed;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by all threads so far, or -1 if the runtime does not measure them. The total
+     * including terminated threads is only available from Java 21, so on older runtimes the live threads are
+     * summed, which misses the connection threads that have ended.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1L;
+        }
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return -1L;
+        }
+        try {
+            final Method total = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+            return (Long) total.invoke(allocations);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            long sum = 0;
+            for (final long allocated : allocations.getThreadAllocatedBytes(allocations.getAllThreadIds())) {
+                sum += Math.max(allocated, 0L);
+            }
+            return sum;
+        }
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static String[] list(final String value) {
+        return value.split(",");
+    }
+
+    private static final class Result {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failed = new LongAdder();
+    }
+
+    /**
+     * Socket factories of clients presenting a trusted and an untrusted chain, each with its own session cache.
+     */
+    private static final class Clients {
+
+        private final SSLSocketFactory trusted;
+        private final SSLSocketFactory untrusted;
+
+        private Clients(final SSLSocketFactory trusted, final SSLSocketFactory untrusted) {
+            this.trusted = trusted;
+            this.untrusted = untrusted;
+        }
+    }
+
+    /**
+     * Loopback TLS server echoing one byte per connection, its context built by {@link MultiTrustSSLContextBuilder}.
+     */
+    private static final class Server implements AutoCloseable {
+
+        private final int delegates;
+        private final int port;
+        private final SSLServerSocket serverSocket;
+        private final ExecutorService connections;
+        private final CertificateGenerator.Issued serverAuthority;
+        private final CertificateGenerator.Issued clientAuthority;
+
+        private Server(final int delegates, final SSLServerSocket serverSocket, final CertificateGenerator.Issued serverAuthority,
+                       final CertificateGenerator.Issued clientAuthority) {
+            this.delegates = delegates;
+            this.serverSocket = serverSocket;
+            this.port = serverSocket.getLocalPort();
+            this.serverAuthority = serverAuthority;
+            this.clientAuthority = clientAuthority;
+            this.connections = DefaultExecutors.newVirtualThreadPerTaskExecutor("load-server");
+            final Thread acceptor = DefaultExecutors.daemonThreadFactory("load-acceptor").newThread(this::accept);
+            acceptor.start();
+        }
+
+        static Server start(final int delegates) throws Exception {
+            final CertificateGenerator.Issued serverAuthority = CertificateGenerator.ca("Load Test Server CA");
+            final CertificateGenerator.Issued server = CertificateGenerator.leaf("localhost", serverAuthority, "localhost");
+            final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+                .setTrustManagerStrategy(new RejectingStrategy())
+                .setFailureLogInterval(Duration.ofSeconds(10))
+                .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, server), PASSWORD);
+            CertificateGenerator.Issued clientAuthority = null;
+            for (int i = 0; i < delegates; i++) {
+                clientAuthority = CertificateGenerator.ca("Load Test Client CA " + i);
+                builder.loadTrustMaterial(CertificateGenerator.trustStore(clientAuthority.certificate), null);
+            }
+            final SSLServerSocket serverSocket = (SSLServerSocket) builder.build().getServerSocketFactory().createServerSocket();
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+            serverSocket.setNeedClientAuth(true);
+            return new Server(delegates, serverSocket, serverAuthority, clientAuthority);
+        }
+
+        /**
+         * Returns new clients, so runs do not resume sessions of previous ones.
+         */
+        Clients clients() throws GeneralSecurityException {
+            final CertificateGenerator.Issued intermediate = CertificateGenerator.intermediate("Load Test Intermediate", clientAuthority);
+            final CertificateGenerator.Issued trusted = CertificateGenerator.leaf("trusted-client", intermediate);
+            final CertificateGenerator.Issued unknownAuthority = CertificateGenerator.ca("Unknown CA");
+            final CertificateGenerator.Issued untrusted = CertificateGenerator.leaf("untrusted-client", unknownAuthority);
+            return new Clients(clientContext(trusted).getSocketFactory(), clientContext(untrusted).getSocketFactory());
+        }
+
+        private SSLContext clientContext(final CertificateGenerator.Issued client) throws GeneralSecurityException {
+            // peers send the chain without the root
+            final KeyStore keyStore = CertificateGenerator.keyStore(PASSWORD);
+            keyStore.setKeyEntry("client", client.keyPair.getPrivate(), PASSWORD,
+                Arrays.copyOf(client.chain, client.chain.length - 1));
+            final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, PASSWORD);
+            final TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init(CertificateGenerator.trustStore(serverAuthority.certificate));
+            final SSLContext context = SSLContext.getInstance("TLS");
+            context.init(new KeyManager[]{new AnyIssuerKeyManager((X509ExtendedKeyManager) keyManagers.getKeyManagers()[0])},
+                trustManagers.getTrustManagers(), null);
+            return context;
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    connections.execute(() -> echo((SSLSocket) socket));
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private static void echo(final SSLSocket socket) {
+            try (SSLSocket connection = socket) {
+                connection.setSoTimeout(TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                connection.startHandshake();
+                final InputStream in = connection.getInputStream();
+                final int value = in.read();
+                if (value >= 0) {
+                    connection.getOutputStream().write(value);
+                    connection.getOutputStream().flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                // reported by the client
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            connections.shutdownNow();
+        }
+    }
+
+    /**
+     * Offers the client certificate whatever authorities the server asks for. The JDK key managers only offer a
+     * certificate issued by one of them, so an untrusted client would send an empty chain and fail before the
+     * server's trust manager sees it.
+     */
+    private static final class AnyIssuerKeyManager extends X509ExtendedKeyManager {
+
+        private final X509ExtendedKeyManager keyManager;
+
+        private AnyIssuerKeyManager(final X509ExtendedKeyManager keyManager) {
+            this.keyManager = keyManager;
+        }
+
+        @Override
+        public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+            return keyManager.getClientAliases(keyType, null);
+        }
+
+        @Override
+        public String chooseClientAlias(final String[] keyType, final Principal[] issuers, final Socket socket) {
+            return keyManager.chooseClientAlias(keyType, null, socket);
+        }
+
+        @Override
+        public String chooseEngineClientAlias(final String[] keyType, final Principal[] issuers, final SSLEngine engine) {
+            return keyManager.chooseEngineClientAlias(keyType, null, engine);
+        }
+
+        @Override
+        public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+            return keyManager.getServerAliases(keyType, issuers);
+        }
+
+        @Override
+        public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+            return keyManager.chooseServerAlias(keyType, issuers, socket);
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(final String alias) {
+            return keyManager.getCertificateChain(alias);
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(final String alias) {
+            return keyManager.getPrivateKey(alias);
+        }
+    }
+
+    /**
+     * Fails the handshake of untrusted clients; the default strategy only logs.
+     */
+    private static final class RejectingStrategy implements TrustManagerStrategy {
+
+        @Override
+        public void onClientTrustFailure(final X509Certificate[] chain, final String authType) {
+            throw new IllegalStateException("Client certificate is not trusted");
+        }
+
+        @Override
+        public void onServerTrustFailure(final X509Certificate[] chain, final String authType) {
+            throw new IllegalStateException("Server certificate is not trusted");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.inomera.ssl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of server alias selection through {@link MultiTrustSSLContextBuilder.KeyManagerDelegate} depending on
+ * the number of key entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyManagerDelegateBenchmark {
+
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+
+    @Param({"1", "10", "100"})
+    public int aliases;
+
+    private MultiTrustSSLContextBuilder.KeyManagerDelegate keyManager;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final CertificateGenerator.Issued authority = CertificateGenerator.ca("Benchmark CA");
+        final CertificateGenerator.Issued[] entries = new CertificateGenerator.Issued[aliases];
+        for (int i = 0; i < aliases; i++) {
+            entries[i] = CertificateGenerator.leaf("tenant-" + i + ".example.com", authority, "tenant-" + i + ".example.com");
+        }
+        final KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(CertificateGenerator.keyStore(PASSWORD, entries), PASSWORD);
+        this.keyManager = new MultiTrustSSLContextBuilder.KeyManagerDelegate(
+            (X509ExtendedKeyManager) factory.getKeyManagers()[0],
+            (candidates, socket) -> candidates.keySet().iterator().next());
+    }
+
+    @Benchmark
+    public String chooseServerAlias() {
+        return keyManager.chooseServerAlias("EC", null, null);
+    }
+
+    @Benchmark
+    public String chooseEngineServerAlias() {
+        return keyManager.chooseEngineServerAlias("EC", null, null);
+    }
+}
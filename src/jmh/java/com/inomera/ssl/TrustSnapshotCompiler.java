@@ -0,0 +1,53 @@
+package com.inomera.ssl;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Compiles a {@link TrustSnapshot} from the command line:
+ * <pre>
+ * ./gradlew compileTrustSnapshot -PsnapshotArgs="[-storetype TYPE] [-storepass PASSWORD] OUTPUT INPUT..."
+ * </pre>
+ * where each input is a key store file, a PEM bundle or a directory of PEM files. Options apply to the key store
+ * inputs following them.
+ */
+public final class TrustSnapshotCompiler {
+
+    private TrustSnapshotCompiler() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create();
+        char[] storePassword = null;
+        Path output = null;
+        int inputs = 0;
+        for (int i = 0; i < args.length; i++) {
+            if ("-storetype".equals(args[i]) && i + 1 < args.length) {
+                builder.setKeyStoreType(args[++i]);
+            } else if ("-storepass".equals(args[i]) && i + 1 < args.length) {
+                storePassword = args[++i].toCharArray();
+            } else if (output == null) {
+                output = Path.of(args[i]);
+            } else {
+                final Path input = Path.of(args[i]);
+                final String name = input.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (Files.isDirectory(input) || name.endsWith(".pem") || name.endsWith(".crt") || name.endsWith(".cer")) {
+                    builder.loadPemTrustMaterial(input);
+                } else {
+                    builder.loadTrustMaterial(new File(args[i]), storePassword);
+                }
+                inputs++;
+            }
+        }
+        if (output == null || inputs == 0) {
+            System.err.println("Usage: " + TrustSnapshotCompiler.class.getSimpleName()
+                               + " [-storetype TYPE] [-storepass PASSWORD] OUTPUT INPUT...");
+            System.exit(2);
+            return;
+        }
+        TrustSnapshot.compile(builder, output);
+        System.out.println("Wrote " + TrustSnapshot.open(output).size() + " trust anchors to " + output);
+    }
+}
@@ -0,0 +1,308 @@
+package com.inomera.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trust manager strategy handing trust failures to a {@link BatchTrustManagerStrategy} on a background thread.
+ * <p>
+ * The handshake thread only copies the failure into a bounded, lock-free ring buffer; a single dispatcher thread
+ * drains the buffer and delivers the failures in batches, so a slow audit sink does not stall handshakes. When
+ * the buffer is full the {@link OverflowPolicy} applies. Whether the handshake fails is still decided on the
+ * handshake thread, by the optional synchronous strategy the failure is passed on to after it was recorded.
+ */
+public class AsyncTrustManagerStrategy implements TrustManagerStrategy, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncTrustManagerStrategy.class);
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * What to do with a failure when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the failure and count it, see {@link #getDroppedCount()}.
+         */
+        DROP,
+        /**
+         * Deliver the failure as a batch of one on the handshake thread. The batch strategy may then be called
+         * concurrently and must be thread-safe.
+         */
+        CALLER_RUNS
+    }
+
+    private final BatchTrustManagerStrategy batchStrategy;
+    private final TrustManagerStrategy decision;
+    private final OverflowPolicy overflowPolicy;
+    private final EventRing ring;
+    private final Thread dispatcher;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    /**
+     * Producers between their check of {@code closed} and the end of their offer to the ring.
+     */
+    private final AtomicInteger publishing = new AtomicInteger();
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    /**
+     * Creates a strategy that records failures without failing the handshake.
+     *
+     * @see #AsyncTrustManagerStrategy(BatchTrustManagerStrategy, int, OverflowPolicy, TrustManagerStrategy)
+     */
+    public AsyncTrustManagerStrategy(final BatchTrustManagerStrategy batchStrategy, final int capacity,
+                                     final OverflowPolicy overflowPolicy) {
+        this(batchStrategy, capacity, overflowPolicy, null);
+    }
+
+    /**
+     * Creates a strategy and starts its dispatcher thread.
+     *
+     * @param batchStrategy  the strategy receiving the failures in batches
+     * @param capacity       the number of failures the buffer holds, rounded up to a power of two of at least 2
+     * @param overflowPolicy what to do with a failure when the buffer is full
+     * @param decision       the strategy called synchronously after a failure was recorded, e.g. to fail the
+     *                       handshake, or {@code null}
+     */
+    public AsyncTrustManagerStrategy(final BatchTrustManagerStrategy batchStrategy, final int capacity,
+                                     final OverflowPolicy overflowPolicy, final TrustManagerStrategy decision) {
+        if (batchStrategy == null) {
+            throw new IllegalArgumentException("Batch strategy must not be null");
+        }
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("Overflow policy must not be null");
+        }
+        this.batchStrategy = batchStrategy;
+        this.decision = decision;
+        this.overflowPolicy = overflowPolicy;
+        this.ring = new EventRing(capacity);
+        this.dispatcher = DefaultExecutors.daemonThreadFactory("ssl-forge-trust-events").newThread(this::dispatch);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void onClientTrustFailure(final X509Certificate[] chain, final String authType) {
+        onClientTrustFailure(chain, authType, 1);
+    }
+
+    @Override
+    public void onServerTrustFailure(final X509Certificate[] chain, final String authType) {
+        onServerTrustFailure(chain, authType, 1);
+    }
+
+    @Override
+    public void onClientTrustFailure(final X509Certificate[] chain, final String authType, final int rejectCount) {
+        publish(true, chain, authType, rejectCount);
+        if (decision != null) {
+            decision.onClientTrustFailure(chain, authType, rejectCount);
+        }
+    }
+
+    @Override
+    public void onServerTrustFailure(final X509Certificate[] chain, final String authType, final int rejectCount) {
+        publish(false, chain, authType, rejectCount);
+        if (decision != null) {
+            decision.onServerTrustFailure(chain, authType, rejectCount);
+        }
+    }
+
+    private void publish(final boolean client, final X509Certificate[] chain, final String authType, final int rejectCount) {
+        final TrustFailureEvent event = new TrustFailureEvent(System.currentTimeMillis(), client,
+            chain != null ? chain.clone() : new X509Certificate[0], authType, rejectCount);
+        final boolean open;
+        final boolean offered;
+        publishing.incrementAndGet();
+        try {
+            open = !closed;
+            offered = open && ring.offer(event);
+        } finally {
+            publishing.decrementAndGet();
+        }
+        if (offered) {
+            if (idle) {
+                LockSupport.unpark(dispatcher);
+            }
+        } else if (!open) {
+            dropped.increment();
+        } else if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+            deliver(List.of(event));
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private void dispatch() {
+        final List<TrustFailureEvent> batch = new ArrayList<TrustFailureEvent>(MAX_BATCH_SIZE);
+        while (true) {
+            if (ring.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                deliver(List.copyOf(batch));
+                batch.clear();
+            } else if (closed) {
+                dropLeftovers(batch);
+                return;
+            } else {
+                idle = true;
+                if (ring.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+    }
+
+    /**
+     * Counts the failures published by producers that passed the {@code closed} check before close() but offered
+     * their failure only after the last drain as dropped, so no failure goes unaccounted.
+     */
+    private void dropLeftovers(final List<TrustFailureEvent> batch) {
+        while (publishing.get() != 0) {
+            Thread.onSpinWait();
+        }
+        while (ring.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+            dropped.add(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void deliver(final List<TrustFailureEvent> batch) {
+        try {
+            batchStrategy.onTrustFailures(batch);
+            delivered.add(batch.size());
+        } catch (RuntimeException e) {
+            LOG.warn("Could not deliver {} trust failures", batch.size(), e);
+        }
+    }
+
+    /**
+     * Returns the number of failures discarded because the buffer was full or the strategy closed.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of failures handed to the batch strategy without an exception.
+     */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * Delivers the failures still buffered and stops the dispatcher thread. Failures reported afterwards, or
+     * concurrently and buffered only after the final delivery, are dropped; the synchronous strategy is still
+     * called.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        if (Thread.currentThread() != dispatcher) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[batchStrategy=" + batchStrategy + ", capacity=" + ring.capacity() + ", overflowPolicy=" + overflowPolicy
+               + ", delivered=" + getDeliveredCount() + ", dropped=" + getDroppedCount() + "]";
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring. Each slot carries a sequence number telling producers and
+     * the consumer whose turn it is: {@code position} when free for the producer claiming that position,
+     * {@code position + 1} once the event is published.
+     */
+    private static final class EventRing {
+
+        private final int mask;
+        private final AtomicReferenceArray<TrustFailureEvent> events;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        private EventRing(final int capacity) {
+            // With a single slot the published sequence of one lap would be the free sequence of the next
+            int size = 2;
+            while (size < capacity) {
+                size <<= 1;
+            }
+            this.mask = size - 1;
+            this.events = new AtomicReferenceArray<TrustFailureEvent>(size);
+            this.sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private boolean offer(final TrustFailureEvent event) {
+            long position = tail.get();
+            while (true) {
+                final int index = (int) position & mask;
+                final long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        events.lazySet(index, event);
+                        sequences.lazySet(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        /**
+         * Moves up to {@code max} published events to the batch. Only called by the dispatcher thread.
+         */
+        private int drainTo(final List<TrustFailureEvent> batch, final int max) {
+            int count = 0;
+            while (count < max) {
+                final int index = (int) head & mask;
+                if (sequences.get(index) != head + 1) {
+                    break;
+                }
+                batch.add(events.get(index));
+                events.lazySet(index, null);
+                sequences.lazySet(index, head + mask + 1);
+                head++;
+                count++;
+            }
+            return count;
+        }
+
+        private boolean isEmpty() {
+            return sequences.get((int) head & mask) != head + 1;
+        }
+    }
+}
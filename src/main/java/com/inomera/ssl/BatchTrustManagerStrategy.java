@@ -0,0 +1,17 @@
+package com.inomera.ssl;
+
+import java.util.List;
+
+/**
+ * Receives trust failures in batches, off the handshake thread, from an {@link AsyncTrustManagerStrategy}.
+ */
+public interface BatchTrustManagerStrategy {
+
+    /**
+     * Called with the trust failures recorded since the previous call, oldest first. Exceptions are logged and
+     * do not stop the delivery of later batches.
+     *
+     * @param failures the trust failures, never empty
+     */
+    void onTrustFailures(List<TrustFailureEvent> failures);
+}
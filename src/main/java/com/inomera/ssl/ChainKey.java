@@ -0,0 +1,70 @@
+package com.inomera.ssl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Cache key identifying a certificate chain together with the parameters it was validated for.
+ */
+final class ChainKey {
+
+    private final byte[] digest;
+    private final int hash;
+
+    private ChainKey(final byte[] digest) {
+        this.digest = digest;
+        this.hash = Arrays.hashCode(digest);
+    }
+
+    /**
+     * Computes the key of a chain.
+     *
+     * @param chain    the certificate chain
+     * @param authType the authentication type
+     * @param client   whether the chain was presented by a client
+     * @param peer     the connection the verdict is bound to, {@code null} if not bound to a connection
+     * @return the key, or {@code null} if the chain cannot be fingerprinted
+     */
+    static ChainKey of(final X509Certificate[] chain, final String authType, final boolean client, final String peer) {
+        if (chain == null || chain.length == 0) {
+            return null;
+        }
+        final MessageDigest digest = Fingerprints.sha256();
+        try {
+            for (final X509Certificate certificate : chain) {
+                digest.update(certificate.getEncoded());
+            }
+        } catch (CertificateEncodingException e) {
+            return null;
+        }
+        digest.update((byte) (client ? 1 : 0));
+        if (authType != null) {
+            digest.update(authType.getBytes(StandardCharsets.UTF_8));
+        }
+        if (peer != null) {
+            digest.update((byte) 0);
+            digest.update(peer.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ChainKey(digest.digest());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChainKey)) {
+            return false;
+        }
+        final ChainKey other = (ChainKey) o;
+        return hash == other.hash && Arrays.equals(digest, other.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
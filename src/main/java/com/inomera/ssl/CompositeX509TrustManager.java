@@ -3,43 +3,320 @@ package com.inomera.ssl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
 import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
-public class CompositeX509TrustManager implements X509TrustManager {
+/**
+ * Trust manager accepting a chain when any of its delegates trusts it.
+ * <p>
+ * The composite is an {@link X509ExtendedTrustManager}, so JSSE hands it the socket or engine of the handshake.
+ * Delegates that are extended trust managers as well receive the connection-aware calls and apply endpoint
+ * identification and algorithm constraints in the same validation pass; plain delegates are called without
+ * the connection, and the composite applies those checks to their verdict itself.
+ */
+public class CompositeX509TrustManager extends X509ExtendedTrustManager {
     private static final Logger LOG = LoggerFactory.getLogger(CompositeX509TrustManager.class);
+    /**
+     * Generations of trust material, unique across composites, as caches may be shared between them.
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
 
-    private final X509TrustManager[] trustManagers;
     private final TrustManagerStrategy strategy;
+    private volatile Delegates delegates;
+    private TrustVerdictCache verdictCache;
+    private TrustRejectionCache rejectionCache;
+    private TrustPathCache pathCache;
+    private SpkiPinSet spkiPins;
+    private boolean strictPinning;
+    private FailureLog clientFailureLog = new FailureLog("Client", 0L);
+    private FailureLog serverFailureLog = new FailureLog("Server", 0L);
+    private TrustMetrics metrics;
+    private CrlRevocationIndex revocationIndex;
+    private Executor parallelExecutor;
+    private long parallelDeadlineNanos;
+    private Predicate<X509Certificate> acceptedIssuersFilter;
+    private int maxAcceptedIssuers = Integer.MAX_VALUE;
 
     public CompositeX509TrustManager(TrustManagerStrategy strategy, X509TrustManager... trustManagers) {
         this.strategy = strategy == null ? defaultStrategy() : strategy;
-        this.trustManagers = trustManagers;
+        this.delegates = Delegates.of(trustManagers, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Replaces the delegate trust managers. Handshakes already running keep validating against the previous
+     * delegates; later handshakes see the new ones. Cached verdicts are discarded: every cache entry is tagged with
+     * the generation of the delegates that produced it, so a verdict of a handshake still validating against the
+     * previous delegates is never reused, even if it is cached after the caches were cleared.
+     *
+     * @param trustManagers the new delegate trust managers
+     */
+    public void setTrustManagers(X509TrustManager... trustManagers) {
+        this.delegates = Delegates.of(trustManagers, acceptedIssuersFilter, maxAcceptedIssuers);
+        final TrustVerdictCache cache = this.verdictCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        final TrustRejectionCache rejections = this.rejectionCache;
+        if (rejections != null) {
+            rejections.clear();
+        }
+        final TrustPathCache paths = this.pathCache;
+        if (paths != null) {
+            paths.clear();
+        }
+    }
+
+    public X509TrustManager[] getTrustManagers() {
+        return delegates.trustManagers.clone();
+    }
+
+    /**
+     * Enables caching of positive verdicts, so repeated handshakes presenting the same chain skip
+     * the delegate trust managers. Must be configured before the trust manager is put in use.
+     *
+     * @param verdictCache the cache to use, {@code null} to disable caching
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setVerdictCache(TrustVerdictCache verdictCache) {
+        this.verdictCache = verdictCache;
+        return this;
+    }
+
+    public TrustVerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    /**
+     * Enables caching of rejections, so a chain presented over and over again, e.g. by a misbehaving client,
+     * is rejected without running the delegate trust managers each time. The {@link TrustManagerStrategy} is
+     * still called for every rejection, with the number of recent rejections of the chain. Must be configured
+     * before the trust manager is put in use.
+     *
+     * @param rejectionCache the cache to use, {@code null} to disable caching
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setRejectionCache(TrustRejectionCache rejectionCache) {
+        this.rejectionCache = rejectionCache;
+        return this;
+    }
+
+    public TrustRejectionCache getRejectionCache() {
+        return rejectionCache;
+    }
+
+    /**
+     * Enables caching of validated intermediate-to-anchor paths, so a new leaf issued by a known intermediate
+     * only needs its own checks and one signature verification. Not used for connections with endpoint
+     * identification, nor unless every delegate is a plain PKIX trust store loaded by
+     * {@link MultiTrustSSLContextBuilder} without a {@link org.apache.http.ssl.TrustStrategy}: other trust managers,
+     * e.g. ones checking revocation, may reject a chain for reasons a cached path does not cover. The algorithm
+     * constraints of the connection still apply to a chain accepted through a cached path. Must be configured
+     * before the trust manager is put in use.
+     *
+     * @param pathCache the cache to use, {@code null} to disable caching
+     * @return this trust manager
+     * @see TrustPathCache
+     */
+    public CompositeX509TrustManager setPathCache(TrustPathCache pathCache) {
+        this.pathCache = pathCache;
+        return this;
+    }
+
+    public TrustPathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Pins public keys. A chain whose leaf has a pinned key is accepted without consulting the delegates: the
+     * peer proves possession of that key in the handshake. The leaf must still be within its validity period and,
+     * where the connection identifies the peer, match its host name. Other chains are validated by the delegates; in strict
+     * mode they are then only accepted if one of their certificates has a pinned key. Pins of intermediate or
+     * root keys never replace validation, as anyone can present those certificates, and a root key only matches
+     * if the peer sends the root. Must be configured before the trust manager is put in use.
+     *
+     * @param spkiPins the pinned keys, {@code null} to disable pinning
+     * @param strict   whether validated chains without a pinned key are rejected
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setSpkiPins(SpkiPinSet spkiPins, boolean strict) {
+        this.spkiPins = spkiPins;
+        this.strictPinning = strict;
+        return this;
+    }
+
+    public SpkiPinSet getSpkiPins() {
+        return spkiPins;
+    }
+
+    /**
+     * Logs trust failures at most once per interval and side, together with the number of failures not logged
+     * since the previous message. Must be configured before the trust manager is put in use.
+     *
+     * @param interval the minimum time between two failure messages, {@code null} or zero to log every failure
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setFailureLogInterval(Duration interval) {
+        final long nanos = interval != null && !interval.isNegative() ? interval.toNanos() : 0L;
+        this.clientFailureLog = new FailureLog("Client", nanos);
+        this.serverFailureLog = new FailureLog("Server", nanos);
+        return this;
+    }
+
+    /**
+     * Enables instrumentation of trust decisions and delegate validations. Must be configured before the
+     * trust manager is put in use.
+     *
+     * @param metrics the metrics to record to, {@code null} to disable instrumentation
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setTrustMetrics(TrustMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public TrustMetrics getTrustMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Rejects chains containing a certificate revoked by one of the indexed CRLs. Revocation is checked on
+     * every decision, including cached ones. Must be configured before the trust manager is put in use.
+     *
+     * @param revocationIndex the CRL index, {@code null} to disable the check
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setRevocationIndex(CrlRevocationIndex revocationIndex) {
+        this.revocationIndex = revocationIndex;
+        return this;
+    }
+
+    /**
+     * Validates a chain with all candidate delegates concurrently instead of one after the other. The first
+     * delegate trusting the chain decides, the remaining validations are cancelled. A chain not trusted
+     * before the deadline is treated as untrusted. The delegates validate without the socket or engine,
+     * endpoint identification and algorithm constraints are applied on the handshake thread, like the
+     * {@link TrustManagerStrategy} callbacks. Must be configured before the trust manager is put in use.
+     *
+     * @param executor the executor running the delegate validations, {@code null} to validate sequentially
+     * @param deadline the maximum time a handshake waits for the delegates
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setParallelValidation(Executor executor, Duration deadline) {
+        if (executor != null && (deadline == null || deadline.isNegative() || deadline.isZero())) {
+            throw new IllegalArgumentException("Deadline must be positive");
+        }
+        this.parallelExecutor = executor;
+        this.parallelDeadlineNanos = executor != null ? deadline.toNanos() : 0L;
+        return this;
+    }
+
+    /**
+     * Restricts the CA list advertised through {@link #getAcceptedIssuers()}, e.g. in the CertificateRequest
+     * message of a handshake requesting client authentication. Validation is not affected.
+     * Must be configured before the trust manager is put in use.
+     *
+     * @param acceptedIssuersFilter the issuers to advertise, {@code null} to advertise all of them
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setAcceptedIssuersFilter(Predicate<X509Certificate> acceptedIssuersFilter) {
+        this.acceptedIssuersFilter = acceptedIssuersFilter;
+        this.delegates = delegates.withAcceptedIssuers(acceptedIssuersFilter, maxAcceptedIssuers);
+        return this;
+    }
+
+    /**
+     * Caps the number of issuers advertised through {@link #getAcceptedIssuers()}, keeping the ones
+     * of the delegates configured first. Validation is not affected.
+     * Must be configured before the trust manager is put in use.
+     *
+     * @param maxAcceptedIssuers the maximum number of advertised issuers
+     * @return this trust manager
+     */
+    public CompositeX509TrustManager setMaxAcceptedIssuers(int maxAcceptedIssuers) {
+        if (maxAcceptedIssuers < 0) {
+            throw new IllegalArgumentException("Maximum accepted issuers must not be negative");
+        }
+        this.maxAcceptedIssuers = maxAcceptedIssuers;
+        this.delegates = delegates.withAcceptedIssuers(acceptedIssuersFilter, maxAcceptedIssuers);
+        return this;
     }
 
     @Override
     public void checkClientTrusted(X509Certificate[] chain, String authType) {
-        if (!isClientCertificateTrustedByAnyManager(chain, authType)) {
-            LOG.warn("Client certificate is not trusted by any TrustManager");
-            strategy.onClientTrustFailure(chain, authType);
-        }
+        checkTrusted(new TrustCheck(chain, authType, true, null, null));
     }
 
     @Override
     public void checkServerTrusted(X509Certificate[] chain, String authType) {
-        if (!isServerCertificateTrustedByAnyManager(chain, authType)) {
-            LOG.warn("Server certificate is not trusted by any TrustManager");
-            strategy.onServerTrustFailure(chain, authType);
-        }
+        checkTrusted(new TrustCheck(chain, authType, false, null, null));
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        checkTrusted(new TrustCheck(chain, authType, true, socket, null));
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        checkTrusted(new TrustCheck(chain, authType, false, socket, null));
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        checkTrusted(new TrustCheck(chain, authType, true, null, engine));
     }
 
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        checkTrusted(new TrustCheck(chain, authType, false, null, engine));
+    }
+
+    /**
+     * Returns the issuers of all delegates, deduplicated by certificate fingerprint. The list is computed once
+     * per trust material on first use; each call only copies the precomputed snapshot.
+     */
     @Override
     public X509Certificate[] getAcceptedIssuers() {
-        return Arrays.stream(trustManagers)
-            .flatMap(trustManager -> Arrays.stream(trustManager.getAcceptedIssuers()))
-            .toArray(X509Certificate[]::new);
+        return delegates.acceptedIssuers().clone();
+    }
+
+    /**
+     * Returns the anchors of merged trust stores with the stores each of them was loaded from; empty unless
+     * anchors were merged with {@link MultiTrustSSLContextBuilder#setMergeTrustAnchors(boolean)}.
+     */
+    public Map<X509Certificate, List<String>> getAnchorSources() {
+        final Map<X509Certificate, List<String>> sources = new LinkedHashMap<>();
+        for (X509TrustManager trustManager : delegates.trustManagers) {
+            if (trustManager instanceof MergedX509TrustManager) {
+                sources.putAll(((MergedX509TrustManager) trustManager).getAnchorSources());
+            }
+        }
+        return sources;
     }
 
     private static TrustManagerStrategy defaultStrategy() {
@@ -54,33 +331,357 @@ public class CompositeX509TrustManager implements X509TrustManager {
         };
     }
 
-    private boolean isServerCertificateTrustedByAnyManager(X509Certificate[] chain, String authType) {
-        return Arrays.stream(trustManagers)
-            .anyMatch(trustManager -> validateServerCertificate(trustManager, chain, authType));
+    private void checkTrusted(TrustCheck check) {
+        final TrustMetrics metrics = enabledMetrics();
+        final long start = metrics != null ? System.nanoTime() : 0L;
+        final Delegates current = this.delegates;
+        final TrustRejectionCache rejections = this.rejectionCache;
+        final ChainKey key = rejections != null || verdictCache != null ? check.key() : null;
+        int rejectCount = rejections != null && key != null ? rejections.rejectAgain(key, current.generation) : 0;
+        final boolean trusted = rejectCount == 0 && isTrusted(current, check, key);
+        if (metrics != null) {
+            metrics.onTrustDecision(check.client, trusted, System.nanoTime() - start);
+        }
+        if (!trusted) {
+            if (rejectCount == 0) {
+                rejectCount = rejections != null && key != null ? rejections.reject(key, current.generation) : 1;
+            }
+            if (check.client) {
+                clientFailureLog.warn();
+                strategy.onClientTrustFailure(check.chain, check.authType, rejectCount);
+            } else {
+                serverFailureLog.warn();
+                strategy.onServerTrustFailure(check.chain, check.authType, rejectCount);
+            }
+        }
     }
 
-    private boolean isClientCertificateTrustedByAnyManager(X509Certificate[] chain, String authType) {
-        return Arrays.stream(trustManagers)
-            .anyMatch(trustManager -> validateClientCertificate(trustManager, chain, authType));
+    private boolean isTrusted(Delegates current, TrustCheck check, ChainKey key) {
+        final SpkiPinSet pins = this.spkiPins;
+        final boolean hasChain = check.chain != null && check.chain.length > 0;
+        if (pins != null && hasChain && pins.isPinned(check.chain[0])) {
+            if (!isAcceptablePinnedLeaf(check)) {
+                return false;
+            }
+        } else {
+            if (!isTrustedByDelegates(current, check, key)) {
+                return false;
+            }
+            if (pins != null && strictPinning && hasChain && !pins.isAnyPinned(check.chain, 1)) {
+                LOG.warn("{} certificate chain contains no pinned public key", check.client ? "Client" : "Server");
+                return false;
+            }
+        }
+        final CrlRevocationIndex revocation = this.revocationIndex;
+        if (revocation != null && revocation.isRevoked(check.chain)) {
+            LOG.warn("{} certificate chain contains a revoked certificate", check.client ? "Client" : "Server");
+            return false;
+        }
+        return true;
     }
 
-    private boolean validateServerCertificate(X509TrustManager trustManager, X509Certificate[] chain, String authType) {
+    /**
+     * Pinning replaces building the path of the leaf, not the checks of the leaf itself.
+     */
+    private static boolean isAcceptablePinnedLeaf(TrustCheck check) {
         try {
-            trustManager.checkServerTrusted(chain, authType);
+            check.chain[0].checkValidity();
+            check.checkAdditionalTrust();
             return true;
         } catch (CertificateException e) {
-            // Log and continue to the next TrustManager
+            LOG.warn("{} certificate has a pinned key but is not acceptable: {}", check.client ? "Client" : "Server",
+                e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isTrustedByDelegates(Delegates current, TrustCheck check, ChainKey key) {
+        final TrustVerdictCache cache = this.verdictCache;
+        final TrustPathCache paths = this.pathCache;
+        if (cache == null && paths == null) {
+            return isTrustedByAnyManager(current, check);
+        }
+        if (cache != null && key != null && cache.isTrusted(key, current.generation)) {
+            return true;
+        }
+        final ChainKey pathKey = paths != null && current.pathCacheable && !check.identifiesEndpoint()
+            ? TrustPathCache.pathKey(check.chain, check.authType, check.client) : null;
+        if (pathKey != null && paths.isTrusted(pathKey, check.chain, check.authType, check.client, current.generation)
+            && permitsCachedPath(check)) {
+            return true;
+        }
+        if (!isTrustedByAnyManager(current, check)) {
             return false;
         }
+        if (cache != null && key != null) {
+            cache.put(key, check.chain, current.generation);
+        }
+        if (pathKey != null) {
+            paths.put(pathKey, check.chain, current.anchors(), current.generation);
+        }
+        return true;
     }
 
-    private boolean validateClientCertificate(X509TrustManager trustManager, X509Certificate[] chain, String authType) {
+    /**
+     * Applies the algorithm constraints of the connection to a chain accepted through a cached path, as the
+     * delegates would have. A chain failing them is left to the delegates.
+     */
+    private static boolean permitsCachedPath(TrustCheck check) {
         try {
-            trustManager.checkClientTrusted(chain, authType);
+            check.checkAdditionalTrust();
+            return true;
+        } catch (CertificateException e) {
+            return false;
+        }
+    }
+
+    private boolean isTrustedByAnyManager(Delegates delegates, TrustCheck check) {
+        final BitSet routes = delegates.issuerIndex.route(check.chain);
+        final Executor executor = this.parallelExecutor;
+        if (executor != null && routes.cardinality() > 1) {
+            return isTrustedByAnyManagerInParallel(delegates, routes, check, executor);
+        }
+        for (int i = routes.nextSetBit(0); i >= 0; i = routes.nextSetBit(i + 1)) {
+            if (validate(i, delegates.trustManagers[i], check)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTrustedByAnyManagerInParallel(Delegates delegates, BitSet routes, TrustCheck check,
+                                                    Executor executor) {
+        // Workers never touch the connection: an engine guards its handshake session and parameters with the lock
+        // held by the delegated task running this check, so the connection checks run on this thread instead
+        final TrustCheck detached = check.withoutConnection();
+        final CompletableFuture<Boolean> verdict = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger(routes.cardinality());
+        final List<Future<?>> validations = new ArrayList<>(pending.get());
+        for (int i = routes.nextSetBit(0); i >= 0; i = routes.nextSetBit(i + 1)) {
+            final int delegate = i;
+            final Runnable validation = () -> {
+                if (verdict.isDone()) {
+                    return;
+                }
+                try {
+                    if (validate(delegate, delegates.trustManagers[delegate], detached)) {
+                        verdict.complete(Boolean.TRUE);
+                    } else if (pending.decrementAndGet() == 0) {
+                        verdict.complete(Boolean.FALSE);
+                    }
+                } catch (RuntimeException e) {
+                    verdict.completeExceptionally(e);
+                }
+            };
+            try {
+                if (executor instanceof ExecutorService) {
+                    validations.add(((ExecutorService) executor).submit(validation));
+                } else {
+                    executor.execute(validation);
+                }
+            } catch (RejectedExecutionException e) {
+                validation.run();
+            }
+        }
+        final boolean accepted;
+        try {
+            accepted = verdict.get(parallelDeadlineNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("Certificate validation did not complete within {} ms", TimeUnit.NANOSECONDS.toMillis(parallelDeadlineNanos));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<?> validation : validations) {
+                validation.cancel(true);
+            }
+        }
+        if (accepted && detached != check) {
+            try {
+                check.checkAdditionalTrust();
+            } catch (CertificateException e) {
+                return false;
+            }
+        }
+        return accepted;
+    }
+
+    private boolean validate(int delegate, X509TrustManager trustManager, TrustCheck check) {
+        final TrustMetrics metrics = enabledMetrics();
+        if (metrics == null) {
+            return validate(trustManager, check);
+        }
+        final long start = System.nanoTime();
+        final boolean accepted = validate(trustManager, check);
+        metrics.onDelegateValidation(delegate, check.client, accepted, System.nanoTime() - start);
+        return accepted;
+    }
+
+    private TrustMetrics enabledMetrics() {
+        final TrustMetrics metrics = this.metrics;
+        return metrics != null && metrics.isEnabled() ? metrics : null;
+    }
+
+    private boolean validate(X509TrustManager trustManager, TrustCheck check) {
+        try {
+            check.validate(trustManager);
             return true;
         } catch (CertificateException e) {
             // Log and continue to the next TrustManager
             return false;
         }
     }
+
+    /**
+     * Trust failure messages of one side, rate limited to one per interval.
+     */
+    private static final class FailureLog {
+
+        private final String side;
+        private final long intervalNanos;
+        private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private FailureLog(String side, long intervalNanos) {
+            this.side = side;
+            this.intervalNanos = intervalNanos;
+        }
+
+        private void warn() {
+            if (intervalNanos == 0L) {
+                LOG.warn("{} certificate is not trusted by any TrustManager", side);
+                return;
+            }
+            final long now = System.nanoTime();
+            final long next = nextLogNanos.get();
+            if (now - next >= 0 && nextLogNanos.compareAndSet(next, now + intervalNanos)) {
+                final long count = suppressed.getAndSet(0L);
+                if (count > 0) {
+                    LOG.warn("{} certificate is not trusted by any TrustManager ({} more failures in the last {} ms)",
+                        side, count, TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+                } else {
+                    LOG.warn("{} certificate is not trusted by any TrustManager", side);
+                }
+            } else {
+                suppressed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Immutable view of the delegate trust managers and everything derived from them. Replaced as a whole
+     * when the trust material changes, so a handshake never sees a partially updated state.
+     */
+    private static final class Delegates {
+
+        private final X509TrustManager[] trustManagers;
+        private final long generation;
+        private final IssuerIndex issuerIndex;
+        private final Predicate<X509Certificate> acceptedIssuersFilter;
+        private final int maxAcceptedIssuers;
+        private final boolean pathCacheable;
+        private volatile X509Certificate[] acceptedIssuers;
+        private volatile Map<X500Principal, List<X509Certificate>> anchors;
+
+        private Delegates(X509TrustManager[] trustManagers, long generation, IssuerIndex issuerIndex,
+                          Predicate<X509Certificate> acceptedIssuersFilter, int maxAcceptedIssuers) {
+            this.trustManagers = trustManagers;
+            this.generation = generation;
+            this.issuerIndex = issuerIndex;
+            this.acceptedIssuersFilter = acceptedIssuersFilter;
+            this.maxAcceptedIssuers = maxAcceptedIssuers;
+            this.pathCacheable = isPathCacheable(trustManagers);
+        }
+
+        private static boolean isPathCacheable(X509TrustManager[] trustManagers) {
+            for (X509TrustManager trustManager : trustManagers) {
+                if (!PkixX509TrustManager.isPlain(trustManager)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Delegates of(X509TrustManager[] trustManagers, Predicate<X509Certificate> acceptedIssuersFilter,
+                                    int maxAcceptedIssuers) {
+            final X509TrustManager[] copy = trustManagers.clone();
+            return new Delegates(copy, GENERATIONS.incrementAndGet(), new IssuerIndex(copy), acceptedIssuersFilter,
+                maxAcceptedIssuers);
+        }
+
+        private Delegates withAcceptedIssuers(Predicate<X509Certificate> acceptedIssuersFilter, int maxAcceptedIssuers) {
+            return new Delegates(trustManagers, generation, issuerIndex, acceptedIssuersFilter, maxAcceptedIssuers);
+        }
+
+        /**
+         * Computed lazily, so trust managers decoding their anchors on demand are only asked for them when
+         * issuers are actually advertised.
+         */
+        private X509Certificate[] acceptedIssuers() {
+            X509Certificate[] issuers = acceptedIssuers;
+            if (issuers == null) {
+                issuers = snapshotAcceptedIssuers(trustManagers, acceptedIssuersFilter, maxAcceptedIssuers);
+                acceptedIssuers = issuers;
+            }
+            return issuers;
+        }
+
+        /**
+         * Returns the anchors of all delegates by subject, unfiltered and uncapped unlike the accepted issuers.
+         * Computed lazily, once the path cache first needs them.
+         */
+        private Map<X500Principal, List<X509Certificate>> anchors() {
+            Map<X500Principal, List<X509Certificate>> bySubject = anchors;
+            if (bySubject == null) {
+                bySubject = new HashMap<>();
+                for (X509TrustManager trustManager : trustManagers) {
+                    final X509Certificate[] delegateIssuers = trustManager.getAcceptedIssuers();
+                    if (delegateIssuers == null) {
+                        continue;
+                    }
+                    for (X509Certificate issuer : delegateIssuers) {
+                        bySubject.computeIfAbsent(issuer.getSubjectX500Principal(), subject -> new ArrayList<>(1))
+                            .add(issuer);
+                    }
+                }
+                anchors = bySubject;
+            }
+            return bySubject;
+        }
+
+        private static X509Certificate[] snapshotAcceptedIssuers(X509TrustManager[] trustManagers,
+                                                                 Predicate<X509Certificate> acceptedIssuersFilter,
+                                                                 int maxAcceptedIssuers) {
+            final Map<Object, X509Certificate> issuers = new LinkedHashMap<>();
+            for (X509TrustManager trustManager : trustManagers) {
+                final X509Certificate[] delegateIssuers = trustManager.getAcceptedIssuers();
+                if (delegateIssuers == null) {
+                    continue;
+                }
+                for (X509Certificate issuer : delegateIssuers) {
+                    if (issuers.size() >= maxAcceptedIssuers) {
+                        return issuers.values().toArray(new X509Certificate[0]);
+                    }
+                    if (acceptedIssuersFilter == null || acceptedIssuersFilter.test(issuer)) {
+                        issuers.putIfAbsent(fingerprintOf(issuer), issuer);
+                    }
+                }
+            }
+            return issuers.values().toArray(new X509Certificate[0]);
+        }
+
+        private static Object fingerprintOf(X509Certificate certificate) {
+            try {
+                return ByteBuffer.wrap(Fingerprints.sha256(certificate));
+            } catch (CertificateEncodingException e) {
+                return certificate;
+            }
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package com.inomera.ssl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registry key identifying a configuration by content.
+ * <p>
+ * Values such as algorithm names and key store contents are folded into a SHA-256 digest. Objects that cannot
+ * be compared by content, such as strategies, executors and providers, are kept as references and compared by
+ * identity, so two configurations only match when they share the same instances.
+ */
+final class ConfigurationKey {
+
+    private final byte[] digest;
+    private final Object[] references;
+    private final int hash;
+
+    private ConfigurationKey(final byte[] digest, final Object[] references) {
+        this.digest = digest;
+        this.references = references;
+        int h = Arrays.hashCode(digest);
+        for (final Object reference : references) {
+            h = 31 * h + System.identityHashCode(reference);
+        }
+        this.hash = h;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConfigurationKey)) {
+            return false;
+        }
+        final ConfigurationKey other = (ConfigurationKey) o;
+        if (hash != other.hash || !Arrays.equals(digest, other.digest) || references.length != other.references.length) {
+            return false;
+        }
+        for (int i = 0; i < references.length; i++) {
+            if (references[i] != other.references[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    static final class Builder {
+
+        private final MessageDigest digest = Fingerprints.newSha256();
+        private final List<Object> references = new ArrayList<Object>();
+
+        private Builder() {
+        }
+
+        Builder add(final String value) {
+            if (value == null) {
+                digest.update((byte) 0);
+            } else {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                digest.update((byte) 1);
+                add(bytes.length);
+                digest.update(bytes);
+            }
+            return this;
+        }
+
+        Builder add(final long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                digest.update((byte) (value >>> shift));
+            }
+            return this;
+        }
+
+        Builder add(final boolean value) {
+            digest.update((byte) (value ? 1 : 0));
+            return this;
+        }
+
+        Builder add(final char[] secret) {
+            if (secret == null) {
+                digest.update((byte) 0);
+            } else {
+                digest.update((byte) 1);
+                add(secret.length);
+                for (final char c : secret) {
+                    digest.update((byte) (c >>> 8));
+                    digest.update((byte) c);
+                }
+            }
+            return this;
+        }
+
+        Builder add(final byte[] value) {
+            add(value.length);
+            digest.update(value);
+            return this;
+        }
+
+        /**
+         * Adds the aliases, entry types and certificates of a key store, in alias order.
+         */
+        Builder add(final KeyStore keyStore) throws KeyStoreException {
+            if (keyStore == null) {
+                return add((String) null);
+            }
+            add(keyStore.getType());
+            final List<String> aliases = Collections.list(keyStore.aliases());
+            Collections.sort(aliases);
+            add(aliases.size());
+            try {
+                for (final String alias : aliases) {
+                    add(alias);
+                    add(keyStore.isKeyEntry(alias));
+                    final Certificate[] chain = keyStore.isKeyEntry(alias)
+                        ? keyStore.getCertificateChain(alias)
+                        : new Certificate[]{keyStore.getCertificate(alias)};
+                    add(chain != null ? chain.length : 0);
+                    if (chain != null) {
+                        for (final Certificate certificate : chain) {
+                            final byte[] encoded = certificate.getEncoded();
+                            add(encoded.length);
+                            digest.update(encoded);
+                        }
+                    }
+                }
+            } catch (CertificateEncodingException e) {
+                throw new KeyStoreException(e);
+            }
+            return this;
+        }
+
+        /**
+         * Adds an object compared by identity; {@code null} matches {@code null} only.
+         */
+        Builder addReference(final Object reference) {
+            references.add(reference);
+            return this;
+        }
+
+        Builder add(final ConfigurationKey key) {
+            digest.update(key.digest);
+            Collections.addAll(references, key.references);
+            return this;
+        }
+
+        ConfigurationKey build() {
+            return new ConfigurationKey(digest.digest(), references.toArray());
+        }
+    }
+}
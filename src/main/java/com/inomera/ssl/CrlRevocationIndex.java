@@ -0,0 +1,254 @@
+package com.inomera.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CRL;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revocation check against CRL files on local disk.
+ * <p>
+ * The CRLs are parsed once, from memory-mapped files, into a per-issuer index of revoked serial numbers:
+ * a sorted {@code long[]} of the low 64 bits of each serial, confirmed against the full serial on a match.
+ * A check is therefore a hash lookup plus a binary search, without scanning or re-parsing CRLs.
+ * <p>
+ * The files are trusted as they are, like key store files: CRL signatures and {@code nextUpdate} are not
+ * verified. With {@link #watch(Duration)} the files are polled in the background and the index is swapped
+ * atomically when one of them changes.
+ */
+public class CrlRevocationIndex implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(CrlRevocationIndex.class);
+
+    private final List<WatchedFile> files;
+    private volatile Map<X500Principal, RevokedSerials> revoked;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Loads the given CRL files. Each file may hold one or more DER or PEM encoded CRLs.
+     *
+     * @param crlFiles the CRL files
+     * @throws IOException  if a file cannot be read
+     * @throws CRLException if a file does not hold valid CRLs
+     */
+    public CrlRevocationIndex(Collection<Path> crlFiles) throws IOException, CRLException {
+        this.files = new ArrayList<>();
+        for (Path crlFile : crlFiles) {
+            files.add(new WatchedFile(crlFile));
+        }
+        this.revoked = load(crlFiles);
+    }
+
+    public static CrlRevocationIndex of(Path... crlFiles) throws IOException, CRLException {
+        return new CrlRevocationIndex(List.of(crlFiles));
+    }
+
+    /**
+     * Returns whether the certificate is listed as revoked by a CRL of its issuer.
+     */
+    public boolean isRevoked(X509Certificate certificate) {
+        final RevokedSerials serials = revoked.get(certificate.getIssuerX500Principal());
+        return serials != null && serials.contains(certificate.getSerialNumber());
+    }
+
+    /**
+     * Returns whether any certificate of the chain is revoked.
+     */
+    public boolean isRevoked(X509Certificate[] chain) {
+        if (chain == null) {
+            return false;
+        }
+        final Map<X500Principal, RevokedSerials> current = this.revoked;
+        for (X509Certificate certificate : chain) {
+            final RevokedSerials serials = current.get(certificate.getIssuerX500Principal());
+            if (serials != null && serials.contains(certificate.getSerialNumber())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts polling the CRL files for changes on a background thread.
+     *
+     * @param pollInterval how often the files are checked
+     * @return this index
+     */
+    public synchronized CrlRevocationIndex watch(Duration pollInterval) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(DefaultExecutors.daemonThreadFactory("ssl-forge-crl"));
+            final long interval = pollInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::reloadQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Reloads the index if any CRL file changed.
+     *
+     * @return whether the index was replaced
+     */
+    public synchronized boolean reload() throws IOException, CRLException {
+        boolean changed = false;
+        for (WatchedFile file : files) {
+            changed |= file.hasChanged();
+        }
+        if (changed) {
+            final List<Path> paths = new ArrayList<>();
+            for (WatchedFile file : files) {
+                paths.add(file.getPath());
+            }
+            this.revoked = load(paths);
+            for (WatchedFile file : files) {
+                file.commit();
+            }
+            LOG.info("Reloaded CRLs from {}", paths);
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (IOException | CRLException | RuntimeException e) {
+            LOG.warn("Could not reload CRLs, keeping the previous ones", e);
+        }
+    }
+
+    private static Map<X500Principal, RevokedSerials> load(Collection<Path> crlFiles) throws IOException, CRLException {
+        final CertificateFactory factory;
+        try {
+            factory = CertificateFactory.getInstance("X.509");
+        } catch (CertificateException e) {
+            throw new CRLException(e);
+        }
+        final Map<X500Principal, List<BigInteger>> serials = new HashMap<>();
+        for (Path crlFile : crlFiles) {
+            try (FileChannel channel = FileChannel.open(crlFile, StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for (CRL crl : factory.generateCRLs(new ByteBufferInputStream(buffer))) {
+                    final X509CRL x509Crl = (X509CRL) crl;
+                    final List<BigInteger> issuerSerials = serials.computeIfAbsent(x509Crl.getIssuerX500Principal(),
+                        issuer -> new ArrayList<>());
+                    if (x509Crl.getRevokedCertificates() != null) {
+                        for (X509CRLEntry entry : x509Crl.getRevokedCertificates()) {
+                            issuerSerials.add(entry.getSerialNumber());
+                        }
+                    }
+                }
+            }
+        }
+        final Map<X500Principal, RevokedSerials> index = new HashMap<>();
+        serials.forEach((issuer, issuerSerials) -> index.put(issuer, new RevokedSerials(issuerSerials)));
+        return Map.copyOf(index);
+    }
+
+    /**
+     * Revoked serial numbers of one issuer, sorted by their low 64 bits.
+     */
+    private static final class RevokedSerials {
+
+        private final long[] keys;
+        private final BigInteger[] serials;
+
+        private RevokedSerials(List<BigInteger> revoked) {
+            final BigInteger[] sorted = revoked.toArray(new BigInteger[0]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(a.longValue(), b.longValue()));
+            this.serials = sorted;
+            this.keys = new long[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                keys[i] = sorted[i].longValue();
+            }
+        }
+
+        private boolean contains(BigInteger serial) {
+            final long key = serial.longValue();
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else if (keys[mid] > key) {
+                    high = mid - 1;
+                } else {
+                    // serials sharing the low 64 bits are adjacent
+                    for (int i = mid; i >= 0 && keys[i] == key; i--) {
+                        if (serials[i].equals(serial)) {
+                            return true;
+                        }
+                    }
+                    for (int i = mid + 1; i < keys.length && keys[i] == key; i++) {
+                        if (serials[i].equals(serial)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
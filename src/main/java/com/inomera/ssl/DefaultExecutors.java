@@ -0,0 +1,37 @@
+package com.inomera.ssl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors used when the caller does not configure one.
+ * <p>
+ * The library targets Java 17, so virtual threads are looked up reflectively: on a runtime that provides them
+ * a virtual-thread-per-task executor is returned, otherwise a cached pool of daemon platform threads.
+ */
+final class DefaultExecutors {
+
+    private DefaultExecutors() {
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor(final String name) {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(daemonThreadFactory(name));
+        }
+    }
+
+    static ThreadFactory daemonThreadFactory(final String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,243 @@
+package com.inomera.ssl;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.StandardConstants;
+import javax.security.auth.x500.X500Principal;
+import java.net.IDN;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Endpoint identification of a peer certificate, for chains accepted without JSSE seeing the connection.
+ * <p>
+ * Follows the JDK's host name checks: an IP address only matches a subject alternative IP address; a host name
+ * matches the DNS subject alternative names, or the most specific common name when there are none. Wildcards are
+ * stricter than the JDK's: only honoured within the leftmost label, never above a public suffix such as
+ * {@code co.uk}, whatever CA issued the certificate, and never as part of an internationalized label.
+ *
+ * @see PublicSuffixes
+ */
+final class EndpointIdentity {
+
+    private static final int DNS_NAME = 2;
+    private static final int IP_ADDRESS = 7;
+    private static final String ACE_PREFIX = "xn--";
+
+    private EndpointIdentity() {
+    }
+
+    /**
+     * Checks the leaf certificate against the peer of the session. A server certificate is first matched against
+     * the host name the client requested through SNI, then against the peer host, as JSSE does.
+     *
+     * @param algorithm the endpoint identification algorithm, {@code HTTPS}, {@code LDAP} or {@code LDAPS}
+     * @param client    whether the certificate was presented by a client
+     */
+    static void check(final SSLSession session, final X509Certificate leaf, final String algorithm,
+                      final boolean client) throws CertificateException {
+        if (!"HTTPS".equalsIgnoreCase(algorithm) && !"LDAP".equalsIgnoreCase(algorithm)
+            && !"LDAPS".equalsIgnoreCase(algorithm)) {
+            throw new CertificateException("Unknown identification algorithm: " + algorithm);
+        }
+        String peerHost = session.getPeerHost();
+        if (peerHost != null && peerHost.endsWith(".")) {
+            peerHost = peerHost.substring(0, peerHost.length() - 1);
+        }
+        if (!client) {
+            final String sniHostName = sniHostName(session);
+            if (sniHostName != null) {
+                try {
+                    match(sniHostName, leaf);
+                    return;
+                } catch (CertificateException e) {
+                    if (sniHostName.equalsIgnoreCase(peerHost)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        match(peerHost, leaf);
+    }
+
+    /**
+     * Checks that the certificate identifies the host name or IP address.
+     */
+    static void match(final String host, final X509Certificate certificate) throws CertificateException {
+        if (host == null) {
+            throw new CertificateException("Hostname or IP address is undefined.");
+        }
+        final String name = host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+        if (isIpAddress(name)) {
+            matchIpAddress(name, certificate);
+        } else {
+            matchDnsName(name, certificate);
+        }
+    }
+
+    private static void matchIpAddress(final String address, final X509Certificate certificate)
+        throws CertificateException {
+        final Collection<List<?>> alternativeNames = certificate.getSubjectAlternativeNames();
+        if (alternativeNames == null) {
+            throw new CertificateException("No subject alternative names present");
+        }
+        for (final List<?> alternativeName : alternativeNames) {
+            if ((Integer) alternativeName.get(0) == IP_ADDRESS) {
+                final String candidate = (String) alternativeName.get(1);
+                if (address.equalsIgnoreCase(candidate) || sameAddress(address, candidate)) {
+                    return;
+                }
+            }
+        }
+        throw new CertificateException("No subject alternative names matching IP address " + address + " found");
+    }
+
+    private static void matchDnsName(final String name, final X509Certificate certificate)
+        throws CertificateException {
+        final Collection<List<?>> alternativeNames = certificate.getSubjectAlternativeNames();
+        if (alternativeNames != null) {
+            boolean hasDnsName = false;
+            for (final List<?> alternativeName : alternativeNames) {
+                if ((Integer) alternativeName.get(0) == DNS_NAME) {
+                    hasDnsName = true;
+                    if (isMatched(name, (String) alternativeName.get(1))) {
+                        return;
+                    }
+                }
+            }
+            if (hasDnsName) {
+                throw new CertificateException("No subject alternative DNS name matching " + name + " found.");
+            }
+        }
+        final String commonName = mostSpecificCommonName(certificate.getSubjectX500Principal());
+        if (commonName != null && isMatched(name, commonName)) {
+            return;
+        }
+        throw new CertificateException("No name matching " + name + " found");
+    }
+
+    private static boolean isMatched(final String name, final String template) {
+        final String asciiName;
+        final String asciiTemplate;
+        try {
+            asciiName = stripTrailingDot(IDN.toASCII(name)).toLowerCase(Locale.ENGLISH);
+            asciiTemplate = stripTrailingDot(IDN.toASCII(template)).toLowerCase(Locale.ENGLISH);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        final int wildcard = asciiTemplate.indexOf('*');
+        if (wildcard < 0) {
+            return asciiName.equals(asciiTemplate);
+        }
+        final int templateDot = asciiTemplate.indexOf('.');
+        final int nameDot = asciiName.indexOf('.');
+        // One wildcard, within the leftmost label, above a registered domain
+        if (templateDot < wildcard || asciiTemplate.lastIndexOf('*') != wildcard || nameDot < 0
+            || PublicSuffixes.isPublicSuffix(asciiTemplate.substring(templateDot + 1))) {
+            return false;
+        }
+        if (!asciiName.substring(nameDot).equals(asciiTemplate.substring(templateDot))) {
+            return false;
+        }
+        final String prefix = asciiTemplate.substring(0, wildcard);
+        final String suffix = asciiTemplate.substring(wildcard + 1, templateDot);
+        final String label = asciiName.substring(0, nameDot);
+        // A partial wildcard never matches within an internationalized label, whose A-label is no text to match
+        if ((!prefix.isEmpty() || !suffix.isEmpty())
+            && (prefix.startsWith(ACE_PREFIX) || label.startsWith(ACE_PREFIX))) {
+            return false;
+        }
+        return label.length() >= prefix.length() + suffix.length() && label.startsWith(prefix)
+               && label.endsWith(suffix);
+    }
+
+    private static String mostSpecificCommonName(final X500Principal subject) {
+        try {
+            String commonName = null;
+            // Ordered from the most general RDN to the most specific one
+            for (final Rdn rdn : new LdapName(subject.getName(X500Principal.RFC2253)).getRdns()) {
+                if ("CN".equalsIgnoreCase(rdn.getType()) && rdn.getValue() instanceof String) {
+                    commonName = (String) rdn.getValue();
+                }
+            }
+            return commonName;
+        } catch (InvalidNameException e) {
+            return null;
+        }
+    }
+
+    private static String sniHostName(final SSLSession session) {
+        if (session instanceof ExtendedSSLSession) {
+            final List<SNIServerName> serverNames = ((ExtendedSSLSession) session).getRequestedServerNames();
+            if (serverNames != null) {
+                for (final SNIServerName serverName : serverNames) {
+                    if (serverName.getType() == StandardConstants.SNI_HOST_NAME) {
+                        return serverName instanceof SNIHostName
+                            ? ((SNIHostName) serverName).getAsciiName()
+                            : new SNIHostName(serverName.getEncoded()).getAsciiName();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the name is an IPv4 or IPv6 literal. Only literals are handed to {@link InetAddress}, so
+     * no name is ever resolved.
+     */
+    private static boolean isIpAddress(final String name) {
+        if (name.indexOf(':') >= 0) {
+            for (int i = 0; i < name.length(); i++) {
+                final char c = name.charAt(i);
+                if (Character.digit(c, 16) < 0 && c != ':' && c != '.' && c != '%') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final String[] octets = name.split("\\.", -1);
+        if (octets.length != 4) {
+            return false;
+        }
+        for (final String octet : octets) {
+            if (octet.isEmpty() || octet.length() > 3) {
+                return false;
+            }
+            for (int i = 0; i < octet.length(); i++) {
+                if (octet.charAt(i) < '0' || octet.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            if (Integer.parseInt(octet) > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameAddress(final String address, final String candidate) {
+        if (!isIpAddress(candidate)) {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(address).equals(InetAddress.getByName(candidate));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static String stripTrailingDot(final String name) {
+        return name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+    }
+}
@@ -0,0 +1,46 @@
+package com.inomera.ssl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+
+/**
+ * SHA-256 helpers shared by the caches of {@link CompositeX509TrustManager}.
+ * <p>
+ * Digest instances are kept per thread, so fingerprinting on the handshake path does not pay
+ * for a provider lookup on every call.
+ */
+final class Fingerprints {
+
+    static final String SHA_256 = "SHA-256";
+
+    private static final ThreadLocal<MessageDigest> SHA_256_DIGEST = ThreadLocal.withInitial(Fingerprints::newSha256);
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Returns the SHA-256 digest bound to the calling thread, reset and ready for use.
+     */
+    static MessageDigest sha256() {
+        final MessageDigest digest = SHA_256_DIGEST.get();
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Returns a new SHA-256 digest, for callers that must not share the one bound to the thread.
+     */
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    static byte[] sha256(final X509Certificate certificate) throws CertificateEncodingException {
+        return sha256().digest(certificate.getEncoded());
+    }
+}
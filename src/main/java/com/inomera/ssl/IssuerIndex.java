@@ -0,0 +1,81 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.nio.ByteBuffer;
+import java.security.cert.X509Certificate;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index from the accepted issuers of each delegate trust manager to the delegate's position.
+ * <p>
+ * Used by {@link CompositeX509TrustManager} to send a chain only to the delegates that could anchor it,
+ * instead of letting every delegate fail in turn. Delegates reporting no accepted issuers, and delegates
+ * backed by a {@link org.apache.http.ssl.TrustStrategy} that may trust a chain on its own, cannot be
+ * indexed and are always consulted. Snapshot trust managers route chains through their own index and are
+ * not asked for their issuers, which would decode all of their anchors.
+ */
+final class IssuerIndex {
+
+    private final int size;
+    private final Map<X500Principal, BitSet> bySubject = new HashMap<>();
+    private final Map<ByteBuffer, BitSet> byKeyIdentifier = new HashMap<>();
+    private final BitSet unindexed = new BitSet();
+
+    IssuerIndex(final X509TrustManager[] trustManagers) {
+        this.size = trustManagers.length;
+        for (int i = 0; i < trustManagers.length; i++) {
+            final X509TrustManager trustManager = trustManagers[i];
+            if (trustManager instanceof MultiTrustSSLContextBuilder.TrustManagerDelegate
+                || trustManager instanceof SnapshotX509TrustManager) {
+                unindexed.set(i);
+                continue;
+            }
+            final X509Certificate[] issuers = trustManager.getAcceptedIssuers();
+            if (issuers == null || issuers.length == 0) {
+                unindexed.set(i);
+                continue;
+            }
+            for (final X509Certificate issuer : issuers) {
+                bySubject.computeIfAbsent(issuer.getSubjectX500Principal(), k -> new BitSet()).set(i);
+                final byte[] keyIdentifier = X509Extensions.subjectKeyIdentifier(issuer);
+                if (keyIdentifier != null) {
+                    byKeyIdentifier.computeIfAbsent(ByteBuffer.wrap(keyIdentifier), k -> new BitSet()).set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the positions of the delegates that should validate the chain. Iterating the result
+     * in ascending order preserves the configured delegate order.
+     */
+    BitSet route(final X509Certificate[] chain) {
+        final BitSet routes = (BitSet) unindexed.clone();
+        if (chain == null || chain.length == 0) {
+            // let every delegate report the malformed input as before
+            routes.set(0, size);
+            return routes;
+        }
+        for (final X509Certificate certificate : chain) {
+            or(routes, bySubject.get(certificate.getIssuerX500Principal()));
+            // the chain may already contain a trust anchor of a delegate
+            or(routes, bySubject.get(certificate.getSubjectX500Principal()));
+            if (!byKeyIdentifier.isEmpty()) {
+                final byte[] keyIdentifier = X509Extensions.authorityKeyIdentifier(certificate);
+                if (keyIdentifier != null) {
+                    or(routes, byKeyIdentifier.get(ByteBuffer.wrap(keyIdentifier)));
+                }
+            }
+        }
+        return routes;
+    }
+
+    private static void or(final BitSet routes, final BitSet delegates) {
+        if (delegates != null) {
+            routes.or(delegates);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.inomera.ssl;
+
+/**
+ * {@link TrustMetrics} emitting a {@code com.inomera.ssl.TrustValidation} JFR event per delegate validation and
+ * per overall decision. Nothing is recorded unless a recording enables the event.
+ */
+public class JfrTrustMetrics implements TrustMetrics {
+
+    static final int DECISION = -1;
+
+    /**
+     * The event is only allocated to ask JFR whether it is enabled; the JIT removes the allocation.
+     */
+    @Override
+    public boolean isEnabled() {
+        return new TrustValidationEvent().isEnabled();
+    }
+
+    @Override
+    public void onDelegateValidation(final int delegate, final boolean client, final boolean accepted, final long nanos) {
+        commit(delegate, client, accepted, nanos);
+    }
+
+    @Override
+    public void onTrustDecision(final boolean client, final boolean trusted, final long nanos) {
+        commit(DECISION, client, trusted, nanos);
+    }
+
+    private static void commit(final int delegate, final boolean client, final boolean accepted, final long nanos) {
+        final TrustValidationEvent event = new TrustValidationEvent();
+        event.delegate = delegate;
+        event.client = client;
+        event.accepted = accepted;
+        event.validationTime = nanos;
+        // A recording may have stopped since the composite asked isEnabled(), commit() checks again
+        event.commit();
+    }
+}
@@ -0,0 +1,70 @@
+package com.inomera.ssl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets.
+ * <p>
+ * Recording is an atomic increment of one bucket and an add to a striped total; percentiles are reported as the
+ * upper bound of the bucket they fall into, i.e. with at most a factor of two of overestimation.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+
+    void record(final long nanos) {
+        final long value = Math.max(nanos, 0L);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        totalNanos.add(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentileNanos(final double percentile) {
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return i == 0 ? 0 : i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        final long count = getCount();
+        return "[count=" + count + ", meanNanos=" + (count == 0 ? 0 : getTotalNanos() / count)
+               + ", p50Nanos=" + getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + "]";
+    }
+}
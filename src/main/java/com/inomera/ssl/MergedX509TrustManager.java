@@ -0,0 +1,186 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single PKIX trust manager over the anchors of several trust stores.
+ * <p>
+ * Trust stores without a trust strategy all validate the same way, so instead of letting each of them build
+ * and validate the chain in turn, their anchors are merged, deduplicated by fingerprint, into one PKIX trust
+ * manager and a chain is validated once. The stores each anchor came from are kept for reporting.
+ */
+class MergedX509TrustManager extends X509ExtendedTrustManager {
+
+    static final String PKIX = "PKIX";
+
+    private final X509ExtendedTrustManager trustManager;
+    private final Map<X509Certificate, List<String>> anchorSources;
+    private final boolean plain;
+
+    private MergedX509TrustManager(final X509ExtendedTrustManager trustManager,
+                                   final Map<X509Certificate, List<String>> anchorSources, final boolean plain) {
+        super();
+        this.trustManager = trustManager;
+        this.anchorSources = Collections.unmodifiableMap(anchorSources);
+        this.plain = plain;
+    }
+
+    /**
+     * Returns whether the material validates like a plain PKIX trust store and can be merged.
+     */
+    static boolean isMergeable(final MultiTrustSSLContextBuilder.TrustMaterial material) {
+        final String algorithm = material.trustManagerFactoryAlgorithm != null
+            ? material.trustManagerFactoryAlgorithm : TrustManagerFactory.getDefaultAlgorithm();
+        return material.trustStrategy == null && material.snapshot == null && PKIX.equalsIgnoreCase(algorithm);
+    }
+
+    /**
+     * Returns the trust managers of the material, the mergeable stores replaced by one merged trust manager
+     * at the position of the first of them. Nothing is merged unless there are at least two such stores.
+     */
+    static X509TrustManager[] merge(final List<MultiTrustSSLContextBuilder.TrustMaterial> trustMaterial)
+        throws GeneralSecurityException {
+        final List<MultiTrustSSLContextBuilder.TrustMaterial> mergeable = new ArrayList<MultiTrustSSLContextBuilder.TrustMaterial>();
+        for (final MultiTrustSSLContextBuilder.TrustMaterial material : trustMaterial) {
+            if (isMergeable(material)) {
+                mergeable.add(material);
+            }
+        }
+        if (mergeable.size() < 2) {
+            return MultiTrustSSLContextBuilder.toX509TrustManagers(trustMaterial);
+        }
+        final MergedX509TrustManager merged = of(trustMaterial, mergeable);
+        final List<X509TrustManager> trustManagers = new ArrayList<X509TrustManager>();
+        for (final MultiTrustSSLContextBuilder.TrustMaterial material : trustMaterial) {
+            if (!isMergeable(material)) {
+                Collections.addAll(trustManagers, MultiTrustSSLContextBuilder.toX509TrustManagers(List.of(material)));
+            } else if (material == mergeable.get(0)) {
+                trustManagers.add(merged);
+            }
+        }
+        return trustManagers.toArray(new X509TrustManager[0]);
+    }
+
+    private static MergedX509TrustManager of(final List<MultiTrustSSLContextBuilder.TrustMaterial> trustMaterial,
+                                             final List<MultiTrustSSLContextBuilder.TrustMaterial> merged)
+        throws GeneralSecurityException {
+        final Map<ByteBuffer, X509Certificate> anchors = new LinkedHashMap<ByteBuffer, X509Certificate>();
+        final Map<X509Certificate, List<String>> sources = new LinkedHashMap<X509Certificate, List<String>>();
+        for (final MultiTrustSSLContextBuilder.TrustMaterial material : merged) {
+            final String source = sourceOf(material, trustMaterial.indexOf(material));
+            for (final X509TrustManager trustManager : MultiTrustSSLContextBuilder.toX509TrustManagers(List.of(material))) {
+                for (final X509Certificate anchor : trustManager.getAcceptedIssuers()) {
+                    final ByteBuffer fingerprint = ByteBuffer.wrap(Fingerprints.sha256(anchor));
+                    final X509Certificate existing = anchors.putIfAbsent(fingerprint, anchor);
+                    final List<String> anchorSources = sources.computeIfAbsent(existing != null ? existing : anchor,
+                        k -> new ArrayList<String>(1));
+                    if (!anchorSources.contains(source)) {
+                        anchorSources.add(source);
+                    }
+                }
+            }
+        }
+        final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try {
+            keyStore.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        final HexFormat hex = HexFormat.of();
+        for (final Map.Entry<ByteBuffer, X509Certificate> anchor : anchors.entrySet()) {
+            keyStore.setCertificateEntry(hex.formatHex(anchor.getKey().array()), anchor.getValue());
+        }
+        final TrustManagerFactory factory = TrustManagerFactory.getInstance(PKIX);
+        factory.init(keyStore);
+        for (final TrustManager trustManager : factory.getTrustManagers()) {
+            if (trustManager instanceof X509ExtendedTrustManager) {
+                for (final Map.Entry<X509Certificate, List<String>> entry : sources.entrySet()) {
+                    entry.setValue(Collections.unmodifiableList(entry.getValue()));
+                }
+                return new MergedX509TrustManager((X509ExtendedTrustManager) trustManager, sources,
+                    PkixX509TrustManager.isPlain(factory));
+            }
+        }
+        throw new GeneralSecurityException("No X509ExtendedTrustManager from " + factory.getAlgorithm());
+    }
+
+    private static String sourceOf(final MultiTrustSSLContextBuilder.TrustMaterial material, final int position) {
+        if (material.file != null) {
+            return material.file.getPath();
+        }
+        return material.keyStore != null ? "trust material #" + position : "default trust store";
+    }
+
+    /**
+     * Returns the merged anchors with the trust stores each of them came from.
+     */
+    Map<X509Certificate, List<String>> getAnchorSources() {
+        return anchorSources;
+    }
+
+    /**
+     * Returns whether the merged anchors are validated the plain PKIX way.
+     *
+     * @see PkixX509TrustManager
+     */
+    boolean isPlain() {
+        return plain;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        trustManager.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        trustManager.checkServerTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+        trustManager.checkClientTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+        trustManager.checkServerTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        trustManager.checkClientTrusted(chain, authType, engine);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        trustManager.checkServerTrusted(chain, authType, engine);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return trustManager.getAcceptedIssuers();
+    }
+
+    @Override
+    public String toString() {
+        return "[anchors=" + anchorSources.size() + "]";
+    }
+}
@@ -12,10 +12,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
 import java.net.URL;
+import java.nio.file.Path;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
 
 /**
  * Builder for {@link javax.net.ssl.SSLContext} instances.
@@ -33,16 +45,39 @@ import java.util.*;
 public class MultiTrustSSLContextBuilder {
 
     static final String TLS = "TLS";
+    static final int WARM_UP_HANDSHAKES = 100;
+    static final int WARM_UP_TRUST_CHECKS = 1000;
 
     private String protocol;
-    private final Set<KeyManager> keyManagers;
+    private final List<CompletableFuture<KeyMaterial>> keyMaterial;
     private String keyManagerFactoryAlgorithm = KeyManagerFactory.getDefaultAlgorithm();
     private String keyStoreType = KeyStore.getDefaultType();
-    private final Set<TrustManager> trustManagers;
+    private final List<CompletableFuture<TrustMaterial>> trustMaterial;
     private String trustManagerFactoryAlgorithm = TrustManagerFactory.getDefaultAlgorithm();
     private SecureRandom secureRandom;
     private Provider provider;
     private TrustManagerStrategy trustManagerStrategy;
+    private TrustVerdictCache verdictCache;
+    private TrustRejectionCache rejectionCache;
+    private TrustPathCache pathCache;
+    private SpkiPinSet spkiPins;
+    private boolean strictPinning;
+    private Duration failureLogInterval;
+    private TrustMetrics trustMetrics;
+    private CrlRevocationIndex revocationIndex;
+    private Executor parallelValidationExecutor;
+    private Duration parallelValidationDeadline;
+    private Predicate<X509Certificate> acceptedIssuersFilter;
+    private int maxAcceptedIssuers = Integer.MAX_VALUE;
+    private boolean sniKeySelection;
+    private boolean mergeTrustAnchors;
+    private Executor loadExecutor;
+    private ExecutorService defaultLoadExecutor;
+    private String[] enabledProtocols;
+    private String[] enabledCipherSuites;
+    private SSLEngineFactory.ClientAuth clientAuth;
+    private Executor delegatedTaskExecutor;
+    private final Map<TrustStrategy, PemTrustSource> pemTrust = new IdentityHashMap<TrustStrategy, PemTrustSource>();
 
     public static MultiTrustSSLContextBuilder create() {
         return new MultiTrustSSLContextBuilder();
@@ -50,8 +85,8 @@ public class MultiTrustSSLContextBuilder {
 
     public MultiTrustSSLContextBuilder() {
         super();
-        this.keyManagers = new LinkedHashSet<KeyManager>();
-        this.trustManagers = new LinkedHashSet<TrustManager>();
+        this.keyMaterial = new ArrayList<CompletableFuture<KeyMaterial>>();
+        this.trustMaterial = new ArrayList<CompletableFuture<TrustMaterial>>();
     }
 
     /**
@@ -170,25 +205,178 @@ public class MultiTrustSSLContextBuilder {
         return this;
     }
 
+    /**
+     * Hands trust failures to a batch strategy on a background thread instead of the handshake thread. Whether
+     * the handshake fails is decided by the synchronous strategy the {@link AsyncTrustManagerStrategy} was created
+     * with. The strategy and its dispatcher thread stay owned by the caller, who closes it once the contexts
+     * built with it are no longer used.
+     *
+     * @param asyncStrategy the strategy buffering the failures for its dispatcher thread
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setAsyncTrustManagerStrategy(final AsyncTrustManagerStrategy asyncStrategy) {
+        Args.notNull(asyncStrategy, "Async trust manager strategy");
+        this.trustManagerStrategy = asyncStrategy;
+        return this;
+    }
+
+    /**
+     * Enables caching of positive trust verdicts in the composite trust manager.
+     *
+     * @param verdictCache the verdict cache, {@code null} to disable caching
+     * @return this builder
+     * @see TrustVerdictCache
+     */
+    public MultiTrustSSLContextBuilder setVerdictCache(final TrustVerdictCache verdictCache) {
+        this.verdictCache = verdictCache;
+        return this;
+    }
+
+    /**
+     * Enables caching of validated intermediate-to-anchor paths in the composite trust manager.
+     *
+     * @param pathCache the path cache, {@code null} to disable caching
+     * @return this builder
+     * @see TrustPathCache
+     */
+    public MultiTrustSSLContextBuilder setPathCache(final TrustPathCache pathCache) {
+        this.pathCache = pathCache;
+        return this;
+    }
+
+    /**
+     * Pins public keys in the composite trust manager.
+     *
+     * @param spkiPins the pinned keys, {@code null} to disable pinning
+     * @param strict   whether chains without a pinned key are rejected even if a trust store accepts them
+     * @return this builder
+     * @see CompositeX509TrustManager#setSpkiPins(SpkiPinSet, boolean)
+     */
+    public MultiTrustSSLContextBuilder setSpkiPins(final SpkiPinSet spkiPins, final boolean strict) {
+        this.spkiPins = spkiPins;
+        this.strictPinning = strict;
+        return this;
+    }
+
+    /**
+     * Enables caching of rejected chains in the composite trust manager.
+     *
+     * @param rejectionCache the rejection cache, {@code null} to disable caching
+     * @return this builder
+     * @see TrustRejectionCache
+     */
+    public MultiTrustSSLContextBuilder setRejectionCache(final TrustRejectionCache rejectionCache) {
+        this.rejectionCache = rejectionCache;
+        return this;
+    }
+
+    /**
+     * Limits trust failure logging of the composite trust manager to one aggregated message per interval.
+     *
+     * @param failureLogInterval the minimum time between two failure messages, {@code null} to log every failure
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setFailureLogInterval(final Duration failureLogInterval) {
+        this.failureLogInterval = failureLogInterval;
+        return this;
+    }
+
+    /**
+     * Instruments the composite trust manager, e.g. with a {@link TrustMetricsRecorder} or {@link JfrTrustMetrics}.
+     *
+     * @param trustMetrics the metrics to record to, {@code null} to disable instrumentation
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setTrustMetrics(final TrustMetrics trustMetrics) {
+        this.trustMetrics = trustMetrics;
+        return this;
+    }
+
+    /**
+     * Rejects chains containing a certificate revoked by one of the CRLs of the index.
+     *
+     * @param revocationIndex the CRL index, {@code null} to disable the check
+     * @return this builder
+     * @see CrlRevocationIndex
+     */
+    public MultiTrustSSLContextBuilder setRevocationIndex(final CrlRevocationIndex revocationIndex) {
+        this.revocationIndex = revocationIndex;
+        return this;
+    }
+
+    /**
+     * Validates chains with all candidate trust stores concurrently on the given executor. The executor stays
+     * owned by the caller, who shuts it down once the contexts built with it are no longer used.
+     *
+     * @param executor the executor running the validations, {@code null} to validate sequentially
+     * @param deadline the maximum time a handshake waits for the trust stores
+     * @return this builder
+     * @see CompositeX509TrustManager#setParallelValidation(Executor, Duration)
+     */
+    public MultiTrustSSLContextBuilder setParallelValidation(final Executor executor, final Duration deadline) {
+        this.parallelValidationExecutor = executor;
+        this.parallelValidationDeadline = deadline;
+        return this;
+    }
+
+    /**
+     * Restricts the CA names advertised to clients when requesting client authentication.
+     *
+     * @param acceptedIssuersFilter the issuers to advertise, {@code null} to advertise all of them
+     * @return this builder
+     * @see CompositeX509TrustManager#setAcceptedIssuersFilter(Predicate)
+     */
+    public MultiTrustSSLContextBuilder setAcceptedIssuersFilter(final Predicate<X509Certificate> acceptedIssuersFilter) {
+        this.acceptedIssuersFilter = acceptedIssuersFilter;
+        return this;
+    }
+
+    /**
+     * Caps the number of CA names advertised to clients when requesting client authentication.
+     *
+     * @param maxAcceptedIssuers the maximum number of advertised issuers
+     * @return this builder
+     * @see CompositeX509TrustManager#setMaxAcceptedIssuers(int)
+     */
+    public MultiTrustSSLContextBuilder setMaxAcceptedIssuers(final int maxAcceptedIssuers) {
+        this.maxAcceptedIssuers = maxAcceptedIssuers;
+        return this;
+    }
+
+    /**
+     * Chooses the server certificate by the host name the client requested through SNI, matched exactly or by
+     * wildcard against the DNS subject alternative names of the certificates. Without a requested host name or a
+     * matching certificate the alias is chosen by the {@link PrivateKeyStrategy} as before. Applies to key
+     * material loaded after this call.
+     *
+     * @param sniKeySelection whether server certificates are selected by SNI host name
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setSniKeySelection(final boolean sniKeySelection) {
+        this.sniKeySelection = sniKeySelection;
+        return this;
+    }
+
+    /**
+     * Merges the anchors of all trust stores loaded without a trust strategy and validated by the default PKIX
+     * algorithm into a single trust manager, so a chain is built and validated once instead of once per store.
+     * The merged trust manager takes the position of the first merged store; stores with a trust strategy or
+     * another algorithm keep their own delegate. The stores of each merged anchor are reported by
+     * {@link CompositeX509TrustManager#getAnchorSources()}.
+     *
+     * @param mergeTrustAnchors whether plain PKIX trust stores are merged
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setMergeTrustAnchors(final boolean mergeTrustAnchors) {
+        this.mergeTrustAnchors = mergeTrustAnchors;
+        return this;
+    }
+
     public MultiTrustSSLContextBuilder loadTrustMaterial(
         final KeyStore truststore,
         final TrustStrategy trustStrategy) throws NoSuchAlgorithmException, KeyStoreException {
-        final TrustManagerFactory tmfactory = TrustManagerFactory
-            .getInstance(trustManagerFactoryAlgorithm == null ? TrustManagerFactory.getDefaultAlgorithm()
-                : trustManagerFactoryAlgorithm);
-        tmfactory.init(truststore);
-        final TrustManager[] tms = tmfactory.getTrustManagers();
-        if (tms != null) {
-            if (trustStrategy != null) {
-                for (int i = 0; i < tms.length; i++) {
-                    final TrustManager tm = tms[i];
-                    if (tm instanceof X509TrustManager) {
-                        tms[i] = new MultiTrustSSLContextBuilder.TrustManagerDelegate((X509TrustManager) tm, trustStrategy);
-                    }
-                }
-            }
-            Collections.addAll(this.trustManagers, tms);
-        }
+        this.trustMaterial.add(CompletableFuture.completedFuture(
+            new TrustMaterial(null, null, null, trustManagerFactoryAlgorithm, truststore, trustStrategy)));
         return this;
     }
 
@@ -197,19 +385,19 @@ public class MultiTrustSSLContextBuilder {
         return loadTrustMaterial(null, trustStrategy);
     }
 
+    /**
+     * Loads trust material from a key store file. The file is watched for changes by contexts built with
+     * {@link #buildReloadable(java.time.Duration)}.
+     */
     public MultiTrustSSLContextBuilder loadTrustMaterial(
         final File file,
         final char[] storePassword,
         final TrustStrategy trustStrategy) throws NoSuchAlgorithmException, KeyStoreException, CertificateException, IOException {
         Args.notNull(file, "Truststore file");
-        final KeyStore trustStore = KeyStore.getInstance(keyStoreType);
-        final FileInputStream inStream = new FileInputStream(file);
-        try {
-            trustStore.load(inStream, storePassword);
-        } finally {
-            inStream.close();
-        }
-        return loadTrustMaterial(trustStore, trustStrategy);
+        final KeyStore trustStore = loadKeyStore(keyStoreType, file, storePassword);
+        this.trustMaterial.add(CompletableFuture.completedFuture(new TrustMaterial(file, storePassword, keyStoreType,
+            trustManagerFactoryAlgorithm, trustStore, trustStrategy)));
+        return this;
     }
 
     public MultiTrustSSLContextBuilder loadTrustMaterial(
@@ -228,13 +416,7 @@ public class MultiTrustSSLContextBuilder {
         final char[] storePassword,
         final TrustStrategy trustStrategy) throws NoSuchAlgorithmException, KeyStoreException, CertificateException, IOException {
         Args.notNull(url, "Truststore URL");
-        final KeyStore trustStore = KeyStore.getInstance(keyStoreType);
-        final InputStream inStream = url.openStream();
-        try {
-            trustStore.load(inStream, storePassword);
-        } finally {
-            inStream.close();
-        }
+        final KeyStore trustStore = loadKeyStore(keyStoreType, url, storePassword);
         return loadTrustMaterial(trustStore, trustStrategy);
     }
 
@@ -249,22 +431,8 @@ public class MultiTrustSSLContextBuilder {
         final char[] keyPassword,
         final PrivateKeyStrategy aliasStrategy)
         throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException {
-        final KeyManagerFactory kmfactory = KeyManagerFactory
-            .getInstance(keyManagerFactoryAlgorithm == null ? KeyManagerFactory.getDefaultAlgorithm()
-                : keyManagerFactoryAlgorithm);
-        kmfactory.init(keystore, keyPassword);
-        final KeyManager[] kms = kmfactory.getKeyManagers();
-        if (kms != null) {
-            if (aliasStrategy != null) {
-                for (int i = 0; i < kms.length; i++) {
-                    final KeyManager km = kms[i];
-                    if (km instanceof X509ExtendedKeyManager) {
-                        kms[i] = new MultiTrustSSLContextBuilder.KeyManagerDelegate((X509ExtendedKeyManager) km, aliasStrategy);
-                    }
-                }
-            }
-            Collections.addAll(keyManagers, kms);
-        }
+        this.keyMaterial.add(CompletableFuture.completedFuture(new KeyMaterial(null, null, null,
+            keyManagerFactoryAlgorithm, keystore, keyPassword, aliasStrategy, sniKeySelection)));
         return this;
     }
 
@@ -274,20 +442,20 @@ public class MultiTrustSSLContextBuilder {
         return loadKeyMaterial(keystore, keyPassword, null);
     }
 
+    /**
+     * Loads key material from a key store file. The file is watched for changes by contexts built with
+     * {@link #buildReloadable(java.time.Duration)}.
+     */
     public MultiTrustSSLContextBuilder loadKeyMaterial(
         final File file,
         final char[] storePassword,
         final char[] keyPassword,
         final PrivateKeyStrategy aliasStrategy) throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException, CertificateException, IOException {
         Args.notNull(file, "Keystore file");
-        final KeyStore identityStore = KeyStore.getInstance(keyStoreType);
-        final FileInputStream inStream = new FileInputStream(file);
-        try {
-            identityStore.load(inStream, storePassword);
-        } finally {
-            inStream.close();
-        }
-        return loadKeyMaterial(identityStore, keyPassword, aliasStrategy);
+        final KeyStore identityStore = loadKeyStore(keyStoreType, file, storePassword);
+        this.keyMaterial.add(CompletableFuture.completedFuture(new KeyMaterial(file, storePassword, keyStoreType,
+            keyManagerFactoryAlgorithm, identityStore, keyPassword, aliasStrategy, sniKeySelection)));
+        return this;
     }
 
     public MultiTrustSSLContextBuilder loadKeyMaterial(
@@ -303,13 +471,7 @@ public class MultiTrustSSLContextBuilder {
         final char[] keyPassword,
         final PrivateKeyStrategy aliasStrategy) throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException, CertificateException, IOException {
         Args.notNull(url, "Keystore URL");
-        final KeyStore identityStore = KeyStore.getInstance(keyStoreType);
-        final InputStream inStream = url.openStream();
-        try {
-            identityStore.load(inStream, storePassword);
-        } finally {
-            inStream.close();
-        }
+        final KeyStore identityStore = loadKeyStore(keyStoreType, url, storePassword);
         return loadKeyMaterial(identityStore, keyPassword, aliasStrategy);
     }
 
@@ -320,6 +482,274 @@ public class MultiTrustSSLContextBuilder {
         return loadKeyMaterial(url, storePassword, keyPassword, null);
     }
 
+    /**
+     * Loads trust anchors from a PEM bundle, or from all PEM files of a directory.
+     * <p>
+     * The anchors of all PEM files loaded with the same trust strategy are deduplicated by fingerprint and
+     * consolidated into one trust store, placed among the trust material at the position of the first such call.
+     * Files are streamed and their certificates decoded in parallel. Files loaded after a build are part of the
+     * contexts built afterwards.
+     *
+     * @param path          a PEM file or a directory of PEM files
+     * @param trustStrategy the trust strategy of the anchors, {@code null} for none
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder loadPemTrustMaterial(
+        final Path path,
+        final TrustStrategy trustStrategy) throws CertificateException, IOException {
+        Args.notNull(path, "PEM path");
+        PemTrustSource source = this.pemTrust.get(trustStrategy);
+        if (source == null) {
+            source = new PemTrustSource(trustManagerFactoryAlgorithm, trustStrategy);
+            this.pemTrust.put(trustStrategy, source);
+            this.trustMaterial.add(source.material());
+        }
+        source.add(path);
+        return this;
+    }
+
+    public MultiTrustSSLContextBuilder loadPemTrustMaterial(
+        final Path path) throws CertificateException, IOException {
+        return loadPemTrustMaterial(path, null);
+    }
+
+    /**
+     * Loads trust anchors from a snapshot compiled with {@link TrustSnapshot}. The file is memory-mapped and only
+     * its index is verified here; anchors are decoded when a chain first refers to them.
+     *
+     * @param snapshot      the snapshot file
+     * @param trustStrategy the trust strategy of the anchors, {@code null} for none
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder loadTrustSnapshot(
+        final Path snapshot,
+        final TrustStrategy trustStrategy) throws IOException {
+        Args.notNull(snapshot, "Trust snapshot");
+        this.trustMaterial.add(CompletableFuture.completedFuture(
+            new TrustMaterial(TrustSnapshot.open(snapshot), trustManagerFactoryAlgorithm, trustStrategy)));
+        return this;
+    }
+
+    public MultiTrustSSLContextBuilder loadTrustSnapshot(
+        final Path snapshot) throws IOException {
+        return loadTrustSnapshot(snapshot, null);
+    }
+
+    /**
+     * Sets the executor reading and parsing the key stores passed to the {@code load...Async} methods. By default
+     * they are loaded on virtual threads, or on a cached pool of daemon threads where virtual threads are not
+     * available, by an executor the builder shuts down once a build waited for the loads. An executor set here
+     * stays owned by the caller.
+     *
+     * @param loadExecutor the executor loading key stores
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setLoadExecutor(final Executor loadExecutor) {
+        this.loadExecutor = loadExecutor;
+        return this;
+    }
+
+    /**
+     * Sets the protocols enabled on the engines of {@link #buildEngineFactory()}.
+     *
+     * @param enabledProtocols the protocols, {@code null} for the defaults of the context
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setEnabledProtocols(final String... enabledProtocols) {
+        this.enabledProtocols = enabledProtocols;
+        return this;
+    }
+
+    /**
+     * Sets the cipher suites enabled on the engines of {@link #buildEngineFactory()}.
+     *
+     * @param enabledCipherSuites the cipher suites, {@code null} for the defaults of the context
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setEnabledCipherSuites(final String... enabledCipherSuites) {
+        this.enabledCipherSuites = enabledCipherSuites;
+        return this;
+    }
+
+    /**
+     * Sets whether the server engines of {@link #buildEngineFactory()} request or require a client certificate.
+     *
+     * @param clientAuth the client authentication mode, {@code null} for none
+     * @return this builder
+     */
+    public MultiTrustSSLContextBuilder setClientAuth(final SSLEngineFactory.ClientAuth clientAuth) {
+        this.clientAuth = clientAuth;
+        return this;
+    }
+
+    /**
+     * Sets the executor running the delegated tasks of the engines of {@link #buildEngineFactory()}.
+     *
+     * @param delegatedTaskExecutor the executor, {@code null} for virtual threads where available
+     * @return this builder
+     * @see SSLEngineFactory#setDelegatedTaskExecutor(Executor)
+     */
+    public MultiTrustSSLContextBuilder setDelegatedTaskExecutor(final Executor delegatedTaskExecutor) {
+        this.delegatedTaskExecutor = delegatedTaskExecutor;
+        return this;
+    }
+
+    /**
+     * Loads trust material from a key store file on the load executor. The trust store keeps its position among
+     * the trust material of this builder, whatever the order in which loads complete; {@link #build()} waits for
+     * it. Key store type and algorithm are taken as set when this method is called.
+     *
+     * @see #whenLoaded()
+     */
+    public MultiTrustSSLContextBuilder loadTrustMaterialAsync(
+        final File file,
+        final char[] storePassword,
+        final TrustStrategy trustStrategy) {
+        Args.notNull(file, "Truststore file");
+        final char[] password = storePassword != null ? storePassword.clone() : null;
+        final String type = this.keyStoreType;
+        final String algorithm = this.trustManagerFactoryAlgorithm;
+        this.trustMaterial.add(loadAsync(() -> new TrustMaterial(file, password, type, algorithm,
+            loadKeyStore(type, file, password), trustStrategy)));
+        return this;
+    }
+
+    public MultiTrustSSLContextBuilder loadTrustMaterialAsync(
+        final File file,
+        final char[] storePassword) {
+        return loadTrustMaterialAsync(file, storePassword, null);
+    }
+
+    /**
+     * Loads trust material from a URL on the load executor, like {@link #loadTrustMaterialAsync(File, char[], TrustStrategy)}.
+     */
+    public MultiTrustSSLContextBuilder loadTrustMaterialAsync(
+        final URL url,
+        final char[] storePassword,
+        final TrustStrategy trustStrategy) {
+        Args.notNull(url, "Truststore URL");
+        final char[] password = storePassword != null ? storePassword.clone() : null;
+        final String type = this.keyStoreType;
+        final String algorithm = this.trustManagerFactoryAlgorithm;
+        this.trustMaterial.add(loadAsync(() -> new TrustMaterial(null, null, null, algorithm,
+            loadKeyStore(type, url, password), trustStrategy)));
+        return this;
+    }
+
+    public MultiTrustSSLContextBuilder loadTrustMaterialAsync(
+        final URL url,
+        final char[] storePassword) {
+        return loadTrustMaterialAsync(url, storePassword, null);
+    }
+
+    /**
+     * Loads key material from a key store file on the load executor. The key store keeps its position among
+     * the key material of this builder, whatever the order in which loads complete; {@link #build()} waits for
+     * it. Key store type, algorithm and SNI selection are taken as set when this method is called.
+     *
+     * @see #whenLoaded()
+     */
+    public MultiTrustSSLContextBuilder loadKeyMaterialAsync(
+        final File file,
+        final char[] storePassword,
+        final char[] keyPassword,
+        final PrivateKeyStrategy aliasStrategy) {
+        Args.notNull(file, "Keystore file");
+        final char[] password = storePassword != null ? storePassword.clone() : null;
+        final char[] keyPass = keyPassword != null ? keyPassword.clone() : null;
+        final String type = this.keyStoreType;
+        final String algorithm = this.keyManagerFactoryAlgorithm;
+        final boolean sni = this.sniKeySelection;
+        this.keyMaterial.add(loadAsync(() -> new KeyMaterial(file, password, type, algorithm,
+            loadKeyStore(type, file, password), keyPass, aliasStrategy, sni)));
+        return this;
+    }
+
+    public MultiTrustSSLContextBuilder loadKeyMaterialAsync(
+        final File file,
+        final char[] storePassword,
+        final char[] keyPassword) {
+        return loadKeyMaterialAsync(file, storePassword, keyPassword, null);
+    }
+
+    /**
+     * Loads key material from a URL on the load executor, like
+     * {@link #loadKeyMaterialAsync(File, char[], char[], PrivateKeyStrategy)}.
+     */
+    public MultiTrustSSLContextBuilder loadKeyMaterialAsync(
+        final URL url,
+        final char[] storePassword,
+        final char[] keyPassword,
+        final PrivateKeyStrategy aliasStrategy) {
+        Args.notNull(url, "Keystore URL");
+        final char[] password = storePassword != null ? storePassword.clone() : null;
+        final char[] keyPass = keyPassword != null ? keyPassword.clone() : null;
+        final String type = this.keyStoreType;
+        final String algorithm = this.keyManagerFactoryAlgorithm;
+        final boolean sni = this.sniKeySelection;
+        this.keyMaterial.add(loadAsync(() -> new KeyMaterial(null, null, null, algorithm,
+            loadKeyStore(type, url, password), keyPass, aliasStrategy, sni)));
+        return this;
+    }
+
+    public MultiTrustSSLContextBuilder loadKeyMaterialAsync(
+        final URL url,
+        final char[] storePassword,
+        final char[] keyPassword) {
+        return loadKeyMaterialAsync(url, storePassword, keyPassword, null);
+    }
+
+    /**
+     * Returns a future completing with this builder once all trust and key material loaded so far is available,
+     * or exceptionally with the first load failure.
+     */
+    public CompletableFuture<MultiTrustSSLContextBuilder> whenLoaded() {
+        completePemTrustMaterial();
+        final List<CompletableFuture<?>> loads = new ArrayList<CompletableFuture<?>>(trustMaterial);
+        loads.addAll(keyMaterial);
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenApply(loaded -> this);
+    }
+
+    private <T> CompletableFuture<T> loadAsync(final Callable<T> loader) {
+        Executor executor = this.loadExecutor;
+        if (executor == null) {
+            if (this.defaultLoadExecutor == null) {
+                this.defaultLoadExecutor = DefaultExecutors.newVirtualThreadPerTaskExecutor("ssl-forge-loader");
+            }
+            executor = this.defaultLoadExecutor;
+        }
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(loader.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for the pending loads and returns the material in the order it was declared.
+     */
+    private static <T> List<T> await(final List<CompletableFuture<T>> loads, final String kind) throws KeyManagementException {
+        final List<T> materials = new ArrayList<T>(loads.size());
+        for (final CompletableFuture<T> load : loads) {
+            try {
+                materials.add(load.join());
+            } catch (CompletionException | CancellationException e) {
+                final KeyManagementException failure = new KeyManagementException("Could not load " + kind);
+                failure.initCause(e.getCause() != null ? e.getCause() : e);
+                throw failure;
+            }
+        }
+        return materials;
+    }
+
     protected void initSSLContext(
         final SSLContext sslContext,
         final Collection<KeyManager> keyManagers,
@@ -332,18 +762,424 @@ public class MultiTrustSSLContextBuilder {
     }
 
     public SSLContext build() throws NoSuchAlgorithmException, KeyManagementException {
-        final SSLContext sslContext;
+        return build(getTrustMaterial(), getKeyMaterial());
+    }
+
+    /**
+     * Builds an {@link SSLContext} and an engine factory applying the enabled protocols and cipher suites, the
+     * client authentication mode and the delegated task executor of this builder.
+     *
+     * @return the engine factory
+     */
+    public SSLEngineFactory buildEngineFactory() throws NoSuchAlgorithmException, KeyManagementException {
+        return new SSLEngineFactory(build())
+            .setProtocols(enabledProtocols)
+            .setCipherSuites(enabledCipherSuites)
+            .setClientAuth(clientAuth)
+            .setDelegatedTaskExecutor(delegatedTaskExecutor);
+    }
+
+    /**
+     * Warms up with {@value #WARM_UP_HANDSHAKES} handshakes and {@value #WARM_UP_TRUST_CHECKS} trust checks.
+     *
+     * @see #warmUp(int, int)
+     */
+    public WarmUpReport warmUp() throws NoSuchAlgorithmException, KeyManagementException {
+        return warmUp(WARM_UP_HANDSHAKES, WARM_UP_TRUST_CHECKS);
+    }
+
+    /**
+     * Runs synthetic mutual-TLS handshakes over in-memory engine pairs and trust checks against a composite trust
+     * manager, so that the first handshakes of the context built afterwards do not pay for class loading, provider
+     * initialization and interpretation. Call it before {@link #build()} and report readiness once it returned.
+     * <p>
+     * The handshakes use the protocol, provider, secure random, manager factory algorithms, enabled protocols and
+     * cipher suites of this builder, with a throwaway certificate generated in memory. They and the trust checks are
+     * validated by a composite trust manager wired like the one {@link #build()} creates: the trust material of this
+     * builder, awaited like a build does, with its strategy, caches, pins, revocation index and parallel validation,
+     * and with the generated authority as an additional trust store. Chains accepted during the warm-up may thus
+     * occupy cache entries, which the built context never reuses. The trust metrics of this builder are left out,
+     * so they only count real peers.
+     *
+     * @param handshakes  the number of full handshakes
+     * @param trustChecks the number of trust checks, alternating between server and client side
+     * @return the report with the time the warm-up took, certificate generation excluded
+     */
+    public WarmUpReport warmUp(final int handshakes, final int trustChecks)
+        throws NoSuchAlgorithmException, KeyManagementException {
+        Args.notNegative(handshakes, "Handshakes");
+        Args.notNegative(trustChecks, "Trust checks");
+        final WarmUpMaterial material;
+        try {
+            material = WarmUpMaterial.generate();
+        } catch (final NoSuchAlgorithmException e) {
+            throw e;
+        } catch (final GeneralSecurityException e) {
+            throw new KeyManagementException("Cannot create warm-up material", e);
+        }
+        final long start = System.nanoTime();
+        final CompositeX509TrustManager trustManager;
+        final SSLContext sslContext = newSSLContext();
+        try {
+            final List<TrustMaterial> trust = new ArrayList<TrustMaterial>(getTrustMaterial());
+            trust.add(new TrustMaterial(null, null, null, trustManagerFactoryAlgorithm, material.trustStore(), null));
+            final KeyMaterial key = new KeyMaterial(null, null, null, keyManagerFactoryAlgorithm,
+                material.keyStore, material.password, null, sniKeySelection);
+            trustManager = toCompositeTrustManager(trust).setTrustMetrics(null);
+            initSSLContext(sslContext, toKeyManagers(List.of(key)), List.of(trustManager), secureRandom);
+        } catch (final NoSuchAlgorithmException | KeyManagementException e) {
+            throw e;
+        } catch (final GeneralSecurityException e) {
+            throw new KeyManagementException("Cannot create warm-up material", e);
+        }
+        final SSLEngineFactory engineFactory = new SSLEngineFactory(sslContext)
+            .setProtocols(enabledProtocols)
+            .setCipherSuites(enabledCipherSuites)
+            .setClientAuth(SSLEngineFactory.ClientAuth.NEED);
+        final X509Certificate[] chain = {material.certificate};
+        return new WarmUp(engineFactory, trustManager, chain).run(handshakes, trustChecks, start);
+    }
+
+    /**
+     * Builds an {@link SSLContext}, or returns the one already built by the registry for an identical
+     * configuration. The context is shared until every handle acquired for it is closed.
+     *
+     * @param registry the registry sharing contexts between builders
+     * @return the handle to the shared context, to be closed when no longer used
+     * @see SSLContextRegistry#acquire(MultiTrustSSLContextBuilder)
+     */
+    public SSLContextRegistry.SharedSSLContext buildShared(final SSLContextRegistry registry)
+        throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
+        Args.notNull(registry, "Registry");
+        return registry.acquire(this);
+    }
+
+    SSLContext build(final List<TrustMaterial> trustMaterial, final List<KeyMaterial> keyMaterial)
+        throws NoSuchAlgorithmException, KeyManagementException {
+        final SSLContext sslContext = newSSLContext();
+        initSSLContext(sslContext, toKeyManagers(keyMaterial), List.of(toCompositeTrustManager(trustMaterial)),
+            secureRandom);
+        return sslContext;
+    }
+
+    List<TrustMaterial> getTrustMaterial() throws KeyManagementException {
+        completePemTrustMaterial();
+        try {
+            return await(trustMaterial, "trust material");
+        } finally {
+            shutdownDefaultLoadExecutor();
+        }
+    }
+
+    /**
+     * Creates the trust material of the PEM sources from the anchors added so far, replacing the material of a
+     * source that got anchors since its material was created.
+     */
+    private void completePemTrustMaterial() {
+        for (final PemTrustSource source : pemTrust.values()) {
+            final CompletableFuture<TrustMaterial> previous = source.material();
+            final CompletableFuture<TrustMaterial> current = source.complete();
+            if (current != previous) {
+                this.trustMaterial.set(this.trustMaterial.indexOf(previous), current);
+            }
+        }
+    }
+
+    List<KeyMaterial> getKeyMaterial() throws KeyManagementException {
+        try {
+            return await(keyMaterial, "key material");
+        } finally {
+            shutdownDefaultLoadExecutor();
+        }
+    }
+
+    /**
+     * Shuts down the default load executor once a build waited for the material. Loads still running on it, e.g.
+     * key material while the trust material was awaited, complete; asynchronous loads after the build start a new
+     * executor.
+     */
+    private void shutdownDefaultLoadExecutor() {
+        if (this.defaultLoadExecutor != null) {
+            this.defaultLoadExecutor.shutdown();
+            this.defaultLoadExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the key of the settings of this builder, without its trust and key material.
+     */
+    ConfigurationKey.Builder configurationKey() {
+        return ConfigurationKey.builder()
+            .add(protocol != null ? protocol : TLS)
+            .addReference(provider)
+            .addReference(secureRandom)
+            .addReference(trustManagerStrategy)
+            .addReference(verdictCache)
+            .addReference(rejectionCache)
+            .addReference(pathCache)
+            .addReference(spkiPins)
+            .add(strictPinning)
+            .add(failureLogInterval != null ? failureLogInterval.toNanos() : -1L)
+            .addReference(trustMetrics)
+            .addReference(revocationIndex)
+            .addReference(parallelValidationExecutor)
+            .add(parallelValidationDeadline != null ? parallelValidationDeadline.toNanos() : -1L)
+            .addReference(acceptedIssuersFilter)
+            .add(maxAcceptedIssuers)
+            .add(mergeTrustAnchors);
+    }
+
+    /**
+     * Builds an {@link SSLContext} whose trust and key material is reloaded when the key store files passed to
+     * {@code loadTrustMaterial(File, ...)} and {@code loadKeyMaterial(File, ...)} change.
+     * <p>
+     * The files are polled on a background thread by modification time, size and content hash. Changed files
+     * are parsed on that thread and the delegates of the composite trust manager and the key manager are
+     * swapped atomically, so handshakes never block on a reload nor see a partially updated state.
+     * Material loaded from a {@link KeyStore} instance or a {@link URL} is kept as is.
+     *
+     * @param pollInterval how often the key store files are checked for changes
+     * @return the reloadable context, to be closed when no longer used
+     */
+    public ReloadableSSLContext buildReloadable(final Duration pollInterval) throws NoSuchAlgorithmException, KeyManagementException {
+        Args.notNull(pollInterval, "Poll interval");
+        final SSLContext sslContext = newSSLContext();
+        final List<TrustMaterial> trustMaterial = getTrustMaterial();
+        final List<KeyMaterial> keyMaterial = getKeyMaterial();
+        final CompositeX509TrustManager trustManager = toCompositeTrustManager(trustMaterial);
+        final List<KeyManager> keyManagers = toKeyManagers(keyMaterial);
+        final ReloadableX509KeyManager keyManager = keyManagers.stream()
+            .filter(X509ExtendedKeyManager.class::isInstance)
+            .map(km -> new ReloadableX509KeyManager((X509ExtendedKeyManager) km))
+            .findFirst()
+            .orElse(null);
+        initSSLContext(sslContext, keyManager != null ? List.of(keyManager) : keyManagers, List.of(trustManager),
+            secureRandom);
+        return new ReloadableSSLContext(sslContext, trustManager, trustMaterial, mergeTrustAnchors, keyManager, keyMaterial,
+            pollInterval);
+    }
+
+    private SSLContext newSSLContext() throws NoSuchAlgorithmException {
         final String protocolStr = this.protocol != null ? this.protocol : TLS;
         if (this.provider != null) {
-            sslContext = SSLContext.getInstance(protocolStr, this.provider);
-        } else {
-            sslContext = SSLContext.getInstance(protocolStr);
+            return SSLContext.getInstance(protocolStr, this.provider);
+        }
+        return SSLContext.getInstance(protocolStr);
+    }
+
+    static KeyStore loadKeyStore(
+        final String keyStoreType,
+        final File file,
+        final char[] storePassword) throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
+        final KeyStore keyStore = KeyStore.getInstance(keyStoreType);
+        final FileInputStream inStream = new FileInputStream(file);
+        try {
+            keyStore.load(inStream, storePassword);
+        } finally {
+            inStream.close();
+        }
+        return keyStore;
+    }
+
+    static KeyStore loadKeyStore(
+        final String keyStoreType,
+        final URL url,
+        final char[] storePassword) throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
+        final KeyStore keyStore = KeyStore.getInstance(keyStoreType);
+        final InputStream inStream = url.openStream();
+        try {
+            keyStore.load(inStream, storePassword);
+        } finally {
+            inStream.close();
+        }
+        return keyStore;
+    }
+
+    static List<TrustManager> toTrustManagers(final List<TrustMaterial> trustMaterial) {
+        final Set<TrustManager> trustManagers = new LinkedHashSet<TrustManager>();
+        for (final TrustMaterial material : trustMaterial) {
+            Collections.addAll(trustManagers, material.trustManagers);
+        }
+        return new ArrayList<TrustManager>(trustManagers);
+    }
+
+    static List<KeyManager> toKeyManagers(final List<KeyMaterial> keyMaterial) {
+        final Set<KeyManager> keyManagers = new LinkedHashSet<KeyManager>();
+        for (final KeyMaterial material : keyMaterial) {
+            Collections.addAll(keyManagers, material.keyManagers);
+        }
+        return new ArrayList<KeyManager>(keyManagers);
+    }
+
+    /**
+     * Trust managers created from one {@code loadTrustMaterial} call, together with what is needed to
+     * create them again from their source file.
+     */
+    static final class TrustMaterial {
+
+        final File file;
+        final char[] storePassword;
+        final String keyStoreType;
+        final String trustManagerFactoryAlgorithm;
+        final KeyStore keyStore;
+        final TrustStrategy trustStrategy;
+        final TrustSnapshot snapshot;
+        final TrustManager[] trustManagers;
+
+        TrustMaterial(
+            final File file,
+            final char[] storePassword,
+            final String keyStoreType,
+            final String trustManagerFactoryAlgorithm,
+            final KeyStore keyStore,
+            final TrustStrategy trustStrategy) throws NoSuchAlgorithmException, KeyStoreException {
+            this.file = file;
+            this.storePassword = storePassword != null ? storePassword.clone() : null;
+            this.keyStoreType = keyStoreType;
+            this.trustManagerFactoryAlgorithm = trustManagerFactoryAlgorithm;
+            this.keyStore = keyStore;
+            this.trustStrategy = trustStrategy;
+            this.snapshot = null;
+            final TrustManagerFactory tmfactory = TrustManagerFactory
+                .getInstance(trustManagerFactoryAlgorithm == null ? TrustManagerFactory.getDefaultAlgorithm()
+                    : trustManagerFactoryAlgorithm);
+            tmfactory.init(keyStore);
+            final TrustManager[] tms = trustStrategy == null ? PkixX509TrustManager.of(tmfactory)
+                : tmfactory.getTrustManagers();
+            if (tms != null) {
+                if (trustStrategy != null) {
+                    for (int i = 0; i < tms.length; i++) {
+                        final TrustManager tm = tms[i];
+                        if (tm instanceof X509TrustManager) {
+                            tms[i] = new MultiTrustSSLContextBuilder.TrustManagerDelegate((X509TrustManager) tm, trustStrategy);
+                        }
+                    }
+                }
+                this.trustManagers = tms;
+            } else {
+                this.trustManagers = new TrustManager[0];
+            }
+        }
+
+        TrustMaterial(
+            final TrustSnapshot snapshot,
+            final String trustManagerFactoryAlgorithm,
+            final TrustStrategy trustStrategy) {
+            this.file = null;
+            this.storePassword = null;
+            this.keyStoreType = null;
+            this.trustManagerFactoryAlgorithm = trustManagerFactoryAlgorithm;
+            this.keyStore = null;
+            this.trustStrategy = trustStrategy;
+            this.snapshot = snapshot;
+            final X509TrustManager tm = new SnapshotX509TrustManager(snapshot, trustManagerFactoryAlgorithm);
+            this.trustManagers = new TrustManager[]{trustStrategy != null
+                ? new MultiTrustSSLContextBuilder.TrustManagerDelegate(tm, trustStrategy) : tm};
+        }
+
+        /**
+         * Returns the key identifying this material by key store or snapshot contents, algorithm and strategy.
+         */
+        ConfigurationKey key() throws KeyStoreException {
+            final ConfigurationKey.Builder key = ConfigurationKey.builder()
+                .add("trust")
+                .add(trustManagerFactoryAlgorithm)
+                .add(keyStore)
+                .addReference(trustStrategy);
+            if (snapshot != null) {
+                key.add(snapshot.checksum());
+            }
+            return key.build();
+        }
+
+        TrustMaterial reload() throws GeneralSecurityException, IOException {
+            return new TrustMaterial(file, storePassword, keyStoreType, trustManagerFactoryAlgorithm,
+                loadKeyStore(keyStoreType, file, storePassword), trustStrategy);
         }
-        initSSLContext(sslContext, keyManagers, toCompositeTrustManager(), secureRandom);
-        return sslContext;
     }
 
-    static class TrustManagerDelegate implements X509TrustManager {
+    /**
+     * Key managers created from one {@code loadKeyMaterial} call, together with what is needed to
+     * create them again from their source file.
+     */
+    static final class KeyMaterial {
+
+        final File file;
+        final char[] storePassword;
+        final String keyStoreType;
+        final String keyManagerFactoryAlgorithm;
+        final KeyStore keyStore;
+        final char[] keyPassword;
+        final PrivateKeyStrategy aliasStrategy;
+        final boolean sniKeySelection;
+        final KeyManager[] keyManagers;
+
+        KeyMaterial(
+            final File file,
+            final char[] storePassword,
+            final String keyStoreType,
+            final String keyManagerFactoryAlgorithm,
+            final KeyStore keyStore,
+            final char[] keyPassword,
+            final PrivateKeyStrategy aliasStrategy,
+            final boolean sniKeySelection) throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException {
+            this.file = file;
+            this.storePassword = storePassword != null ? storePassword.clone() : null;
+            this.keyStoreType = keyStoreType;
+            this.keyManagerFactoryAlgorithm = keyManagerFactoryAlgorithm;
+            this.keyStore = keyStore;
+            this.keyPassword = keyPassword != null ? keyPassword.clone() : null;
+            this.aliasStrategy = aliasStrategy;
+            this.sniKeySelection = sniKeySelection;
+            final KeyManagerFactory kmfactory = KeyManagerFactory
+                .getInstance(keyManagerFactoryAlgorithm == null ? KeyManagerFactory.getDefaultAlgorithm()
+                    : keyManagerFactoryAlgorithm);
+            kmfactory.init(keyStore, keyPassword);
+            final KeyManager[] kms = kmfactory.getKeyManagers();
+            if (kms != null) {
+                if (aliasStrategy != null) {
+                    for (int i = 0; i < kms.length; i++) {
+                        final KeyManager km = kms[i];
+                        if (km instanceof X509ExtendedKeyManager) {
+                            kms[i] = new MultiTrustSSLContextBuilder.KeyManagerDelegate((X509ExtendedKeyManager) km, aliasStrategy);
+                        }
+                    }
+                }
+                if (sniKeySelection) {
+                    for (int i = 0; i < kms.length; i++) {
+                        final KeyManager km = kms[i];
+                        if (km instanceof X509ExtendedKeyManager) {
+                            kms[i] = new SniX509KeyManager((X509ExtendedKeyManager) km);
+                        }
+                    }
+                }
+                this.keyManagers = kms;
+            } else {
+                this.keyManagers = new KeyManager[0];
+            }
+        }
+
+        /**
+         * Returns the key identifying this material by key store contents, key password, algorithm and strategy.
+         */
+        ConfigurationKey key() throws KeyStoreException {
+            return ConfigurationKey.builder()
+                .add("key")
+                .add(keyManagerFactoryAlgorithm)
+                .add(keyStore)
+                .add(keyPassword)
+                .addReference(aliasStrategy)
+                .add(sniKeySelection)
+                .build();
+        }
+
+        KeyMaterial reload() throws GeneralSecurityException, IOException {
+            return new KeyMaterial(file, storePassword, keyStoreType, keyManagerFactoryAlgorithm,
+                loadKeyStore(keyStoreType, file, storePassword), keyPassword, aliasStrategy, sniKeySelection);
+        }
+    }
+
+    static class TrustManagerDelegate extends X509ExtendedTrustManager {
 
         private final X509TrustManager trustManager;
         private final TrustStrategy trustStrategy;
@@ -368,6 +1204,40 @@ public class MultiTrustSSLContextBuilder {
             }
         }
 
+        @Override
+        public void checkClientTrusted(
+            final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+            new TrustCheck(chain, authType, true, socket, null).validate(this.trustManager);
+        }
+
+        @Override
+        public void checkServerTrusted(
+            final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+            final TrustCheck check = new TrustCheck(chain, authType, false, socket, null);
+            if (this.trustStrategy.isTrusted(chain, authType)) {
+                check.checkAdditionalTrust();
+            } else {
+                check.validate(this.trustManager);
+            }
+        }
+
+        @Override
+        public void checkClientTrusted(
+            final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+            new TrustCheck(chain, authType, true, null, engine).validate(this.trustManager);
+        }
+
+        @Override
+        public void checkServerTrusted(
+            final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+            final TrustCheck check = new TrustCheck(chain, authType, false, null, engine);
+            if (this.trustStrategy.isTrusted(chain, authType)) {
+                check.checkAdditionalTrust();
+            } else {
+                check.validate(this.trustManager);
+            }
+        }
+
         @Override
         public X509Certificate[] getAcceptedIssuers() {
             return this.trustManager.getAcceptedIssuers();
@@ -375,15 +1245,38 @@ public class MultiTrustSSLContextBuilder {
 
     }
 
+    /**
+     * Key manager choosing aliases through a {@link PrivateKeyStrategy}.
+     * <p>
+     * The alias maps handed to the strategy are built once per key type and issuer list and reused as immutable
+     * views, instead of being rebuilt on every handshake. The key material of a delegate never changes, reloading
+     * creates a new delegate; a cached map is only rebuilt once one of its certificates expires or becomes valid,
+     * because key managers may filter aliases by certificate validity.
+     * <p>
+     * Maps for issuer lists are keyed by what the peer sent, so only the most recently used ones are kept.
+     */
     static class KeyManagerDelegate extends X509ExtendedKeyManager {
 
+        private static final String[] SERVER_KEY_TYPES = {"RSA", "RSASSA-PSS", "EC", "EdDSA"};
+        private static final int MAX_ISSUER_ALIAS_TABLES = 64;
+
         private final X509ExtendedKeyManager keyManager;
         private final PrivateKeyStrategy aliasStrategy;
+        private final ConcurrentMap<String, AliasTable> serverAliases = new ConcurrentHashMap<String, AliasTable>();
+        private final Map<List<Object>, AliasTable> aliases = new LinkedHashMap<List<Object>, AliasTable>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, AliasTable> eldest) {
+                return size() > MAX_ISSUER_ALIAS_TABLES;
+            }
+        };
 
         KeyManagerDelegate(final X509ExtendedKeyManager keyManager, final PrivateKeyStrategy aliasStrategy) {
             super();
             this.keyManager = keyManager;
             this.aliasStrategy = aliasStrategy;
+            for (final String keyType : SERVER_KEY_TYPES) {
+                getServerAliasMap(keyType, null);
+            }
         }
 
         @Override
@@ -393,6 +1286,51 @@ public class MultiTrustSSLContextBuilder {
         }
 
         public Map<String, PrivateKeyDetails> getClientAliasMap(
+            final String[] keyTypes, final Principal[] issuers) {
+            final List<Object> key = Arrays.asList(
+                keyTypes != null ? Arrays.asList(keyTypes.clone()) : null,
+                issuers != null ? Arrays.asList(issuers.clone()) : null);
+            AliasTable table = cachedAliases(key);
+            if (table == null) {
+                table = new AliasTable(clientAliasMap(keyTypes, issuers));
+                cacheAliases(key, table);
+            }
+            return table.aliases;
+        }
+
+        public Map<String, PrivateKeyDetails> getServerAliasMap(
+            final String keyType, final Principal[] issuers) {
+            if (issuers != null && issuers.length > 0) {
+                final List<Object> key = Arrays.asList(keyType, Arrays.asList(issuers.clone()));
+                AliasTable table = cachedAliases(key);
+                if (table == null) {
+                    table = new AliasTable(serverAliasMap(keyType, issuers));
+                    cacheAliases(key, table);
+                }
+                return table.aliases;
+            }
+            AliasTable table = this.serverAliases.get(keyType);
+            if (table == null || table.isStale()) {
+                table = new AliasTable(serverAliasMap(keyType, null));
+                this.serverAliases.put(keyType, table);
+            }
+            return table.aliases;
+        }
+
+        private AliasTable cachedAliases(final List<Object> key) {
+            synchronized (this.aliases) {
+                final AliasTable table = this.aliases.get(key);
+                return table == null || table.isStale() ? null : table;
+            }
+        }
+
+        private void cacheAliases(final List<Object> key, final AliasTable table) {
+            synchronized (this.aliases) {
+                this.aliases.put(key, table);
+            }
+        }
+
+        private Map<String, PrivateKeyDetails> clientAliasMap(
             final String[] keyTypes, final Principal[] issuers) {
             final Map<String, PrivateKeyDetails> validAliases = new HashMap<String, PrivateKeyDetails>();
             for (final String keyType : keyTypes) {
@@ -407,7 +1345,7 @@ public class MultiTrustSSLContextBuilder {
             return validAliases;
         }
 
-        public Map<String, PrivateKeyDetails> getServerAliasMap(
+        private Map<String, PrivateKeyDetails> serverAliasMap(
             final String keyType, final Principal[] issuers) {
             final Map<String, PrivateKeyDetails> validAliases = new HashMap<String, PrivateKeyDetails>();
             final String[] aliases = this.keyManager.getServerAliases(keyType, issuers);
@@ -464,20 +1402,93 @@ public class MultiTrustSSLContextBuilder {
             return this.aliasStrategy.chooseAlias(validAliases, null);
         }
 
+        /**
+         * Immutable alias map together with the instant at which the validity of one of its certificates changes.
+         */
+        private static final class AliasTable {
+
+            private final Map<String, PrivateKeyDetails> aliases;
+            private final long staleAt;
+
+            private AliasTable(final Map<String, PrivateKeyDetails> aliases) {
+                this.aliases = Collections.unmodifiableMap(aliases);
+                final long now = System.currentTimeMillis();
+                long next = Long.MAX_VALUE;
+                for (final PrivateKeyDetails details : aliases.values()) {
+                    final X509Certificate[] chain = details.getCertChain();
+                    if (chain == null) {
+                        continue;
+                    }
+                    for (final X509Certificate certificate : chain) {
+                        final long notBefore = certificate.getNotBefore().getTime();
+                        final long notAfter = certificate.getNotAfter().getTime();
+                        if (notBefore > now) {
+                            next = Math.min(next, notBefore);
+                        }
+                        if (notAfter >= now) {
+                            next = Math.min(next, notAfter + 1);
+                        }
+                    }
+                }
+                this.staleAt = next;
+            }
+
+            private boolean isStale() {
+                return staleAt != Long.MAX_VALUE && System.currentTimeMillis() >= staleAt;
+            }
+        }
+
     }
 
     @Override
     public String toString() {
         return "[provider=" + provider + ", protocol=" + protocol + ", keyStoreType=" + keyStoreType
-               + ", keyManagerFactoryAlgorithm=" + keyManagerFactoryAlgorithm + ", keyManagers=" + keyManagers
-               + ", trustManagerFactoryAlgorithm=" + trustManagerFactoryAlgorithm + ", trustManagers=" + trustManagers
-               + ", secureRandom=" + secureRandom + "]";
+               + ", keyManagerFactoryAlgorithm=" + keyManagerFactoryAlgorithm + ", keyManagers=" + toKeyManagers(loaded(keyMaterial))
+               + ", trustManagerFactoryAlgorithm=" + trustManagerFactoryAlgorithm + ", trustManagers=" + toTrustManagers(loaded(trustMaterial))
+               + ", secureRandom=" + secureRandom + ", verdictCache=" + verdictCache + ", rejectionCache=" + rejectionCache
+               + ", pathCache=" + pathCache + "]";
+    }
+
+    private static <T> List<T> loaded(final List<CompletableFuture<T>> loads) {
+        final List<T> materials = new ArrayList<T>();
+        for (final CompletableFuture<T> load : loads) {
+            if (load.isDone() && !load.isCompletedExceptionally()) {
+                materials.add(load.join());
+            }
+        }
+        return materials;
     }
 
-    private Collection<TrustManager> toCompositeTrustManager() {
-        X509TrustManager[] array = this.trustManagers.stream()
+    static X509TrustManager[] toX509TrustManagers(final List<TrustMaterial> trustMaterial) {
+        return toTrustManagers(trustMaterial).stream()
             .map(trustManager -> (X509TrustManager) trustManager)
             .toArray(X509TrustManager[]::new);
-        return List.of(new CompositeX509TrustManager(trustManagerStrategy, array));
+    }
+
+    static X509TrustManager[] toX509TrustManagers(final List<TrustMaterial> trustMaterial, final boolean mergeTrustAnchors)
+        throws GeneralSecurityException {
+        return mergeTrustAnchors ? MergedX509TrustManager.merge(trustMaterial) : toX509TrustManagers(trustMaterial);
+    }
+
+    private CompositeX509TrustManager toCompositeTrustManager(final List<TrustMaterial> trustMaterial) throws KeyManagementException {
+        final X509TrustManager[] array;
+        try {
+            array = toX509TrustManagers(trustMaterial, mergeTrustAnchors);
+        } catch (GeneralSecurityException e) {
+            final KeyManagementException failure = new KeyManagementException("Could not merge trust anchors");
+            failure.initCause(e);
+            throw failure;
+        }
+        return new CompositeX509TrustManager(trustManagerStrategy, array)
+            .setVerdictCache(verdictCache)
+            .setRejectionCache(rejectionCache)
+            .setPathCache(pathCache)
+            .setSpkiPins(spkiPins, strictPinning)
+            .setFailureLogInterval(failureLogInterval)
+            .setTrustMetrics(trustMetrics)
+            .setRevocationIndex(revocationIndex)
+            .setParallelValidation(parallelValidationExecutor, parallelValidationDeadline)
+            .setAcceptedIssuersFilter(acceptedIssuersFilter)
+            .setMaxAcceptedIssuers(maxAcceptedIssuers);
     }
 }
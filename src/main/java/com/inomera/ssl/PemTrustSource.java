@@ -0,0 +1,172 @@
+package com.inomera.ssl;
+
+import org.apache.http.ssl.TrustStrategy;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trust anchors read from PEM bundles and directories of PEM files, consolidated into one trust material entry.
+ * <p>
+ * Files are read line by line, so only the certificate being read is buffered, and each certificate is decoded
+ * on the common fork-join pool while the next one is read. Anchors are deduplicated by the SHA-256 fingerprint
+ * of their DER encoding across all files added to the source. Files without PEM certificates, such as the
+ * index files of a certificate directory, are skipped.
+ */
+final class PemTrustSource {
+
+    private static final String BEGIN = "-----BEGIN CERTIFICATE-----";
+    private static final String END = "-----END CERTIFICATE-----";
+
+    private static final ThreadLocal<CertificateFactory> CERTIFICATE_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return CertificateFactory.getInstance("X.509");
+        } catch (CertificateException e) {
+            throw new IllegalStateException("X.509 is not supported", e);
+        }
+    });
+
+    private final String trustManagerFactoryAlgorithm;
+    private final TrustStrategy trustStrategy;
+    private final Map<ByteBuffer, X509Certificate> anchors = new ConcurrentHashMap<ByteBuffer, X509Certificate>();
+    private CompletableFuture<MultiTrustSSLContextBuilder.TrustMaterial> material =
+        new CompletableFuture<MultiTrustSSLContextBuilder.TrustMaterial>();
+    private boolean changed;
+
+    PemTrustSource(final String trustManagerFactoryAlgorithm, final TrustStrategy trustStrategy) {
+        this.trustManagerFactoryAlgorithm = trustManagerFactoryAlgorithm;
+        this.trustStrategy = trustStrategy;
+    }
+
+    /**
+     * Adds the certificates of a PEM file, or of all regular files of a directory.
+     */
+    void add(final Path path) throws IOException, CertificateException {
+        changed = true;
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(path, Files::isRegularFile)) {
+                for (final Path file : files) {
+                    addFile(file);
+                }
+            }
+        } else {
+            addFile(path);
+        }
+    }
+
+    int size() {
+        return anchors.size();
+    }
+
+    /**
+     * Returns the trust material of this source, available once {@link #complete()} is called.
+     */
+    CompletableFuture<MultiTrustSSLContextBuilder.TrustMaterial> material() {
+        return material;
+    }
+
+    /**
+     * Creates the trust material from the anchors added so far. The material is created again, as a new future,
+     * when anchors were added since it was last created.
+     *
+     * @return the completed trust material
+     */
+    CompletableFuture<MultiTrustSSLContextBuilder.TrustMaterial> complete() {
+        if (material.isDone() && !changed) {
+            return material;
+        }
+        if (material.isDone()) {
+            material = new CompletableFuture<MultiTrustSSLContextBuilder.TrustMaterial>();
+        }
+        changed = false;
+        try {
+            final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(null, null);
+            final HexFormat hex = HexFormat.of();
+            for (final Map.Entry<ByteBuffer, X509Certificate> anchor : anchors.entrySet()) {
+                final ByteBuffer fingerprint = anchor.getKey().duplicate();
+                final byte[] bytes = new byte[fingerprint.remaining()];
+                fingerprint.get(bytes);
+                keyStore.setCertificateEntry(hex.formatHex(bytes), anchor.getValue());
+            }
+            material.complete(new MultiTrustSSLContextBuilder.TrustMaterial(null, null, null,
+                trustManagerFactoryAlgorithm, keyStore, trustStrategy));
+        } catch (IOException | CertificateException | KeyStoreException | NoSuchAlgorithmException | RuntimeException e) {
+            material.completeExceptionally(e);
+        }
+        return material;
+    }
+
+    private void addFile(final Path file) throws IOException, CertificateException {
+        final List<CompletableFuture<Void>> decodes = new ArrayList<CompletableFuture<Void>>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            StringBuilder base64 = null;
+            int lineNumber = 0;
+            int firstLine = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                final String trimmed = line.trim();
+                if (base64 == null) {
+                    if (trimmed.equals(BEGIN)) {
+                        base64 = new StringBuilder();
+                        firstLine = lineNumber;
+                    }
+                } else if (trimmed.equals(END)) {
+                    final String encoded = base64.toString();
+                    final int certificateLine = firstLine;
+                    decodes.add(CompletableFuture.runAsync(() -> decode(file, certificateLine, encoded)));
+                    base64 = null;
+                } else {
+                    base64.append(trimmed);
+                }
+            }
+            if (base64 != null) {
+                throw new CertificateException("Unterminated PEM certificate at " + file + ":" + firstLine);
+            }
+        }
+        for (final CompletableFuture<Void> decode : decodes) {
+            try {
+                decode.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof CertificateException) {
+                    throw (CertificateException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void decode(final Path file, final int line, final String base64) {
+        try {
+            final byte[] der = Base64.getMimeDecoder().decode(base64);
+            final ByteBuffer fingerprint = ByteBuffer.wrap(Fingerprints.sha256().digest(der));
+            if (!anchors.containsKey(fingerprint)) {
+                anchors.putIfAbsent(fingerprint,
+                    (X509Certificate) CERTIFICATE_FACTORY.get().generateCertificate(new ByteArrayInputStream(der)));
+            }
+        } catch (CertificateException | IllegalArgumentException e) {
+            throw new CompletionException(new CertificateException("Invalid PEM certificate at " + file + ":" + line, e));
+        }
+    }
+}
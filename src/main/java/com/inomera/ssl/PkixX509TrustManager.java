@@ -0,0 +1,106 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Trust manager of the JDK PKIX trust manager factory initialized from a key store, validating the plain way:
+ * path building to the anchors of the store, validity and algorithm constraints, without revocation checking
+ * nor any other parameters. {@link CompositeX509TrustManager} only lets a {@link TrustPathCache} stand in for
+ * delegates known to validate this way; any other trust manager may reject a chain for reasons the cached path
+ * does not cover.
+ */
+final class PkixX509TrustManager extends X509ExtendedTrustManager {
+
+    private static final String PROVIDER = "SunJSSE";
+    private static final Set<String> ALGORITHMS = Set.of("PKIX", "SUNPKIX", "X509", "X.509");
+    private static final String CHECK_REVOCATION = "com.sun.net.ssl.checkRevocation";
+
+    private final X509ExtendedTrustManager trustManager;
+
+    private PkixX509TrustManager(final X509ExtendedTrustManager trustManager) {
+        super();
+        this.trustManager = trustManager;
+    }
+
+    /**
+     * Returns whether the factory, once initialized from a key store, provides plain PKIX trust managers.
+     */
+    static boolean isPlain(final TrustManagerFactory factory) {
+        return PROVIDER.equals(factory.getProvider().getName())
+               && ALGORITHMS.contains(factory.getAlgorithm().toUpperCase(Locale.ROOT))
+               && !Boolean.getBoolean(CHECK_REVOCATION);
+    }
+
+    /**
+     * Returns whether the trust manager is known to validate the plain PKIX way.
+     */
+    static boolean isPlain(final X509TrustManager trustManager) {
+        if (trustManager instanceof MergedX509TrustManager) {
+            return ((MergedX509TrustManager) trustManager).isPlain();
+        }
+        if (trustManager instanceof SnapshotX509TrustManager) {
+            return ((SnapshotX509TrustManager) trustManager).isPlain();
+        }
+        return trustManager instanceof PkixX509TrustManager;
+    }
+
+    /**
+     * Returns the trust managers of a factory initialized from a key store, marking them as plain when the
+     * factory is.
+     */
+    static TrustManager[] of(final TrustManagerFactory factory) {
+        final TrustManager[] trustManagers = factory.getTrustManagers();
+        if (trustManagers != null && isPlain(factory)) {
+            for (int i = 0; i < trustManagers.length; i++) {
+                if (trustManagers[i] instanceof X509ExtendedTrustManager) {
+                    trustManagers[i] = new PkixX509TrustManager((X509ExtendedTrustManager) trustManagers[i]);
+                }
+            }
+        }
+        return trustManagers;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        trustManager.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        trustManager.checkServerTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+        trustManager.checkClientTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+        trustManager.checkServerTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        trustManager.checkClientTrusted(chain, authType, engine);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        trustManager.checkServerTrusted(chain, authType, engine);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return trustManager.getAcceptedIssuers();
+    }
+}
@@ -0,0 +1,92 @@
+package com.inomera.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipInputStream;
+
+/**
+ * ICANN public suffixes of the public suffix list shipped with the JDK, which its host name checks use to reject
+ * wildcards such as {@code *.co.uk}.
+ * <p>
+ * The JDK keeps the list in {@code lib/security/public_suffix_list.dat}, a zip archive with one entry of rules per
+ * top-level domain, each rule on its own line after a byte telling whether it belongs to the ICANN or the private
+ * section. The rules are read once, when first needed. Without the file, only top-level domains are taken as
+ * public suffixes.
+ */
+final class PublicSuffixes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PublicSuffixes.class);
+
+    private static final char ICANN = '\0';
+
+    private PublicSuffixes() {
+    }
+
+    /**
+     * Returns whether the lower-case ASCII domain is a public suffix, e.g. {@code com} or {@code co.uk}.
+     */
+    static boolean isPublicSuffix(final String domain) {
+        final int dot = domain.indexOf('.');
+        if (dot < 0) {
+            return true;
+        }
+        final Set<String> rules = Rules.ICANN_RULES;
+        if (rules.contains('!' + domain)) {
+            return false;
+        }
+        return rules.contains(domain) || rules.contains('*' + domain.substring(dot));
+    }
+
+    private static final class Rules {
+
+        static final Set<String> ICANN_RULES = load(Path.of(System.getProperty("java.home"), "lib", "security",
+            "public_suffix_list.dat"));
+
+        private static Set<String> load(final Path file) {
+            if (!Files.isReadable(file)) {
+                LOG.warn("No public suffix list at {}, only top-level domains are taken as public suffixes", file);
+                return Collections.emptySet();
+            }
+            final Set<String> rules = new HashSet<String>();
+            try (InputStream in = Files.newInputStream(file); ZipInputStream zip = new ZipInputStream(in)) {
+                while (zip.getNextEntry() != null) {
+                    // Not closed, it would close the archive
+                    final BufferedReader reader = new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.length() > 1 && line.charAt(0) == ICANN) {
+                            addRule(rules, line.substring(1));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not read public suffix list at {}, only top-level domains are taken as public suffixes",
+                    file, e);
+                return Collections.emptySet();
+            }
+            return Collections.unmodifiableSet(rules);
+        }
+
+        private static void addRule(final Set<String> rules, final String rule) {
+            try {
+                final int prefix = rule.startsWith("*.") ? 2 : rule.startsWith("!") ? 1 : 0;
+                rules.add(rule.substring(0, prefix) + IDN.toASCII(rule.substring(prefix)).toLowerCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                // a rule that is no valid domain name matches no host name either
+            }
+        }
+    }
+}
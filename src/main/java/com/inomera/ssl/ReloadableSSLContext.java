@@ -0,0 +1,176 @@
+package com.inomera.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SSLContext} whose trust and key material follows changes of the key store files it was built from.
+ *
+ * @see MultiTrustSSLContextBuilder#buildReloadable(Duration)
+ */
+public class ReloadableSSLContext implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(ReloadableSSLContext.class);
+
+    private final SSLContext sslContext;
+    private final CompositeX509TrustManager trustManager;
+    private final ReloadableX509KeyManager keyManager;
+    private final List<MultiTrustSSLContextBuilder.TrustMaterial> trustMaterial;
+    private final boolean mergeTrustAnchors;
+    private final List<MultiTrustSSLContextBuilder.KeyMaterial> keyMaterial;
+    private final Map<Object, WatchedFile> watchedFiles = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    ReloadableSSLContext(SSLContext sslContext,
+                         CompositeX509TrustManager trustManager,
+                         List<MultiTrustSSLContextBuilder.TrustMaterial> trustMaterial,
+                         boolean mergeTrustAnchors,
+                         ReloadableX509KeyManager keyManager,
+                         List<MultiTrustSSLContextBuilder.KeyMaterial> keyMaterial,
+                         Duration pollInterval) {
+        this.sslContext = sslContext;
+        this.trustManager = trustManager;
+        this.keyManager = keyManager;
+        this.trustMaterial = new ArrayList<>(trustMaterial);
+        this.mergeTrustAnchors = mergeTrustAnchors;
+        this.keyMaterial = new ArrayList<>(keyMaterial);
+        for (MultiTrustSSLContextBuilder.TrustMaterial material : this.trustMaterial) {
+            watch(material, material.file);
+        }
+        for (MultiTrustSSLContextBuilder.KeyMaterial material : this.keyMaterial) {
+            watch(material, material.file);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "ssl-forge-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long interval = pollInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::reloadQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    public CompositeX509TrustManager getTrustManager() {
+        return trustManager;
+    }
+
+    /**
+     * Checks the watched key store files and swaps in the material of the changed ones. Called periodically
+     * by the background thread; may also be called to force an immediate check.
+     *
+     * @return whether any material was replaced
+     */
+    public synchronized boolean reload() {
+        boolean trustChanged = false;
+        for (int i = 0; i < trustMaterial.size(); i++) {
+            final MultiTrustSSLContextBuilder.TrustMaterial material = trustMaterial.get(i);
+            if (hasChanged(material)) {
+                try {
+                    final MultiTrustSSLContextBuilder.TrustMaterial reloaded = material.reload();
+                    trustMaterial.set(i, reloaded);
+                    rewatch(material, reloaded);
+                    trustChanged = true;
+                    LOG.info("Reloaded trust material from {}", material.file);
+                } catch (GeneralSecurityException | IOException e) {
+                    LOG.warn("Could not reload trust material from {}, keeping the previous one", material.file, e);
+                }
+            }
+        }
+        boolean keyChanged = false;
+        for (int i = 0; i < keyMaterial.size(); i++) {
+            final MultiTrustSSLContextBuilder.KeyMaterial material = keyMaterial.get(i);
+            if (hasChanged(material)) {
+                try {
+                    final MultiTrustSSLContextBuilder.KeyMaterial reloaded = material.reload();
+                    keyMaterial.set(i, reloaded);
+                    rewatch(material, reloaded);
+                    keyChanged = true;
+                    LOG.info("Reloaded key material from {}", material.file);
+                } catch (GeneralSecurityException | IOException e) {
+                    LOG.warn("Could not reload key material from {}, keeping the previous one", material.file, e);
+                }
+            }
+        }
+        if (trustChanged) {
+            trustManager.setTrustManagers(toX509TrustManagers());
+        }
+        if (keyChanged && keyManager != null) {
+            for (KeyManager km : MultiTrustSSLContextBuilder.toKeyManagers(keyMaterial)) {
+                if (km instanceof X509ExtendedKeyManager) {
+                    keyManager.setKeyManager((X509ExtendedKeyManager) km);
+                    break;
+                }
+            }
+        }
+        return trustChanged || keyChanged;
+    }
+
+    /**
+     * Stops watching the key store files. The {@link SSLContext} remains usable with its current material.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private X509TrustManager[] toX509TrustManagers() {
+        try {
+            return MultiTrustSSLContextBuilder.toX509TrustManagers(trustMaterial, mergeTrustAnchors);
+        } catch (GeneralSecurityException e) {
+            LOG.warn("Could not merge reloaded trust anchors, validating with each trust store", e);
+            return MultiTrustSSLContextBuilder.toX509TrustManagers(trustMaterial);
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            LOG.warn("Reloading SSL material failed", e);
+        }
+    }
+
+    private void watch(Object material, File file) {
+        if (file != null) {
+            watchedFiles.put(material, new WatchedFile(file.toPath()));
+        }
+    }
+
+    private void rewatch(Object previous, Object reloaded) {
+        final WatchedFile watchedFile = watchedFiles.remove(previous);
+        watchedFile.commit();
+        watchedFiles.put(reloaded, watchedFile);
+    }
+
+    private boolean hasChanged(Object material) {
+        final WatchedFile watchedFile = watchedFiles.get(material);
+        if (watchedFile == null) {
+            return false;
+        }
+        try {
+            return watchedFile.hasChanged();
+        } catch (IOException e) {
+            LOG.warn("Could not check {} for changes", watchedFile.getPath(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * Key manager forwarding to a delegate that can be replaced while handshakes are running.
+ * <p>
+ * A handshake may call this key manager several times (alias selection, then certificate chain and private key
+ * lookup), and each call reads the current delegate. Key stores should therefore be renewed under the same
+ * aliases, so an alias chosen just before a swap still resolves afterwards.
+ */
+class ReloadableX509KeyManager extends X509ExtendedKeyManager {
+
+    private volatile X509ExtendedKeyManager keyManager;
+
+    ReloadableX509KeyManager(final X509ExtendedKeyManager keyManager) {
+        super();
+        this.keyManager = keyManager;
+    }
+
+    X509ExtendedKeyManager getKeyManager() {
+        return keyManager;
+    }
+
+    void setKeyManager(final X509ExtendedKeyManager keyManager) {
+        this.keyManager = keyManager;
+    }
+
+    @Override
+    public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+        return this.keyManager.getClientAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseClientAlias(final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+        return this.keyManager.chooseClientAlias(keyTypes, issuers, socket);
+    }
+
+    @Override
+    public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+        return this.keyManager.getServerAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+        return this.keyManager.chooseServerAlias(keyType, issuers, socket);
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(final String alias) {
+        return this.keyManager.getCertificateChain(alias);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(final String alias) {
+        return this.keyManager.getPrivateKey(alias);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(final String[] keyTypes, final Principal[] issuers, final SSLEngine sslEngine) {
+        return this.keyManager.chooseEngineClientAlias(keyTypes, issuers, sslEngine);
+    }
+
+    @Override
+    public String chooseEngineServerAlias(final String keyType, final Principal[] issuers, final SSLEngine sslEngine) {
+        return this.keyManager.chooseEngineServerAlias(keyType, issuers, sslEngine);
+    }
+}
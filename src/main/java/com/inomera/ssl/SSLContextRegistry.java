@@ -0,0 +1,185 @@
+package com.inomera.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares {@link SSLContext} instances between builders with an identical configuration.
+ * <p>
+ * A configuration is identified by its protocol and settings, and by the contents of its trust and key
+ * stores rather than by the key store instances, so two clients loading the same files get the same context,
+ * the same trust and key managers and a single session cache. Strategies, providers, executors and the other
+ * pluggable objects are compared by identity: configurations only match when they share those instances.
+ * <p>
+ * Trust and key material is also shared across different configurations, e.g. two contexts differing only
+ * in protocol reuse the trust managers of a common trust store. Contexts and material are reference counted
+ * and evicted when the last {@link SharedSSLContext} using them is closed.
+ */
+public class SSLContextRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(SSLContextRegistry.class);
+
+    private final Map<ConfigurationKey, Entry> contexts = new HashMap<>();
+    private final Map<ConfigurationKey, SharedMaterial> materials = new HashMap<>();
+
+    /**
+     * Returns the context built for the configuration of the builder, building it on first use.
+     * The material already loaded by the builder is discarded when an identical one is registered.
+     *
+     * @param builder the builder holding the configuration
+     * @return the handle to the shared context, to be closed when no longer used
+     */
+    public SharedSSLContext acquire(MultiTrustSSLContextBuilder builder)
+        throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
+        final List<MultiTrustSSLContextBuilder.TrustMaterial> trustMaterial = builder.getTrustMaterial();
+        final List<MultiTrustSSLContextBuilder.KeyMaterial> keyMaterial = builder.getKeyMaterial();
+        final List<ConfigurationKey> trustKeys = new ArrayList<>();
+        for (MultiTrustSSLContextBuilder.TrustMaterial material : trustMaterial) {
+            trustKeys.add(material.key());
+        }
+        final List<ConfigurationKey> keyKeys = new ArrayList<>();
+        for (MultiTrustSSLContextBuilder.KeyMaterial material : keyMaterial) {
+            keyKeys.add(material.key());
+        }
+        final ConfigurationKey.Builder configuration = builder.configurationKey().add(trustKeys.size());
+        trustKeys.forEach(configuration::add);
+        configuration.add(keyKeys.size());
+        keyKeys.forEach(configuration::add);
+        final ConfigurationKey key = configuration.build();
+
+        synchronized (this) {
+            Entry entry = contexts.get(key);
+            if (entry == null) {
+                entry = newEntry(builder, trustMaterial, trustKeys, keyMaterial, keyKeys);
+                contexts.put(key, entry);
+                LOG.debug("Registered SSLContext {}", entry.sslContext);
+            }
+            entry.references++;
+            return new SharedSSLContext(key, entry);
+        }
+    }
+
+    /**
+     * Returns the number of contexts currently shared.
+     */
+    public synchronized int size() {
+        return contexts.size();
+    }
+
+    /**
+     * Returns the number of distinct trust and key material entries currently shared.
+     */
+    public synchronized int materialSize() {
+        return materials.size();
+    }
+
+    private Entry newEntry(MultiTrustSSLContextBuilder builder,
+                           List<MultiTrustSSLContextBuilder.TrustMaterial> trustMaterial,
+                           List<ConfigurationKey> trustKeys,
+                           List<MultiTrustSSLContextBuilder.KeyMaterial> keyMaterial,
+                           List<ConfigurationKey> keyKeys) throws NoSuchAlgorithmException, KeyManagementException {
+        final List<MultiTrustSSLContextBuilder.TrustMaterial> sharedTrust = new ArrayList<>();
+        for (int i = 0; i < trustKeys.size(); i++) {
+            sharedTrust.add((MultiTrustSSLContextBuilder.TrustMaterial) share(trustKeys.get(i), trustMaterial.get(i)));
+        }
+        final List<MultiTrustSSLContextBuilder.KeyMaterial> sharedKeys = new ArrayList<>();
+        for (int i = 0; i < keyKeys.size(); i++) {
+            sharedKeys.add((MultiTrustSSLContextBuilder.KeyMaterial) share(keyKeys.get(i), keyMaterial.get(i)));
+        }
+        final List<ConfigurationKey> materialKeys = new ArrayList<>(trustKeys);
+        materialKeys.addAll(keyKeys);
+        try {
+            return new Entry(builder.build(sharedTrust, sharedKeys), materialKeys);
+        } catch (NoSuchAlgorithmException | KeyManagementException | RuntimeException e) {
+            materialKeys.forEach(this::release);
+            throw e;
+        }
+    }
+
+    private Object share(ConfigurationKey key, Object material) {
+        SharedMaterial shared = materials.get(key);
+        if (shared == null) {
+            shared = new SharedMaterial(material);
+            materials.put(key, shared);
+        }
+        shared.references++;
+        return shared.material;
+    }
+
+    private void release(ConfigurationKey key) {
+        final SharedMaterial shared = materials.get(key);
+        if (shared != null && --shared.references == 0) {
+            materials.remove(key);
+        }
+    }
+
+    private synchronized void release(ConfigurationKey key, Entry entry) {
+        if (--entry.references == 0) {
+            contexts.remove(key, entry);
+            entry.materialKeys.forEach(this::release);
+            LOG.debug("Evicted SSLContext {}", entry.sslContext);
+        }
+    }
+
+    private static final class Entry {
+
+        private final SSLContext sslContext;
+        private final List<ConfigurationKey> materialKeys;
+        private int references;
+
+        private Entry(SSLContext sslContext, List<ConfigurationKey> materialKeys) {
+            this.sslContext = sslContext;
+            this.materialKeys = materialKeys;
+        }
+    }
+
+    private static final class SharedMaterial {
+
+        private final Object material;
+        private int references;
+
+        private SharedMaterial(Object material) {
+            this.material = material;
+        }
+    }
+
+    /**
+     * Handle to a context shared by the registry. Closing it releases the context, which is evicted once
+     * no handle uses it anymore; connections already created from it are not affected.
+     */
+    public final class SharedSSLContext implements Closeable {
+
+        private final ConfigurationKey key;
+        private final Entry entry;
+        private boolean closed;
+
+        private SharedSSLContext(ConfigurationKey key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public SSLContext getSSLContext() {
+            return entry.sslContext;
+        }
+
+        @Override
+        public void close() {
+            synchronized (SSLContextRegistry.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                release(key, entry);
+            }
+        }
+    }
+}
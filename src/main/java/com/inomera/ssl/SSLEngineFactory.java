@@ -0,0 +1,156 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates {@link SSLEngine}s with preset protocols, cipher suites and client authentication, and runs their
+ * delegated tasks off the calling thread.
+ * <p>
+ * When an engine reports {@link SSLEngineResult.HandshakeStatus#NEED_TASK}, the expensive part of the handshake,
+ * key exchange and certificate validation by the composite trust manager, is waiting in
+ * {@link SSLEngine#getDelegatedTask()}. An event loop passes the engine to {@link #runDelegatedTasks(SSLEngine)}
+ * and resumes wrapping and unwrapping when the returned future completes, e.g. with
+ * {@code whenCompleteAsync(callback, eventLoop)}, handling I/O of other connections in the meantime.
+ */
+public class SSLEngineFactory {
+
+    /**
+     * Client authentication requested by server engines.
+     */
+    public enum ClientAuth {
+        NONE, WANT, NEED
+    }
+
+    private final SSLContext sslContext;
+    private String[] protocols;
+    private String[] cipherSuites;
+    private ClientAuth clientAuth = ClientAuth.NONE;
+    private Executor delegatedTaskExecutor;
+
+    public SSLEngineFactory(final SSLContext sslContext) {
+        if (sslContext == null) {
+            throw new IllegalArgumentException("SSL context must not be null");
+        }
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Restricts the protocols enabled on the engines.
+     *
+     * @param protocols the protocols, {@code null} for the defaults of the context
+     * @return this factory
+     */
+    public SSLEngineFactory setProtocols(final String... protocols) {
+        this.protocols = protocols != null ? protocols.clone() : null;
+        return this;
+    }
+
+    /**
+     * Restricts the cipher suites enabled on the engines.
+     *
+     * @param cipherSuites the cipher suites, {@code null} for the defaults of the context
+     * @return this factory
+     */
+    public SSLEngineFactory setCipherSuites(final String... cipherSuites) {
+        this.cipherSuites = cipherSuites != null ? cipherSuites.clone() : null;
+        return this;
+    }
+
+    /**
+     * Sets whether server engines request or require a client certificate.
+     *
+     * @param clientAuth the client authentication mode, {@code null} for {@link ClientAuth#NONE}
+     * @return this factory
+     */
+    public SSLEngineFactory setClientAuth(final ClientAuth clientAuth) {
+        this.clientAuth = clientAuth != null ? clientAuth : ClientAuth.NONE;
+        return this;
+    }
+
+    /**
+     * Sets the executor running delegated tasks, e.g. a bounded pool. By default they run on virtual threads, or
+     * on a cached pool of daemon threads where virtual threads are not available.
+     *
+     * @param delegatedTaskExecutor the executor, {@code null} for the default
+     * @return this factory
+     */
+    public synchronized SSLEngineFactory setDelegatedTaskExecutor(final Executor delegatedTaskExecutor) {
+        this.delegatedTaskExecutor = delegatedTaskExecutor;
+        return this;
+    }
+
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    /**
+     * Creates an engine in server mode.
+     */
+    public SSLEngine createServerEngine() {
+        final SSLEngine engine = configure(sslContext.createSSLEngine());
+        engine.setUseClientMode(false);
+        if (clientAuth == ClientAuth.NEED) {
+            engine.setNeedClientAuth(true);
+        } else if (clientAuth == ClientAuth.WANT) {
+            engine.setWantClientAuth(true);
+        }
+        return engine;
+    }
+
+    /**
+     * Creates an engine in client mode. The peer is used for session resumption and, where enabled, endpoint
+     * identification.
+     *
+     * @param peerHost the host name of the server
+     * @param peerPort the port of the server
+     */
+    public SSLEngine createClientEngine(final String peerHost, final int peerPort) {
+        final SSLEngine engine = configure(sslContext.createSSLEngine(peerHost, peerPort));
+        engine.setUseClientMode(true);
+        return engine;
+    }
+
+    /**
+     * Runs the pending delegated tasks of the engine on the delegated task executor.
+     *
+     * @param engine the engine whose handshake status is {@link SSLEngineResult.HandshakeStatus#NEED_TASK}
+     * @return a future completed with the handshake status once all tasks ran, or exceptionally if a task failed
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the tasks
+     */
+    public CompletableFuture<SSLEngineResult.HandshakeStatus> runDelegatedTasks(final SSLEngine engine) {
+        return CompletableFuture.supplyAsync(() -> {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+            return engine.getHandshakeStatus();
+        }, delegatedTaskExecutor());
+    }
+
+    private SSLEngine configure(final SSLEngine engine) {
+        if (protocols != null) {
+            engine.setEnabledProtocols(protocols);
+        }
+        if (cipherSuites != null) {
+            engine.setEnabledCipherSuites(cipherSuites);
+        }
+        return engine;
+    }
+
+    private synchronized Executor delegatedTaskExecutor() {
+        if (delegatedTaskExecutor == null) {
+            delegatedTaskExecutor = DefaultExecutors.newVirtualThreadPerTaskExecutor("ssl-forge-handshake");
+        }
+        return delegatedTaskExecutor;
+    }
+
+    @Override
+    public String toString() {
+        return "[protocols=" + (protocols != null ? String.join(",", protocols) : null) + ", cipherSuites="
+               + (cipherSuites != null ? cipherSuites.length : null) + ", clientAuth=" + clientAuth + "]";
+    }
+}
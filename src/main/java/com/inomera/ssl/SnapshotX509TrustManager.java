@@ -0,0 +1,190 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Trust manager validating against the anchors of a {@link TrustSnapshot}, decoding them lazily.
+ * <p>
+ * The anchors are grouped by subject. A chain is only validated against the groups named by the issuer or
+ * subject of one of its certificates; each group is decoded and wrapped in a trust manager of the configured
+ * algorithm when first needed, so anchors that no peer ever chains to are never parsed. Path building,
+ * algorithm constraints and endpoint identification are left to those trust managers.
+ */
+class SnapshotX509TrustManager extends X509ExtendedTrustManager {
+
+    private final TrustSnapshot snapshot;
+    private final String trustManagerFactoryAlgorithm;
+    private final ConcurrentMap<Integer, X509TrustManager> groups = new ConcurrentHashMap<Integer, X509TrustManager>();
+    private final boolean plain;
+    private volatile X509Certificate[] acceptedIssuers;
+
+    SnapshotX509TrustManager(final TrustSnapshot snapshot, final String trustManagerFactoryAlgorithm) {
+        super();
+        this.snapshot = snapshot;
+        this.trustManagerFactoryAlgorithm = trustManagerFactoryAlgorithm;
+        this.plain = isPlain(trustManagerFactoryAlgorithm);
+    }
+
+    private static boolean isPlain(final String trustManagerFactoryAlgorithm) {
+        try {
+            return PkixX509TrustManager.isPlain(TrustManagerFactory.getInstance(trustManagerFactoryAlgorithm == null
+                ? TrustManagerFactory.getDefaultAlgorithm() : trustManagerFactoryAlgorithm));
+        } catch (NoSuchAlgorithmException e) {
+            // reported when a chain is validated
+            return false;
+        }
+    }
+
+    TrustSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns whether the anchors of the snapshot are validated the plain PKIX way.
+     *
+     * @see PkixX509TrustManager
+     */
+    boolean isPlain() {
+        return plain;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        check(new TrustCheck(chain, authType, true, null, null));
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        check(new TrustCheck(chain, authType, false, null, null));
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+        check(new TrustCheck(chain, authType, true, socket, null));
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket) throws CertificateException {
+        check(new TrustCheck(chain, authType, false, socket, null));
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        check(new TrustCheck(chain, authType, true, null, engine));
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        check(new TrustCheck(chain, authType, false, null, engine));
+    }
+
+    /**
+     * Returns all anchors of the snapshot, decoding the ones not used so far.
+     */
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        X509Certificate[] issuers = acceptedIssuers;
+        if (issuers == null) {
+            final List<X509Certificate> decoded = new ArrayList<X509Certificate>(snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                try {
+                    decoded.add(snapshot.certificate(i));
+                } catch (CertificateException e) {
+                    // a corrupted anchor is reported when a chain needs it
+                }
+            }
+            issuers = decoded.toArray(new X509Certificate[0]);
+            acceptedIssuers = issuers;
+        }
+        return issuers.clone();
+    }
+
+    private void check(final TrustCheck check) throws CertificateException {
+        if (check.chain == null || check.chain.length == 0) {
+            throw new IllegalArgumentException("Certificate chain is empty");
+        }
+        final TreeSet<Integer> candidates = new TreeSet<Integer>();
+        for (final X509Certificate certificate : check.chain) {
+            addGroup(candidates, certificate.getIssuerX500Principal().getEncoded());
+            addGroup(candidates, certificate.getSubjectX500Principal().getEncoded());
+        }
+        CertificateException failure = null;
+        for (final Integer group : candidates) {
+            try {
+                check.validate(trustManager(group));
+                return;
+            } catch (CertificateException e) {
+                failure = e;
+            }
+        }
+        throw failure != null ? failure
+            : new CertificateException("No trust anchor in " + snapshot.getPath() + " for "
+                                       + check.chain[check.chain.length - 1].getIssuerX500Principal());
+    }
+
+    private void addGroup(final TreeSet<Integer> candidates, final byte[] encodedName) {
+        final long hash = TrustSnapshot.subjectHash(encodedName);
+        final int first = snapshot.lowerBound(hash);
+        if (first < snapshot.size() && snapshot.subjectHash(first) == hash) {
+            candidates.add(first);
+        }
+    }
+
+    private X509TrustManager trustManager(final int group) throws CertificateException {
+        X509TrustManager trustManager = groups.get(group);
+        if (trustManager == null) {
+            trustManager = newTrustManager(group);
+            final X509TrustManager previous = groups.putIfAbsent(group, trustManager);
+            if (previous != null) {
+                trustManager = previous;
+            }
+        }
+        return trustManager;
+    }
+
+    private X509TrustManager newTrustManager(final int group) throws CertificateException {
+        try {
+            final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(null, null);
+            final long hash = snapshot.subjectHash(group);
+            for (int i = group; i < snapshot.size() && snapshot.subjectHash(i) == hash; i++) {
+                keyStore.setCertificateEntry(Integer.toString(i), snapshot.certificate(i));
+            }
+            final TrustManagerFactory factory = TrustManagerFactory.getInstance(trustManagerFactoryAlgorithm == null
+                ? TrustManagerFactory.getDefaultAlgorithm() : trustManagerFactoryAlgorithm);
+            factory.init(keyStore);
+            for (final TrustManager trustManager : factory.getTrustManagers()) {
+                if (trustManager instanceof X509TrustManager) {
+                    return (X509TrustManager) trustManager;
+                }
+            }
+            throw new CertificateException("No X509TrustManager from " + factory.getAlgorithm());
+        } catch (IOException | GeneralSecurityException e) {
+            if (e instanceof CertificateException) {
+                throw (CertificateException) e;
+            }
+            throw new CertificateException("Could not load trust anchors from " + snapshot.getPath(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[snapshot=" + snapshot + ", decodedGroups=" + groups.size() + "]";
+    }
+}
@@ -0,0 +1,240 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.StandardConstants;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Key manager choosing the server certificate by the host name the client requested through SNI.
+ * <p>
+ * For each key type, the DNS names in the subject alternative names of the server certificates are indexed
+ * into an exact-match table and a wildcard table keyed by the parent domain, so a lookup costs two hash
+ * lookups whatever the number of certificates. A name covered by several certificates, e.g. during a renewal,
+ * resolves to the currently valid one expiring last. When the client sent no host name, the certificate
+ * authorities it accepts are restricted, or no valid certificate matches, the alias is chosen by the
+ * delegate, i.e. by the configured {@code PrivateKeyStrategy}.
+ */
+class SniX509KeyManager extends X509ExtendedKeyManager {
+
+    private static final String[] SERVER_KEY_TYPES = {"RSA", "RSASSA-PSS", "EC", "EdDSA"};
+    private static final int DNS_NAME = 2;
+
+    private final X509ExtendedKeyManager keyManager;
+    private final ConcurrentMap<String, HostIndex> indexes = new ConcurrentHashMap<String, HostIndex>();
+
+    SniX509KeyManager(final X509ExtendedKeyManager keyManager) {
+        super();
+        this.keyManager = keyManager;
+        for (final String keyType : SERVER_KEY_TYPES) {
+            index(keyType);
+        }
+    }
+
+    @Override
+    public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+        return this.keyManager.getClientAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseClientAlias(final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+        return this.keyManager.chooseClientAlias(keyTypes, issuers, socket);
+    }
+
+    @Override
+    public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+        return this.keyManager.getServerAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+        if (socket instanceof SSLSocket) {
+            final String alias = chooseByHostName(keyType, issuers, ((SSLSocket) socket).getHandshakeSession());
+            if (alias != null) {
+                return alias;
+            }
+        }
+        return this.keyManager.chooseServerAlias(keyType, issuers, socket);
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(final String alias) {
+        return this.keyManager.getCertificateChain(alias);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(final String alias) {
+        return this.keyManager.getPrivateKey(alias);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(final String[] keyTypes, final Principal[] issuers, final SSLEngine sslEngine) {
+        return this.keyManager.chooseEngineClientAlias(keyTypes, issuers, sslEngine);
+    }
+
+    @Override
+    public String chooseEngineServerAlias(final String keyType, final Principal[] issuers, final SSLEngine sslEngine) {
+        if (sslEngine != null) {
+            final String alias = chooseByHostName(keyType, issuers, sslEngine.getHandshakeSession());
+            if (alias != null) {
+                return alias;
+            }
+        }
+        return this.keyManager.chooseEngineServerAlias(keyType, issuers, sslEngine);
+    }
+
+    private String chooseByHostName(final String keyType, final Principal[] issuers, final SSLSession session) {
+        if (keyType == null || (issuers != null && issuers.length > 0) || !(session instanceof ExtendedSSLSession)) {
+            return null;
+        }
+        final List<SNIServerName> serverNames = ((ExtendedSSLSession) session).getRequestedServerNames();
+        if (serverNames == null) {
+            return null;
+        }
+        for (final SNIServerName serverName : serverNames) {
+            if (serverName.getType() == StandardConstants.SNI_HOST_NAME) {
+                final String hostName = serverName instanceof SNIHostName
+                    ? ((SNIHostName) serverName).getAsciiName()
+                    : new SNIHostName(serverName.getEncoded()).getAsciiName();
+                return index(keyType).find(normalize(hostName));
+            }
+        }
+        return null;
+    }
+
+    private HostIndex index(final String keyType) {
+        HostIndex index = indexes.get(keyType);
+        if (index == null) {
+            index = new HostIndex(keyType);
+            final HostIndex previous = indexes.putIfAbsent(keyType, index);
+            if (previous != null) {
+                index = previous;
+            }
+        }
+        return index;
+    }
+
+    private static String normalize(final String hostName) {
+        final String lowerCase = hostName.toLowerCase(Locale.ROOT);
+        return lowerCase.endsWith(".") ? lowerCase.substring(0, lowerCase.length() - 1) : lowerCase;
+    }
+
+    /**
+     * Server aliases of one key type by DNS name.
+     */
+    private final class HostIndex {
+
+        private final Map<String, List<Candidate>> exact = new HashMap<String, List<Candidate>>();
+        private final Map<String, List<Candidate>> wildcard = new HashMap<String, List<Candidate>>();
+
+        private HostIndex(final String keyType) {
+            final String[] aliases = keyManager.getServerAliases(keyType, null);
+            if (aliases == null) {
+                return;
+            }
+            for (final String alias : aliases) {
+                final X509Certificate[] chain = keyManager.getCertificateChain(alias);
+                if (chain == null || chain.length == 0) {
+                    continue;
+                }
+                final Candidate candidate = new Candidate(alias, chain[0]);
+                for (final String dnsName : dnsNames(chain[0])) {
+                    final String name = normalize(dnsName);
+                    if (name.startsWith("*.")) {
+                        put(wildcard, name.substring(2), candidate);
+                    } else {
+                        put(exact, name, candidate);
+                    }
+                }
+            }
+        }
+
+        private String find(final String hostName) {
+            final String alias = findValid(exact.get(hostName));
+            if (alias != null) {
+                return alias;
+            }
+            // a wildcard matches a single label only
+            final int dot = hostName.indexOf('.');
+            return dot > 0 ? findValid(wildcard.get(hostName.substring(dot + 1))) : null;
+        }
+
+        private String findValid(final List<Candidate> candidates) {
+            if (candidates != null) {
+                final long now = System.currentTimeMillis();
+                for (final Candidate candidate : candidates) {
+                    if (candidate.isValid(now)) {
+                        return candidate.alias;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Keeps the candidates of a name ordered by {@code notAfter}, latest first, so a lookup returns the valid
+         * certificate expiring last while a renewal that is not valid yet, or an expired certificate, stays indexed.
+         */
+        private void put(final Map<String, List<Candidate>> names, final String name, final Candidate candidate) {
+            final List<Candidate> candidates = names.computeIfAbsent(name, key -> new ArrayList<Candidate>(1));
+            int position = 0;
+            while (position < candidates.size() && candidates.get(position).notAfter >= candidate.notAfter) {
+                position++;
+            }
+            candidates.add(position, candidate);
+        }
+
+        private List<String> dnsNames(final X509Certificate certificate) {
+            final Collection<List<?>> names;
+            try {
+                names = certificate.getSubjectAlternativeNames();
+            } catch (CertificateParsingException e) {
+                return List.of();
+            }
+            if (names == null) {
+                return List.of();
+            }
+            final List<String> dnsNames = new ArrayList<String>();
+            for (final List<?> name : names) {
+                if (name.size() >= 2 && Integer.valueOf(DNS_NAME).equals(name.get(0)) && name.get(1) instanceof String) {
+                    dnsNames.add((String) name.get(1));
+                }
+            }
+            return dnsNames;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final String alias;
+        private final long notBefore;
+        private final long notAfter;
+
+        private Candidate(final String alias, final X509Certificate certificate) {
+            this.alias = alias;
+            this.notBefore = certificate.getNotBefore().getTime();
+            this.notAfter = certificate.getNotAfter().getTime();
+        }
+
+        private boolean isValid(final long now) {
+            return now >= notBefore && now <= notAfter;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.inomera.ssl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable set of pinned public keys, identified by the SHA-256 hash of their SubjectPublicKeyInfo.
+ * <p>
+ * The hashes are stored as four longs each in an open-addressing table with linear probing, so a lookup
+ * touches no boxed keys and allocates nothing beyond the hash itself. Hashes are uniformly distributed, so
+ * their first eight bytes serve as the table hash.
+ *
+ * @see CompositeX509TrustManager#setSpkiPins(SpkiPinSet, boolean)
+ */
+public final class SpkiPinSet {
+
+    private static final String PIN_PREFIX = "sha256/";
+    private static final int HASH_LENGTH = 32;
+    private static final int LONGS_PER_SLOT = HASH_LENGTH / Long.BYTES;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final long[] table;
+    private final int mask;
+    private final int size;
+    /**
+     * The all-zero hash marks free slots, so it is recorded separately.
+     */
+    private final boolean zeroPinned;
+
+    private SpkiPinSet(final Collection<byte[]> hashes) {
+        int slots = 2;
+        while (slots < hashes.size() * 2) {
+            slots <<= 1;
+        }
+        this.table = new long[slots * LONGS_PER_SLOT];
+        this.mask = slots - 1;
+        int count = 0;
+        boolean zero = false;
+        for (final byte[] hash : hashes) {
+            if (hash == null || hash.length != HASH_LENGTH) {
+                throw new IllegalArgumentException("SPKI pins must be SHA-256 hashes of " + HASH_LENGTH + " bytes");
+            }
+            if (isZero(hash)) {
+                count += zero ? 0 : 1;
+                zero = true;
+            } else if (insert(hash)) {
+                count++;
+            }
+        }
+        this.size = count;
+        this.zeroPinned = zero;
+    }
+
+    /**
+     * Creates a pin set from SHA-256 hashes of SubjectPublicKeyInfo structures.
+     */
+    public static SpkiPinSet of(final Collection<byte[]> sha256Hashes) {
+        return new SpkiPinSet(sha256Hashes);
+    }
+
+    /**
+     * Creates a pin set from base64-encoded SHA-256 hashes, optionally prefixed with {@code sha256/} as in
+     * HTTP public key pinning.
+     */
+    public static SpkiPinSet parse(final String... pins) {
+        final List<byte[]> hashes = new ArrayList<byte[]>(pins.length);
+        for (final String pin : pins) {
+            final String encoded = pin.startsWith(PIN_PREFIX) ? pin.substring(PIN_PREFIX.length()) : pin;
+            hashes.add(Base64.getDecoder().decode(encoded.trim()));
+        }
+        return new SpkiPinSet(hashes);
+    }
+
+    /**
+     * Creates a pin set of the public keys of the given certificates.
+     */
+    public static SpkiPinSet ofCertificates(final X509Certificate... certificates) {
+        final List<byte[]> hashes = new ArrayList<byte[]>(certificates.length);
+        for (final X509Certificate certificate : certificates) {
+            hashes.add(spkiSha256(certificate));
+        }
+        return new SpkiPinSet(hashes);
+    }
+
+    /**
+     * Returns the pin of the certificate's public key in the {@code sha256/} base64 notation.
+     */
+    public static String pinOf(final X509Certificate certificate) {
+        return PIN_PREFIX + Base64.getEncoder().encodeToString(spkiSha256(certificate));
+    }
+
+    static byte[] spkiSha256(final X509Certificate certificate) {
+        return Fingerprints.sha256().digest(certificate.getPublicKey().getEncoded());
+    }
+
+    /**
+     * Returns whether the public key of the certificate is pinned.
+     */
+    public boolean isPinned(final X509Certificate certificate) {
+        return contains(spkiSha256(certificate));
+    }
+
+    /**
+     * Returns whether a certificate of the chain, starting at the given position, has a pinned public key.
+     */
+    boolean isAnyPinned(final X509Certificate[] chain, final int from) {
+        for (int i = from; i < chain.length; i++) {
+            if (isPinned(chain[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the SHA-256 hash of a SubjectPublicKeyInfo is pinned.
+     */
+    public boolean contains(final byte[] sha256Hash) {
+        if (sha256Hash == null || sha256Hash.length != HASH_LENGTH) {
+            return false;
+        }
+        if (isZero(sha256Hash)) {
+            return zeroPinned;
+        }
+        final long h0 = (long) LONGS.get(sha256Hash, 0);
+        final long h1 = (long) LONGS.get(sha256Hash, 8);
+        final long h2 = (long) LONGS.get(sha256Hash, 16);
+        final long h3 = (long) LONGS.get(sha256Hash, 24);
+        for (int slot = (int) h0 & mask; ; slot = (slot + 1) & mask) {
+            final int i = slot * LONGS_PER_SLOT;
+            if (table[i] == h0 && table[i + 1] == h1 && table[i + 2] == h2 && table[i + 3] == h3) {
+                return true;
+            }
+            if ((table[i] | table[i + 1] | table[i + 2] | table[i + 3]) == 0L) {
+                return false;
+            }
+        }
+    }
+
+    private boolean insert(final byte[] hash) {
+        final long h0 = (long) LONGS.get(hash, 0);
+        final long h1 = (long) LONGS.get(hash, 8);
+        final long h2 = (long) LONGS.get(hash, 16);
+        final long h3 = (long) LONGS.get(hash, 24);
+        for (int slot = (int) h0 & mask; ; slot = (slot + 1) & mask) {
+            final int i = slot * LONGS_PER_SLOT;
+            if (table[i] == h0 && table[i + 1] == h1 && table[i + 2] == h2 && table[i + 3] == h3) {
+                return false;
+            }
+            if ((table[i] | table[i + 1] | table[i + 2] | table[i + 3]) == 0L) {
+                table[i] = h0;
+                table[i + 1] = h1;
+                table[i + 2] = h2;
+                table[i + 3] = h3;
+                return true;
+            }
+        }
+    }
+
+    private static boolean isZero(final byte[] hash) {
+        for (final byte b : hash) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of distinct pins.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "[pins=" + size + "]";
+    }
+}
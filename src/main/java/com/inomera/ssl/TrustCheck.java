@@ -0,0 +1,192 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.Socket;
+import java.security.AlgorithmConstraints;
+import java.security.CryptoPrimitive;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One trust decision requested from {@link CompositeX509TrustManager}: the presented chain, the side that
+ * presented it and, for the socket and engine variants, the connection it belongs to.
+ */
+final class TrustCheck {
+
+    private static final Set<String> TLS_12_PLUS = Set.of("TLSv1.2", "TLSv1.3", "DTLSv1.2");
+    private static final Set<CryptoPrimitive> SIGNATURE = EnumSet.of(CryptoPrimitive.SIGNATURE);
+
+    final X509Certificate[] chain;
+    final String authType;
+    final boolean client;
+    final Socket socket;
+    final SSLEngine engine;
+
+    TrustCheck(final X509Certificate[] chain, final String authType, final boolean client,
+               final Socket socket, final SSLEngine engine) {
+        this.chain = chain;
+        this.authType = authType;
+        this.client = client;
+        this.socket = socket;
+        this.engine = engine;
+    }
+
+    /**
+     * Validates the chain with one delegate, using the connection-aware variant when both the delegate and
+     * this check support it, so endpoint identification and algorithm constraints are applied by the delegate.
+     * A plain delegate validates without the connection; those checks are then applied here.
+     */
+    void validate(final X509TrustManager trustManager) throws CertificateException {
+        if (trustManager instanceof X509ExtendedTrustManager && (socket != null || engine != null)) {
+            final X509ExtendedTrustManager extended = (X509ExtendedTrustManager) trustManager;
+            if (client) {
+                if (engine != null) {
+                    extended.checkClientTrusted(chain, authType, engine);
+                } else {
+                    extended.checkClientTrusted(chain, authType, socket);
+                }
+            } else {
+                if (engine != null) {
+                    extended.checkServerTrusted(chain, authType, engine);
+                } else {
+                    extended.checkServerTrusted(chain, authType, socket);
+                }
+            }
+        } else {
+            if (client) {
+                trustManager.checkClientTrusted(chain, authType);
+            } else {
+                trustManager.checkServerTrusted(chain, authType);
+            }
+            checkAdditionalTrust();
+        }
+    }
+
+    /**
+     * Applies the checks JSSE leaves to connection-aware trust managers to a chain accepted without the
+     * connection, e.g. by a plain delegate or a {@code TrustStrategy}: endpoint identification of the peer and the
+     * algorithm constraints of the connection, like JSSE does when it wraps a plain trust manager. Does nothing for
+     * the connection-less variants.
+     * <p>
+     * The algorithm constraints are those set on the {@link SSLParameters} and, from TLS 1.2 on, the signature
+     * algorithms supported locally. The certificate ending the chain is taken as the trust anchor when it is
+     * self-issued, so its own signature is not checked.
+     */
+    void checkAdditionalTrust() throws CertificateException {
+        if (engine == null && !(socket instanceof SSLSocket && socket.isConnected())) {
+            return;
+        }
+        final SSLSession session = handshakeSession();
+        if (session == null) {
+            throw new CertificateException("No handshake session");
+        }
+        final SSLParameters parameters = sslParameters();
+        final String algorithm = parameters.getEndpointIdentificationAlgorithm();
+        if (algorithm != null && !algorithm.isEmpty() && chain != null && chain.length > 0) {
+            EndpointIdentity.check(session, chain[0], algorithm, client);
+        }
+        checkAlgorithmConstraints(session, parameters.getAlgorithmConstraints());
+    }
+
+    private void checkAlgorithmConstraints(final SSLSession session, final AlgorithmConstraints constraints)
+        throws CertificateException {
+        final String[] signatureAlgorithms = TLS_12_PLUS.contains(session.getProtocol())
+                                             && session instanceof ExtendedSSLSession
+            ? ((ExtendedSSLSession) session).getLocalSupportedSignatureAlgorithms()
+            : null;
+        if (chain == null || (constraints == null && signatureAlgorithms == null)) {
+            return;
+        }
+        int checked = chain.length - 1;
+        if (checked >= 0 && chain[checked].getSubjectX500Principal().equals(chain[checked].getIssuerX500Principal())) {
+            checked--;
+        }
+        for (int i = 0; i <= checked; i++) {
+            final String signatureAlgorithm = chain[i].getSigAlgName();
+            if (constraints != null
+                && (!constraints.permits(SIGNATURE, signatureAlgorithm, null)
+                    || !constraints.permits(SIGNATURE, chain[i].getPublicKey()))
+                || signatureAlgorithms != null && !isSupported(signatureAlgorithm, signatureAlgorithms)) {
+                throw new CertificateException("Certificates do not conform to algorithm constraints");
+            }
+        }
+    }
+
+    private static boolean isSupported(final String signatureAlgorithm, final String[] supported) {
+        // RSASSA-PSS names may carry the mask generation function: <digest>with<encryption>and<mgf>
+        final int mgf = signatureAlgorithm.indexOf("and");
+        final String algorithm = mgf > 0 ? signatureAlgorithm.substring(0, mgf) : signatureAlgorithm;
+        for (final String candidate : supported) {
+            if (algorithm.equalsIgnoreCase(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns this check without its connection, for validation on threads that must not touch the connection.
+     * The caller applies {@link #checkAdditionalTrust()} on the verdict.
+     */
+    TrustCheck withoutConnection() {
+        return socket == null && engine == null ? this : new TrustCheck(chain, authType, client, null, null);
+    }
+
+    /**
+     * Returns the handshake session of the connection, or {@code null} for the connection-less variants.
+     */
+    SSLSession handshakeSession() {
+        if (engine != null) {
+            return engine.getHandshakeSession();
+        }
+        if (socket instanceof SSLSocket) {
+            return ((SSLSocket) socket).getHandshakeSession();
+        }
+        return null;
+    }
+
+    /**
+     * Computes the cache key of this check. A verdict reached with endpoint identification only applies to
+     * the same peer, so the identification algorithm, peer host and protocol become part of the key.
+     */
+    ChainKey key() {
+        final SSLParameters parameters = sslParameters();
+        if (!identifiesEndpoint(parameters)) {
+            return ChainKey.of(chain, authType, client, null);
+        }
+        final SSLSession session = handshakeSession();
+        final String peer = parameters.getEndpointIdentificationAlgorithm()
+                            + '|' + (session != null ? session.getPeerHost() : null)
+                            + '|' + (session != null ? session.getProtocol() : null);
+        return ChainKey.of(chain, authType, client, peer);
+    }
+
+    /**
+     * Returns whether the connection identifies the peer, making the leaf check depend on the peer host.
+     */
+    boolean identifiesEndpoint() {
+        return identifiesEndpoint(sslParameters());
+    }
+
+    private static boolean identifiesEndpoint(final SSLParameters parameters) {
+        return parameters != null && parameters.getEndpointIdentificationAlgorithm() != null;
+    }
+
+    private SSLParameters sslParameters() {
+        if (engine != null) {
+            return engine.getSSLParameters();
+        }
+        if (socket instanceof SSLSocket) {
+            return ((SSLSocket) socket).getSSLParameters();
+        }
+        return null;
+    }
+}
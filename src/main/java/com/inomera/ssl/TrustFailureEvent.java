@@ -0,0 +1,60 @@
+package com.inomera.ssl;
+
+import java.security.cert.X509Certificate;
+
+/**
+ * A chain rejected by the composite trust manager, as delivered to a {@link BatchTrustManagerStrategy}.
+ */
+public final class TrustFailureEvent {
+
+    private final long timestamp;
+    private final boolean client;
+    private final X509Certificate[] chain;
+    private final String authType;
+    private final int rejectCount;
+
+    TrustFailureEvent(final long timestamp, final boolean client, final X509Certificate[] chain, final String authType,
+                      final int rejectCount) {
+        this.timestamp = timestamp;
+        this.client = client;
+        this.chain = chain;
+        this.authType = authType;
+        this.rejectCount = rejectCount;
+    }
+
+    /**
+     * Returns the time of the rejection in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns whether a client certificate chain was rejected.
+     */
+    public boolean isClient() {
+        return client;
+    }
+
+    public X509Certificate[] getChain() {
+        return chain.clone();
+    }
+
+    public String getAuthType() {
+        return authType;
+    }
+
+    /**
+     * Returns the number of recent rejections of the chain, see {@link TrustManagerStrategy#onClientTrustFailure(X509Certificate[], String, int)}.
+     */
+    public int getRejectCount() {
+        return rejectCount;
+    }
+
+    @Override
+    public String toString() {
+        return "[timestamp=" + timestamp + ", client=" + client + ", subject="
+               + (chain.length > 0 ? chain[0].getSubjectX500Principal() : null) + ", authType=" + authType
+               + ", rejectCount=" + rejectCount + "]";
+    }
+}
@@ -19,4 +19,28 @@ public interface TrustManagerStrategy {
      * @param authType the authentication type used (e.g., RSA)
      */
     void onServerTrustFailure(X509Certificate[] chain, String authType);
+
+    /**
+     * Called when the client certificate chain is not trusted, with the number of times the same chain was
+     * rejected while held by the {@link TrustRejectionCache}; always {@code 1} without a rejection cache.
+     *
+     * @param chain       the certificate chain presented by the client
+     * @param authType    the authentication type used (e.g., RSA)
+     * @param rejectCount the number of recent rejections of the chain, including this one
+     */
+    default void onClientTrustFailure(X509Certificate[] chain, String authType, int rejectCount) {
+        onClientTrustFailure(chain, authType);
+    }
+
+    /**
+     * Called when the server certificate chain is not trusted, with the number of times the same chain was
+     * rejected while held by the {@link TrustRejectionCache}; always {@code 1} without a rejection cache.
+     *
+     * @param chain       the certificate chain presented by the server
+     * @param authType    the authentication type used (e.g., RSA)
+     * @param rejectCount the number of recent rejections of the chain, including this one
+     */
+    default void onServerTrustFailure(X509Certificate[] chain, String authType, int rejectCount) {
+        onServerTrustFailure(chain, authType);
+    }
 }
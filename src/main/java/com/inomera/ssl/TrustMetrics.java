@@ -0,0 +1,41 @@
+package com.inomera.ssl;
+
+/**
+ * Instrumentation hook of {@link CompositeX509TrustManager}.
+ * <p>
+ * Implementations are called on the handshake thread and must be cheap and thread-safe. When no metrics are
+ * configured, or the configured ones are not {@linkplain #isEnabled() enabled}, the composite does not take any
+ * timestamps.
+ *
+ * @see TrustMetricsRecorder
+ * @see JfrTrustMetrics
+ */
+public interface TrustMetrics {
+
+    /**
+     * Returns whether anything is recorded at the moment. Asked before each trust decision and delegate
+     * validation, which are only timed while it returns {@code true}.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called after one delegate trust manager validated a chain.
+     *
+     * @param delegate the position of the delegate in the composite
+     * @param client   whether a client chain was validated
+     * @param accepted whether the delegate trusted the chain
+     * @param nanos    the validation time in nanoseconds
+     */
+    void onDelegateValidation(int delegate, boolean client, boolean accepted, long nanos);
+
+    /**
+     * Called after the composite reached its decision for a chain, including cached decisions.
+     *
+     * @param client  whether a client chain was checked
+     * @param trusted whether the chain was trusted
+     * @param nanos   the decision time in nanoseconds
+     */
+    void onTrustDecision(boolean client, boolean trusted, long nanos);
+}
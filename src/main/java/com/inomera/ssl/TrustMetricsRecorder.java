@@ -0,0 +1,133 @@
+package com.inomera.ssl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link TrustMetrics}: attempt, accept and reject counts plus latency histograms, per delegate and
+ * for the overall decision, kept separately for client and server checks.
+ * <p>
+ * Useful to see which trust store accepts which traffic and to tune the order of the stores.
+ */
+public class TrustMetricsRecorder implements TrustMetrics {
+
+    private final Counters clientDecisions = new Counters();
+    private final Counters serverDecisions = new Counters();
+    private volatile Counters[] clientValidations = new Counters[0];
+    private volatile Counters[] serverValidations = new Counters[0];
+
+    @Override
+    public void onDelegateValidation(final int delegate, final boolean client, final boolean accepted, final long nanos) {
+        validations(delegate, client).record(accepted, nanos);
+    }
+
+    @Override
+    public void onTrustDecision(final boolean client, final boolean trusted, final long nanos) {
+        (client ? clientDecisions : serverDecisions).record(trusted, nanos);
+    }
+
+    public Counters getClientDecisions() {
+        return clientDecisions;
+    }
+
+    public Counters getServerDecisions() {
+        return serverDecisions;
+    }
+
+    /**
+     * Returns the client chain validations of the delegate at the given position.
+     */
+    public Counters getClientValidations(final int delegate) {
+        return validations(delegate, true);
+    }
+
+    /**
+     * Returns the server chain validations of the delegate at the given position.
+     */
+    public Counters getServerValidations(final int delegate) {
+        return validations(delegate, false);
+    }
+
+    /**
+     * Returns the number of delegates seen so far.
+     */
+    public int getDelegateCount() {
+        return Math.max(clientValidations.length, serverValidations.length);
+    }
+
+    private Counters validations(final int delegate, final boolean client) {
+        final Counters[] counters = client ? clientValidations : serverValidations;
+        if (delegate < counters.length) {
+            return counters[delegate];
+        }
+        return grow(delegate, client);
+    }
+
+    private synchronized Counters grow(final int delegate, final boolean client) {
+        Counters[] counters = client ? clientValidations : serverValidations;
+        if (delegate >= counters.length) {
+            final int length = counters.length;
+            counters = Arrays.copyOf(counters, delegate + 1);
+            for (int i = length; i < counters.length; i++) {
+                counters[i] = new Counters();
+            }
+            if (client) {
+                clientValidations = counters;
+            } else {
+                serverValidations = counters;
+            }
+        }
+        return counters[delegate];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[clientDecisions=").append(clientDecisions)
+            .append(", serverDecisions=").append(serverDecisions);
+        final Counters[] client = clientValidations;
+        for (int i = 0; i < client.length; i++) {
+            sb.append(", clientValidations[").append(i).append("]=").append(client[i]);
+        }
+        final Counters[] server = serverValidations;
+        for (int i = 0; i < server.length; i++) {
+            sb.append(", serverValidations[").append(i).append("]=").append(server[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Counts and latencies of one kind of trust decision.
+     */
+    public static final class Counters {
+
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(final boolean accepted, final long nanos) {
+            (accepted ? this.accepted : this.rejected).increment();
+            latency.record(nanos);
+        }
+
+        public long getAttempts() {
+            return getAccepted() + getRejected();
+        }
+
+        public long getAccepted() {
+            return accepted.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "[accepted=" + getAccepted() + ", rejected=" + getRejected() + ", latency=" + latency + "]";
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.inomera.ssl;
+
+import javax.security.auth.x500.X500Principal;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.DSAKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of validated intermediate-to-anchor paths used by {@link CompositeX509TrustManager}.
+ * <p>
+ * Entries are keyed by the fingerprints of a chain without its leaf, together with the side and authentication
+ * type. Once the delegates accepted a chain, another leaf issued by the same intermediate is accepted after
+ * checking only the leaf itself: its validity, issuer name, critical extensions, key usage and extended key
+ * usage, its signature and key algorithm against those of the leaf the path was validated with, and its
+ * signature by the intermediate. An entry never outlives the earliest {@code notAfter} of its path nor the
+ * configured time-to-live, nor is it reused once the trust material that validated it was replaced. Paths carrying
+ * name or policy constraints are not cached.
+ * <p>
+ * A path is only cached when the accepted chain was validated through it: the leaf is not an anchor itself, every
+ * certificate is signed by the next one, which is a CA, and the path ends at an anchor or at a certificate signed
+ * by one. A delegate may accept a chain for another reason, e.g. because its leaf is a trusted certificate, and
+ * the certificates after such a leaf prove nothing about other leaves.
+ * <p>
+ * The composite only uses the cache while all its delegates are plain PKIX trust stores without revocation
+ * checking, so no delegate could have rejected such a leaf for another reason; the {@link CrlRevocationIndex} of
+ * the composite and the algorithm constraints of the connection still apply. A leaf failing any of the checks is
+ * validated by the delegates as usual.
+ */
+public class TrustPathCache {
+
+    private static final String NAME_CONSTRAINTS = "2.5.29.30";
+    private static final String POLICY_CONSTRAINTS = "2.5.29.36";
+    private static final String INHIBIT_ANY_POLICY = "2.5.29.54";
+    private static final String SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+    private static final String CLIENT_AUTH = "1.3.6.1.5.5.7.3.2";
+    private static final String ANY_EXTENDED_KEY_USAGE = "2.5.29.37.0";
+    private static final Set<String> LEAF_CRITICAL_EXTENSIONS = Set.of(
+        "2.5.29.15", // key usage
+        "2.5.29.17", // subject alternative name
+        "2.5.29.19", // basic constraints
+        "2.5.29.37"  // extended key usage
+    );
+    private static final int DIGITAL_SIGNATURE = 0;
+    private static final int KEY_ENCIPHERMENT = 2;
+    private static final int KEY_AGREEMENT = 4;
+
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+    private final Map<ChainKey, ValidatedPath> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a path cache.
+     *
+     * @param maximumSize the maximum number of cached paths
+     * @param timeToLive  the maximum time a validated path is reused
+     */
+    public TrustPathCache(final int maximumSize, final Duration timeToLive) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.entries = new LinkedHashMap<ChainKey, ValidatedPath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ChainKey, ValidatedPath> eldest) {
+                if (size() > TrustPathCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Computes the key of the path of a chain, or returns {@code null} if the chain has no intermediate or
+     * anchor after the leaf.
+     */
+    static ChainKey pathKey(final X509Certificate[] chain, final String authType, final boolean client) {
+        if (chain == null || chain.length < 2) {
+            return null;
+        }
+        return ChainKey.of(Arrays.copyOfRange(chain, 1, chain.length), authType, client, null);
+    }
+
+    /**
+     * Returns whether the path of the chain was validated before by the trust material of the given generation and
+     * its leaf passes the leaf checks.
+     */
+    boolean isTrusted(final ChainKey key, final X509Certificate[] chain, final String authType, final boolean client,
+                      final long generation) {
+        final long now = System.currentTimeMillis();
+        final ValidatedPath path;
+        synchronized (entries) {
+            final ValidatedPath cached = entries.get(key);
+            if (cached != null && (cached.generation != generation || cached.expiresAt <= now)) {
+                entries.remove(key);
+                evictions.increment();
+                path = null;
+            } else {
+                path = cached;
+            }
+        }
+        if (path != null && path.accepts(chain[0], chain[1], authType, client, now)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Caches the path of a chain the delegates just accepted, if the chain was validated through that path.
+     *
+     * @param anchors    the trust anchors of the delegates by subject
+     * @param generation the generation of the trust material of the delegates
+     */
+    void put(final ChainKey key, final X509Certificate[] chain, final Map<X500Principal, List<X509Certificate>> anchors,
+             final long generation) {
+        if (!isAnchoredPath(chain, anchors)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        long expiresAt = now + timeToLiveMillis;
+        for (int i = 1; i < chain.length; i++) {
+            if (chain[i].getExtensionValue(NAME_CONSTRAINTS) != null || chain[i].getExtensionValue(POLICY_CONSTRAINTS) != null
+                || chain[i].getExtensionValue(INHIBIT_ANY_POLICY) != null) {
+                return;
+            }
+            expiresAt = Math.min(expiresAt, chain[i].getNotAfter().getTime());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        final X509Certificate leaf = chain[0];
+        final ValidatedPath path = new ValidatedPath(expiresAt, generation, leaf.getSigAlgOID(),
+            leaf.getPublicKey().getAlgorithm(), keySize(leaf.getPublicKey()));
+        synchronized (entries) {
+            entries.put(key, path);
+        }
+    }
+
+    /**
+     * Discards all cached paths. Paths validated by previous trust material are never reused, this only frees
+     * them.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full or the entry had expired.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "[maximumSize=" + maximumSize + ", timeToLiveMillis=" + timeToLiveMillis + ", hits=" + getHitCount()
+               + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /**
+     * Returns whether each certificate of the chain is signed by the next one, a CA, and the last one is an anchor
+     * or signed by one, while the leaf itself is not an anchor.
+     */
+    private static boolean isAnchoredPath(final X509Certificate[] chain,
+                                          final Map<X500Principal, List<X509Certificate>> anchors) {
+        if (isAnchor(chain[0], anchors)) {
+            return false;
+        }
+        for (int i = 1; i < chain.length; i++) {
+            if (!isIssuedBy(chain[i - 1], chain[i]) || chain[i].getBasicConstraints() < 0) {
+                return false;
+            }
+        }
+        final X509Certificate last = chain[chain.length - 1];
+        if (isAnchor(last, anchors)) {
+            return true;
+        }
+        for (final X509Certificate anchor : anchors.getOrDefault(last.getIssuerX500Principal(),
+            List.<X509Certificate>of())) {
+            if (isIssuedBy(last, anchor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAnchor(final X509Certificate certificate,
+                                    final Map<X500Principal, List<X509Certificate>> anchors) {
+        final List<X509Certificate> candidates = anchors.get(certificate.getSubjectX500Principal());
+        return candidates != null && candidates.contains(certificate);
+    }
+
+    private static boolean isIssuedBy(final X509Certificate certificate, final X509Certificate issuer) {
+        if (!certificate.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())) {
+            return false;
+        }
+        try {
+            certificate.verify(issuer.getPublicKey());
+            return true;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static int keySize(final PublicKey key) {
+        if (key instanceof RSAKey) {
+            return ((RSAKey) key).getModulus().bitLength();
+        }
+        if (key instanceof ECKey) {
+            return ((ECKey) key).getParams().getCurve().getField().getFieldSize();
+        }
+        if (key instanceof DSAKey) {
+            return ((DSAKey) key).getParams().getP().bitLength();
+        }
+        return 0;
+    }
+
+    /**
+     * Whether the key usage of the leaf permits the authentication type: key transport for RSA key exchange,
+     * key agreement for static (EC)DH and a digital signature otherwise.
+     */
+    private static boolean permitsKeyUsage(final boolean[] keyUsage, final String authType, final boolean client) {
+        if (keyUsage == null) {
+            return true;
+        }
+        final int required;
+        if (client || authType == null) {
+            required = DIGITAL_SIGNATURE;
+        } else if ("RSA".equals(authType)) {
+            required = KEY_ENCIPHERMENT;
+        } else if (authType.startsWith("ECDH_") || authType.startsWith("DH_")) {
+            required = KEY_AGREEMENT;
+        } else {
+            required = DIGITAL_SIGNATURE;
+        }
+        return keyUsage.length > required && keyUsage[required];
+    }
+
+    private static final class ValidatedPath {
+
+        private final long expiresAt;
+        private final long generation;
+        private final String leafSignatureAlgorithm;
+        private final String leafKeyAlgorithm;
+        private final int leafKeySize;
+
+        private ValidatedPath(final long expiresAt, final long generation, final String leafSignatureAlgorithm,
+                              final String leafKeyAlgorithm, final int leafKeySize) {
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+            this.leafSignatureAlgorithm = leafSignatureAlgorithm;
+            this.leafKeyAlgorithm = leafKeyAlgorithm;
+            this.leafKeySize = leafKeySize;
+        }
+
+        private boolean accepts(final X509Certificate leaf, final X509Certificate issuer, final String authType,
+                                final boolean client, final long now) {
+            try {
+                leaf.checkValidity(new Date(now));
+                if (!leaf.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())
+                    || !leafSignatureAlgorithm.equals(leaf.getSigAlgOID())
+                    || !leafKeyAlgorithm.equals(leaf.getPublicKey().getAlgorithm())
+                    || keySize(leaf.getPublicKey()) < leafKeySize) {
+                    return false;
+                }
+                final Set<String> critical = leaf.getCriticalExtensionOIDs();
+                if (critical != null && !LEAF_CRITICAL_EXTENSIONS.containsAll(critical)) {
+                    return false;
+                }
+                final List<String> extendedKeyUsage = leaf.getExtendedKeyUsage();
+                if (extendedKeyUsage != null && !extendedKeyUsage.contains(client ? CLIENT_AUTH : SERVER_AUTH)
+                    && !extendedKeyUsage.contains(ANY_EXTENDED_KEY_USAGE)) {
+                    return false;
+                }
+                if (!permitsKeyUsage(leaf.getKeyUsage(), authType, client)) {
+                    return false;
+                }
+                leaf.verify(issuer.getPublicKey());
+                return true;
+            } catch (GeneralSecurityException | RuntimeException e) {
+                return false;
+            }
+        }
+    }
+}
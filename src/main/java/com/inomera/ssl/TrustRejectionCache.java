@@ -0,0 +1,142 @@
+package com.inomera.ssl;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of recently rejected chains used by {@link CompositeX509TrustManager}.
+ * <p>
+ * Entries are keyed like the {@link TrustVerdictCache}, by the fingerprints of the whole chain together with
+ * the authentication type. While an entry is alive, a handshake presenting the same chain is rejected without
+ * running the delegate trust managers again, and the number of rejections of the chain is counted and handed
+ * to the {@link TrustManagerStrategy}. The time-to-live should be short, e.g. a few seconds: a rejection is not
+ * re-evaluated before its entry expires, unless the trust material changes: entries are tagged with the generation
+ * of the trust material that rejected the chain. When the cache is full the least recently used entry is evicted.
+ */
+public class TrustRejectionCache {
+
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+    private final Map<ChainKey, Rejection> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a rejection cache.
+     *
+     * @param maximumSize the maximum number of cached chains
+     * @param timeToLive  the time a rejection is reused after the chain was last validated
+     */
+    public TrustRejectionCache(final int maximumSize, final Duration timeToLive) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.entries = new LinkedHashMap<ChainKey, Rejection>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ChainKey, Rejection> eldest) {
+                if (size() > TrustRejectionCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Counts one more rejection of a chain cached for the trust material of the given generation.
+     *
+     * @return the number of rejections of the chain, or {@code 0} if it is not cached for that generation
+     */
+    int rejectAgain(final ChainKey key, final long generation) {
+        final long now = System.currentTimeMillis();
+        synchronized (entries) {
+            final Rejection rejection = entries.get(key);
+            if (rejection != null) {
+                if (rejection.generation == generation && rejection.expiresAt > now) {
+                    hits.increment();
+                    return ++rejection.count;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return 0;
+    }
+
+    /**
+     * Caches the rejection of a chain that was just validated by the trust material of the given generation.
+     *
+     * @return the number of rejections of the chain, always {@code 1}
+     */
+    int reject(final ChainKey key, final long generation) {
+        final Rejection rejection = new Rejection(System.currentTimeMillis() + timeToLiveMillis, generation);
+        synchronized (entries) {
+            entries.put(key, rejection);
+        }
+        return rejection.count;
+    }
+
+    /**
+     * Discards all cached rejections. Rejections by previous trust material are never reused, this only frees
+     * them.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full or the entry had expired.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "[maximumSize=" + maximumSize + ", timeToLiveMillis=" + timeToLiveMillis + ", hits=" + getHitCount()
+               + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class Rejection {
+
+        private final long expiresAt;
+        private final long generation;
+        private int count = 1;
+
+        private Rejection(final long expiresAt, final long generation) {
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+}
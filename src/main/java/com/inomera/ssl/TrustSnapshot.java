@@ -0,0 +1,254 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.X509TrustManager;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Precompiled, memory-mapped set of trust anchors.
+ * <p>
+ * A snapshot stores the DER encoding of each anchor behind an index sorted by a hash of the anchor subject,
+ * so opening one only maps the file and verifies the checksum of the index; no key store is decoded and no
+ * certificate parsed. Anchors are decoded when a chain naming them is first validated, and checked against
+ * the SHA-256 fingerprint recorded in the index at that point.
+ * <p>
+ * Layout, big-endian: the magic {@code SSLFSNAP}, the format version and the anchor count, then one index
+ * entry per anchor (subject hash, SHA-256 fingerprint, offset and length of its DER encoding), the SHA-256 of
+ * everything before it, and finally the DER encodings.
+ * <p>
+ * Snapshots are compiled from the trust material of a builder with {@link #compile(MultiTrustSSLContextBuilder, Path)},
+ * or from key store files and PEM bundles with the {@code compileTrustSnapshot} task of the build.
+ */
+public final class TrustSnapshot {
+
+    private static final byte[] MAGIC = "SSLFSNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 8;
+    private static final int FINGERPRINT_SIZE = 32;
+    private static final int ENTRY_SIZE = 8 + FINGERPRINT_SIZE + 8;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final byte[] checksum;
+    private final AtomicReferenceArray<X509Certificate> certificates;
+
+    private TrustSnapshot(final Path path, final ByteBuffer buffer, final int size, final byte[] checksum) {
+        this.path = path;
+        this.buffer = buffer;
+        this.size = size;
+        this.checksum = checksum;
+        this.certificates = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Maps a snapshot file and verifies its header and index.
+     *
+     * @param path the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static TrustSnapshot open(final Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE + FINGERPRINT_SIZE) {
+            throw new IOException("Not a trust snapshot: " + path);
+        }
+        final byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a trust snapshot: " + path);
+        }
+        final int version = buffer.getInt(MAGIC.length);
+        if (version != VERSION) {
+            throw new IOException("Unsupported trust snapshot version " + version + ": " + path);
+        }
+        final int size = buffer.getInt(MAGIC.length + 4);
+        final long indexEnd = HEADER_SIZE + (long) size * ENTRY_SIZE;
+        if (size < 0 || indexEnd + FINGERPRINT_SIZE > buffer.capacity()) {
+            throw new IOException("Truncated trust snapshot: " + path);
+        }
+        final MessageDigest digest = Fingerprints.sha256();
+        digest.update(buffer.slice(0, (int) indexEnd));
+        final byte[] checksum = digest.digest();
+        final byte[] recorded = new byte[FINGERPRINT_SIZE];
+        buffer.get((int) indexEnd, recorded);
+        if (!MessageDigest.isEqual(checksum, recorded)) {
+            throw new IOException("Corrupted trust snapshot index: " + path);
+        }
+        for (int i = 0; i < size; i++) {
+            final int entry = HEADER_SIZE + i * ENTRY_SIZE + 8 + FINGERPRINT_SIZE;
+            final long end = (long) buffer.getInt(entry) + buffer.getInt(entry + 4);
+            if (buffer.getInt(entry) < 0 || buffer.getInt(entry + 4) < 0 || end > buffer.capacity()) {
+                throw new IOException("Truncated trust snapshot: " + path);
+            }
+        }
+        return new TrustSnapshot(path, buffer, size, checksum);
+    }
+
+    /**
+     * Writes a snapshot of the given anchors, deduplicated by fingerprint. The file is replaced atomically
+     * where the file system supports it, otherwise by a plain move over the previous file.
+     *
+     * @param path    the snapshot file
+     * @param anchors the trust anchors
+     */
+    public static void write(final Path path, final Collection<X509Certificate> anchors) throws IOException, CertificateEncodingException {
+        final Map<ByteBuffer, byte[]> encodings = new LinkedHashMap<>();
+        final List<long[]> order = new ArrayList<>();
+        for (final X509Certificate anchor : anchors) {
+            final byte[] der = anchor.getEncoded();
+            final ByteBuffer fingerprint = ByteBuffer.wrap(Fingerprints.sha256().digest(der));
+            if (encodings.putIfAbsent(fingerprint, der) == null) {
+                order.add(new long[]{subjectHash(anchor.getSubjectX500Principal().getEncoded()), order.size()});
+            }
+        }
+        order.sort((a, b) -> Long.compare(a[0], b[0]));
+        final List<ByteBuffer> fingerprints = new ArrayList<>(encodings.keySet());
+
+        final Path parent = path.toAbsolutePath().getParent();
+        final Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            final MessageDigest digest = Fingerprints.sha256();
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                final ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE + order.size() * ENTRY_SIZE);
+                index.put(MAGIC).putInt(VERSION).putInt(order.size());
+                long offset = index.capacity() + FINGERPRINT_SIZE;
+                for (final long[] entry : order) {
+                    final ByteBuffer fingerprint = fingerprints.get((int) entry[1]);
+                    final byte[] der = encodings.get(fingerprint);
+                    if (offset + der.length > Integer.MAX_VALUE) {
+                        throw new IOException("Trust snapshot too large");
+                    }
+                    index.putLong(entry[0]).put(fingerprint.duplicate()).putInt((int) offset).putInt(der.length);
+                    offset += der.length;
+                }
+                out.write(index.array());
+                out.write(digest.digest(index.array()));
+                for (final long[] entry : order) {
+                    out.write(encodings.get(fingerprints.get((int) entry[1])));
+                }
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the anchors accepted by the trust material loaded into the builder.
+     * Trust strategies are not part of a snapshot; pass them again to
+     * {@link MultiTrustSSLContextBuilder#loadTrustSnapshot(Path, org.apache.http.ssl.TrustStrategy)}.
+     */
+    public static void compile(final MultiTrustSSLContextBuilder builder, final Path path) throws GeneralSecurityException, IOException {
+        final List<X509Certificate> anchors = new ArrayList<>();
+        for (final X509TrustManager trustManager : MultiTrustSSLContextBuilder.toX509TrustManagers(builder.getTrustMaterial())) {
+            final X509Certificate[] issuers = trustManager.getAcceptedIssuers();
+            if (issuers != null) {
+                anchors.addAll(Arrays.asList(issuers));
+            }
+        }
+        write(path, anchors);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of anchors in the snapshot.
+     */
+    public int size() {
+        return size;
+    }
+
+    byte[] checksum() {
+        return checksum.clone();
+    }
+
+    /**
+     * Returns the position of the first anchor whose subject hash is not less than the given one.
+     */
+    int lowerBound(final long subjectHash) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (subjectHash(mid) < subjectHash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    long subjectHash(final int i) {
+        return buffer.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+    }
+
+    /**
+     * Decodes the anchor at the given position on first use and verifies it against its recorded fingerprint.
+     */
+    X509Certificate certificate(final int i) throws CertificateException {
+        X509Certificate certificate = certificates.get(i);
+        if (certificate == null) {
+            final int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            final byte[] der = new byte[buffer.getInt(entry + 8 + FINGERPRINT_SIZE + 4)];
+            buffer.get(buffer.getInt(entry + 8 + FINGERPRINT_SIZE), der);
+            final byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+            buffer.get(entry + 8, fingerprint);
+            if (!MessageDigest.isEqual(fingerprint, Fingerprints.sha256().digest(der))) {
+                throw new CertificateException("Corrupted trust anchor " + i + " in " + path);
+            }
+            certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(der));
+            if (!certificates.compareAndSet(i, null, certificate)) {
+                certificate = certificates.get(i);
+            }
+        }
+        return certificate;
+    }
+
+    /**
+     * Hashes an encoded subject name to the 64-bit key the index is sorted by.
+     */
+    static long subjectHash(final byte[] encodedSubject) {
+        return ByteBuffer.wrap(Fingerprints.sha256().digest(encodedSubject)).getLong();
+    }
+
+    @Override
+    public String toString() {
+        return "[path=" + path + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,35 @@
+package com.inomera.ssl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded by {@link JfrTrustMetrics}.
+ */
+@Name("com.inomera.ssl.TrustValidation")
+@Label("Trust Validation")
+@Description("Certificate chain validation by the composite trust manager or one of its delegates")
+@Category({"SSL Forge"})
+@StackTrace(false)
+final class TrustValidationEvent extends Event {
+
+    @Label("Delegate")
+    @Description("Position of the delegate trust manager, -1 for the overall decision of the composite")
+    int delegate;
+
+    @Label("Client")
+    @Description("Whether a client certificate chain was validated")
+    boolean client;
+
+    @Label("Accepted")
+    boolean accepted;
+
+    @Label("Validation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long validationTime;
+}
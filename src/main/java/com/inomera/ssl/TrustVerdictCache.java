@@ -0,0 +1,146 @@
+package com.inomera.ssl;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of positive trust verdicts used by {@link CompositeX509TrustManager}.
+ * <p>
+ * Entries are keyed by the fingerprints of the whole chain together with the authentication type,
+ * so a repeated handshake presenting an identical chain is accepted without running the delegate
+ * trust managers again. An entry never outlives the earliest {@code notAfter} of its chain nor the
+ * configured time-to-live. When the cache is full the least recently used entry is evicted. Each entry is tagged
+ * with the generation of the trust material that accepted the chain and is only reused for that generation.
+ * <p>
+ * Only successful validations are cached; untrusted chains always go through the delegates.
+ */
+public class TrustVerdictCache {
+
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+    private final Map<ChainKey, Verdict> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a verdict cache.
+     *
+     * @param maximumSize the maximum number of cached chains
+     * @param timeToLive  the maximum time a verdict is reused
+     */
+    public TrustVerdictCache(final int maximumSize, final Duration timeToLive) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.entries = new LinkedHashMap<ChainKey, Verdict>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ChainKey, Verdict> eldest) {
+                if (size() > TrustVerdictCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns whether the chain was accepted by the trust material of the given generation.
+     *
+     * @param generation the generation of the trust material the verdict is asked for
+     */
+    boolean isTrusted(final ChainKey key, final long generation) {
+        final long now = System.currentTimeMillis();
+        synchronized (entries) {
+            final Verdict verdict = entries.get(key);
+            if (verdict != null) {
+                if (verdict.generation == generation && verdict.expiresAt > now) {
+                    hits.increment();
+                    return true;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Caches the acceptance of a chain by the trust material of the given generation.
+     */
+    void put(final ChainKey key, final X509Certificate[] chain, final long generation) {
+        final long now = System.currentTimeMillis();
+        long expiresAt = now + timeToLiveMillis;
+        for (final X509Certificate certificate : chain) {
+            expiresAt = Math.min(expiresAt, certificate.getNotAfter().getTime());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Verdict(expiresAt, generation));
+        }
+    }
+
+    /**
+     * Discards all cached verdicts. Verdicts of previous trust material are never reused, this only frees them.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full or the entry had expired.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "[maximumSize=" + maximumSize + ", timeToLiveMillis=" + timeToLiveMillis + ", hits=" + getHitCount()
+               + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class Verdict {
+
+        private final long expiresAt;
+        private final long generation;
+
+        private Verdict(final long expiresAt, final long generation) {
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+}
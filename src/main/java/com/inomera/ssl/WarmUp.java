@@ -0,0 +1,111 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import java.nio.ByteBuffer;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+/**
+ * Runs handshakes between engine pairs over in-memory buffers and direct trust checks, so that the JSSE
+ * handshake code, the crypto providers and the composite trust manager are loaded and compiled before the
+ * first peer connects.
+ *
+ * @see MultiTrustSSLContextBuilder#warmUp(int, int)
+ */
+final class WarmUp {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int MAX_STEPS = 1000;
+
+    private final SSLEngineFactory engineFactory;
+    private final CompositeX509TrustManager trustManager;
+    private final X509Certificate[] chain;
+
+    WarmUp(final SSLEngineFactory engineFactory, final CompositeX509TrustManager trustManager,
+           final X509Certificate[] chain) {
+        this.engineFactory = engineFactory;
+        this.trustManager = trustManager;
+        this.chain = chain;
+    }
+
+    /**
+     * Runs the handshakes and trust checks.
+     *
+     * @param startNanos the {@link System#nanoTime()} the warm-up started at, reported duration included
+     */
+    WarmUpReport run(final int handshakes, final int trustChecks, final long startNanos) {
+        int failed = 0;
+        for (int i = 0; i < handshakes; i++) {
+            // A distinct peer port per handshake keeps the client from resuming, so every handshake is a full one
+            final SSLEngine client = engineFactory.createClientEngine("localhost", i + 1);
+            final SSLEngine server = engineFactory.createServerEngine();
+            try {
+                handshake(client, server);
+            } catch (SSLException | RuntimeException e) {
+                failed++;
+            }
+        }
+        final String serverAuthType = "EC".equals(chain[0].getPublicKey().getAlgorithm()) ? "ECDHE_ECDSA" : "ECDHE_RSA";
+        int failedTrustChecks = 0;
+        for (int i = 0; i < trustChecks; i++) {
+            try {
+                if ((i & 1) == 0) {
+                    trustManager.checkServerTrusted(chain, serverAuthType);
+                } else {
+                    trustManager.checkClientTrusted(chain, chain[0].getPublicKey().getAlgorithm());
+                }
+            } catch (RuntimeException e) {
+                failedTrustChecks++;
+            }
+        }
+        return new WarmUpReport(Duration.ofNanos(System.nanoTime() - startNanos), handshakes - failed, failed,
+            trustChecks - failedTrustChecks, failedTrustChecks);
+    }
+
+    /**
+     * Drives both engines until neither is handshaking. Records a side wraps are read by the other side's next
+     * unwrap; delegated tasks run on the calling thread.
+     */
+    static void handshake(final SSLEngine client, final SSLEngine server) throws SSLException {
+        client.beginHandshake();
+        server.beginHandshake();
+        final ByteBuffer clientToServer = ByteBuffer.allocate(client.getSession().getPacketBufferSize());
+        final ByteBuffer serverToClient = ByteBuffer.allocate(server.getSession().getPacketBufferSize());
+        final ByteBuffer clientIn = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+        final ByteBuffer serverIn = ByteBuffer.allocate(server.getSession().getApplicationBufferSize());
+        for (int step = 0; step < MAX_STEPS; step++) {
+            if (isFinished(client) && isFinished(server)) {
+                return;
+            }
+            client.wrap(EMPTY, clientToServer);
+            runDelegatedTasks(client);
+            server.wrap(EMPTY, serverToClient);
+            runDelegatedTasks(server);
+            clientToServer.flip();
+            serverToClient.flip();
+            client.unwrap(serverToClient, clientIn);
+            runDelegatedTasks(client);
+            server.unwrap(clientToServer, serverIn);
+            runDelegatedTasks(server);
+            clientToServer.compact();
+            serverToClient.compact();
+            clientIn.clear();
+            serverIn.clear();
+        }
+        throw new SSLException("Handshake did not complete within " + MAX_STEPS + " steps");
+    }
+
+    private static boolean isFinished(final SSLEngine engine) {
+        final HandshakeStatus status = engine.getHandshakeStatus();
+        return status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED;
+    }
+
+    private static void runDelegatedTasks(final SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+}
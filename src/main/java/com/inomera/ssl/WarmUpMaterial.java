@@ -0,0 +1,148 @@
+package com.inomera.ssl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Throwaway trust and key material for {@link MultiTrustSSLContextBuilder#warmUp(int, int)}: a self-signed EC P-256
+ * authority and one certificate issued by it, valid for an hour and never used outside the warm-up.
+ * <p>
+ * Only the DER fields PKIX validation needs are encoded: version, serial, signature algorithm, names, validity,
+ * public key and, on the authority, basic constraints. The certificate carries no key usage, extended key usage or
+ * subject alternative names, so it serves both as server and as client certificate.
+ */
+final class WarmUpMaterial {
+
+    private static final byte[] EC_WITH_SHA256 = {0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x04, 0x03, 0x02};
+    private static final byte[] COMMON_NAME = {0x55, 0x04, 0x03};
+    private static final byte[] BASIC_CONSTRAINTS = {0x55, 0x1D, 0x13};
+    private static final Duration VALIDITY = Duration.ofHours(1);
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'")
+        .withZone(ZoneOffset.UTC);
+
+    final X509Certificate authority;
+    final X509Certificate certificate;
+    final KeyStore keyStore;
+    final char[] password;
+
+    private WarmUpMaterial(final X509Certificate authority, final X509Certificate certificate, final KeyStore keyStore,
+                           final char[] password) {
+        this.authority = authority;
+        this.certificate = certificate;
+        this.keyStore = keyStore;
+        this.password = password;
+    }
+
+    static WarmUpMaterial generate() throws GeneralSecurityException {
+        final SecureRandom random = new SecureRandom();
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"), random);
+        final KeyPair authorityKey = generator.generateKeyPair();
+        final KeyPair certificateKey = generator.generateKeyPair();
+        final byte[] authorityName = name("ssl-forge warm-up CA");
+        final X509Certificate authority = sign(authorityName, authorityKey, authorityName, authorityKey, true, random);
+        final X509Certificate certificate = sign(name("localhost"), certificateKey, authorityName, authorityKey, false,
+            random);
+        final char[] password = "warm-up".toCharArray();
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try {
+            keyStore.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        keyStore.setKeyEntry("warm-up", certificateKey.getPrivate(), password,
+            new X509Certificate[]{certificate, authority});
+        return new WarmUpMaterial(authority, certificate, keyStore, password);
+    }
+
+    KeyStore trustStore() throws GeneralSecurityException {
+        final KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        try {
+            trustStore.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        trustStore.setCertificateEntry("warm-up", authority);
+        return trustStore;
+    }
+
+    private static X509Certificate sign(final byte[] subject, final KeyPair subjectKey, final byte[] issuer,
+                                        final KeyPair issuerKey, final boolean authority, final SecureRandom random)
+        throws GeneralSecurityException {
+        final Instant now = Instant.now();
+        final byte[] algorithm = sequence(tlv(0x06, EC_WITH_SHA256));
+        final byte[] tbs = sequence(
+            tlv(0xA0, tlv(0x02, new byte[]{2})),
+            tlv(0x02, new BigInteger(64, random).add(BigInteger.ONE).toByteArray()),
+            algorithm,
+            issuer,
+            sequence(time(now.minus(VALIDITY)), time(now.plus(VALIDITY))),
+            subject,
+            subjectKey.getPublic().getEncoded(),
+            authority
+                ? tlv(0xA3, sequence(sequence(tlv(0x06, BASIC_CONSTRAINTS), tlv(0x01, new byte[]{(byte) 0xFF}),
+                tlv(0x04, sequence(tlv(0x01, new byte[]{(byte) 0xFF}))))))
+                : new byte[0]);
+        final Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(issuerKey.getPrivate());
+        signature.update(tbs);
+        final byte[] signatureBits = signature.sign();
+        final byte[] bitString = new byte[signatureBits.length + 1];
+        System.arraycopy(signatureBits, 0, bitString, 1, signatureBits.length);
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(sequence(tbs, algorithm, tlv(0x03, bitString))));
+    }
+
+    private static byte[] name(final String commonName) {
+        return sequence(tlv(0x31, sequence(tlv(0x06, COMMON_NAME),
+            tlv(0x0C, commonName.getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    private static byte[] time(final Instant instant) {
+        return tlv(0x17, UTC_TIME.format(instant).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] sequence(final byte[]... elements) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final byte[] element : elements) {
+            out.write(element, 0, element.length);
+        }
+        return tlv(0x30, out.toByteArray());
+    }
+
+    /**
+     * Encodes a DER element; the contents stay below 64 KiB.
+     */
+    private static byte[] tlv(final int tag, final byte[] content) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 4);
+        out.write(tag);
+        if (content.length < 0x80) {
+            out.write(content.length);
+        } else if (content.length < 0x100) {
+            out.write(0x81);
+            out.write(content.length);
+        } else {
+            out.write(0x82);
+            out.write(content.length >> 8);
+            out.write(content.length);
+        }
+        out.write(content, 0, content.length);
+        return out.toByteArray();
+    }
+}
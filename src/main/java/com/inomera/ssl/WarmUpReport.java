@@ -0,0 +1,67 @@
+package com.inomera.ssl;
+
+import java.time.Duration;
+
+/**
+ * Outcome of {@link MultiTrustSSLContextBuilder#warmUp(int, int)}.
+ */
+public final class WarmUpReport {
+
+    private final Duration duration;
+    private final int handshakes;
+    private final int failedHandshakes;
+    private final int trustChecks;
+    private final int failedTrustChecks;
+
+    WarmUpReport(final Duration duration, final int handshakes, final int failedHandshakes, final int trustChecks,
+                 final int failedTrustChecks) {
+        this.duration = duration;
+        this.handshakes = handshakes;
+        this.failedHandshakes = failedHandshakes;
+        this.trustChecks = trustChecks;
+        this.failedTrustChecks = failedTrustChecks;
+    }
+
+    /**
+     * Returns how long the warm-up took, from the generated material being ready to the last trust check.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the number of loopback handshakes that completed.
+     */
+    public int getHandshakes() {
+        return handshakes;
+    }
+
+    /**
+     * Returns the number of loopback handshakes that failed, e.g. because the enabled cipher suites do not
+     * support the generated EC certificates.
+     */
+    public int getFailedHandshakes() {
+        return failedHandshakes;
+    }
+
+    /**
+     * Returns the number of trust checks run directly against the composite trust manager that completed.
+     */
+    public int getTrustChecks() {
+        return trustChecks;
+    }
+
+    /**
+     * Returns the number of trust checks the trust manager strategy failed, e.g. because strict pinning rejected the
+     * unpinned generated chain.
+     */
+    public int getFailedTrustChecks() {
+        return failedTrustChecks;
+    }
+
+    @Override
+    public String toString() {
+        return "[durationMillis=" + duration.toMillis() + ", handshakes=" + handshakes + ", failedHandshakes="
+               + failedHandshakes + ", trustChecks=" + trustChecks + ", failedTrustChecks=" + failedTrustChecks + "]";
+    }
+}
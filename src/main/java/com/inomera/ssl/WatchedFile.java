@@ -0,0 +1,89 @@
+package com.inomera.ssl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Change detection for a file polled by a background thread.
+ * <p>
+ * Modification time and size are checked first; the content is only hashed when one of them changed, so a
+ * file that is touched or rewritten with identical content is not reported as changed. A change only becomes the
+ * reference state once {@link #commit()} is called after the file was loaded, so a file that could not be loaded,
+ * e.g. because it was polled while still being written, is reported again by the next poll.
+ */
+final class WatchedFile {
+
+    private final Path path;
+    private long lastModified;
+    private long size;
+    private byte[] digest;
+    private long pendingLastModified;
+    private long pendingSize;
+    private byte[] pendingDigest;
+
+    WatchedFile(final Path path) {
+        this.path = path;
+        try {
+            hasChanged();
+            commit();
+        } catch (IOException e) {
+            // reported by the next poll
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns whether the content of the file differs from the content last {@linkplain #commit() committed}.
+     */
+    boolean hasChanged() throws IOException {
+        pendingDigest = null;
+        final long currentLastModified = Files.getLastModifiedTime(path).toMillis();
+        final long currentSize = Files.size(path);
+        if (currentLastModified == lastModified && currentSize == size) {
+            return false;
+        }
+        final byte[] currentDigest = digest(path);
+        if (Arrays.equals(currentDigest, digest)) {
+            // Touched or rewritten with identical content, nothing to load
+            lastModified = currentLastModified;
+            size = currentSize;
+            return false;
+        }
+        pendingLastModified = currentLastModified;
+        pendingSize = currentSize;
+        pendingDigest = currentDigest;
+        return true;
+    }
+
+    /**
+     * Makes the change reported by the last {@link #hasChanged()} the reference state, to be called once the
+     * changed file was loaded successfully.
+     */
+    void commit() {
+        if (pendingDigest != null) {
+            lastModified = pendingLastModified;
+            size = pendingSize;
+            digest = pendingDigest;
+            pendingDigest = null;
+        }
+    }
+
+    private static byte[] digest(final Path path) throws IOException {
+        final MessageDigest digest = Fingerprints.sha256();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
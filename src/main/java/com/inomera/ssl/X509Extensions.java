@@ -0,0 +1,74 @@
+package com.inomera.ssl;
+
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Minimal DER decoding of the X.509 extensions used for routing and caching decisions.
+ */
+final class X509Extensions {
+
+    static final String SUBJECT_KEY_IDENTIFIER = "2.5.29.14";
+    static final String AUTHORITY_KEY_IDENTIFIER = "2.5.29.35";
+
+    private static final int OCTET_STRING = 0x04;
+    private static final int SEQUENCE = 0x30;
+    private static final int KEY_IDENTIFIER = 0x80;
+
+    private X509Extensions() {
+    }
+
+    /**
+     * Returns the subject key identifier of the certificate, or {@code null} if absent or malformed.
+     */
+    static byte[] subjectKeyIdentifier(final X509Certificate certificate) {
+        final byte[] value = unwrap(certificate.getExtensionValue(SUBJECT_KEY_IDENTIFIER));
+        return value == null ? null : contents(value, 0, OCTET_STRING);
+    }
+
+    /**
+     * Returns the key identifier of the authority key identifier extension, or {@code null} if absent or malformed.
+     */
+    static byte[] authorityKeyIdentifier(final X509Certificate certificate) {
+        final byte[] value = unwrap(certificate.getExtensionValue(AUTHORITY_KEY_IDENTIFIER));
+        if (value == null) {
+            return null;
+        }
+        final byte[] sequence = contents(value, 0, SEQUENCE);
+        return sequence == null || sequence.length == 0 ? null : contents(sequence, 0, KEY_IDENTIFIER);
+    }
+
+    /**
+     * {@link X509Certificate#getExtensionValue(String)} wraps the extension in an additional OCTET STRING.
+     */
+    private static byte[] unwrap(final byte[] extensionValue) {
+        return extensionValue == null ? null : contents(extensionValue, 0, OCTET_STRING);
+    }
+
+    /**
+     * Returns the contents of the TLV at {@code offset}, or {@code null} if the tag does not match
+     * or the encoding is truncated.
+     */
+    static byte[] contents(final byte[] der, final int offset, final int expectedTag) {
+        if (der.length < offset + 2 || (der[offset] & 0xFF) != expectedTag) {
+            return null;
+        }
+        int length = der[offset + 1] & 0xFF;
+        int start = offset + 2;
+        if (length > 0x7F) {
+            final int lengthBytes = length & 0x7F;
+            if (lengthBytes > 3 || der.length < start + lengthBytes) {
+                return null;
+            }
+            length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = (length << 8) | (der[start + i] & 0xFF);
+            }
+            start += lengthBytes;
+        }
+        if (der.length < start + length) {
+            return null;
+        }
+        return Arrays.copyOfRange(der, start, start + length);
+    }
+}
@@ -0,0 +1,77 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AcceptedIssuersTest {
+
+    private static CertificateGenerator.Issued first;
+    private static CertificateGenerator.Issued second;
+    private static CertificateGenerator.Issued third;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        first = CertificateGenerator.ca("Issuers First");
+        second = CertificateGenerator.ca("Issuers Second");
+        third = CertificateGenerator.ca("Issuers Third");
+    }
+
+    @Test
+    void deduplicatesIssuersSharedByDelegates() throws Exception {
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(null,
+            TrustManagers.of(first.certificate, second.certificate),
+            TrustManagers.of(second.certificate, third.certificate));
+
+        assertEquals(3, trustManager.getAcceptedIssuers().length);
+    }
+
+    @Test
+    void computesSnapshotOnceAndHandsOutCopies() throws Exception {
+        final CountingTrustManager delegate = new CountingTrustManager(TrustManagers.of(first.certificate));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(null, delegate);
+        final int requestsBefore = delegate.issuerRequests.get();
+
+        final X509Certificate[] issuers = trustManager.getAcceptedIssuers();
+        issuers[0] = null;
+        assertArrayEquals(new X509Certificate[]{first.certificate}, trustManager.getAcceptedIssuers());
+        assertEquals(requestsBefore + 1, delegate.issuerRequests.get());
+
+        trustManager.setTrustManagers(TrustManagers.of(second.certificate));
+        assertArrayEquals(new X509Certificate[]{second.certificate}, trustManager.getAcceptedIssuers());
+    }
+
+    @Test
+    void filtersAdvertisedIssuersWithoutAffectingValidation() throws Exception {
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            TrustManagers.of(first.certificate, second.certificate))
+            .setAcceptedIssuersFilter(issuer -> issuer.equals(second.certificate));
+
+        assertArrayEquals(new X509Certificate[]{second.certificate}, trustManager.getAcceptedIssuers());
+        final X509Certificate[] chain = CertificateGenerator.leaf("client", first).chain;
+        assertDoesNotThrow(() -> trustManager.checkClientTrusted(chain, "EC"));
+    }
+
+    @Test
+    void capsAdvertisedIssuersKeepingFirstDelegates() throws Exception {
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            TrustManagers.of(first.certificate), TrustManagers.of(second.certificate),
+            TrustManagers.of(third.certificate))
+            .setMaxAcceptedIssuers(2);
+
+        assertArrayEquals(new X509Certificate[]{first.certificate, second.certificate},
+            trustManager.getAcceptedIssuers());
+        final X509Certificate[] chain = CertificateGenerator.leaf("client", third).chain;
+        assertDoesNotThrow(() -> trustManager.checkClientTrusted(chain, "EC"));
+
+        trustManager.setMaxAcceptedIssuers(0);
+        assertEquals(0, trustManager.getAcceptedIssuers().length);
+        assertThrows(IllegalArgumentException.class, () -> trustManager.setMaxAcceptedIssuers(-1));
+    }
+}
@@ -0,0 +1,129 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLoadingTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static CertificateGenerator.Issued first;
+    private static CertificateGenerator.Issued second;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        first = CertificateGenerator.ca("Async First");
+        second = CertificateGenerator.ca("Async Second");
+    }
+
+    @Test
+    void keepsDeclarationOrderWhateverOrderLoadsComplete() throws Exception {
+        final Path firstStore = store("first.p12", CertificateGenerator.trustStore(first.certificate));
+        final Path secondStore = store("second.p12", CertificateGenerator.trustStore(second.certificate));
+        final Path keyStore = store("key.p12", CertificateGenerator.keyStore(PASSWORD,
+            CertificateGenerator.leaf("localhost", first, "localhost")));
+        final List<Runnable> loads = new ArrayList<Runnable>();
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .setLoadExecutor(loads::add)
+            .loadTrustMaterialAsync(firstStore.toFile(), PASSWORD)
+            .loadTrustMaterialAsync(secondStore.toFile(), PASSWORD)
+            .loadKeyMaterialAsync(keyStore.toFile(), PASSWORD, PASSWORD);
+        final CompletableFuture<MultiTrustSSLContextBuilder> loaded = builder.whenLoaded();
+
+        assertEquals(3, loads.size());
+        assertFalse(loaded.isDone());
+        Collections.reverse(loads);
+        loads.forEach(Runnable::run);
+
+        assertSame(builder, loaded.join());
+        assertEquals(List.of(firstStore.toFile(), secondStore.toFile()),
+            builder.getTrustMaterial().stream().map(material -> material.file).collect(Collectors.toList()));
+        assertEquals(1, builder.getKeyMaterial().size());
+        assertNotNull(builder.build());
+    }
+
+    @Test
+    void reportsFirstLoadFailure() throws Exception {
+        final Path store = store("first.p12", CertificateGenerator.trustStore(first.certificate));
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .setLoadExecutor(Runnable::run)
+            .loadTrustMaterialAsync(store.toFile(), PASSWORD)
+            .loadTrustMaterialAsync(dir.resolve("missing.p12").toFile(), PASSWORD);
+
+        final CompletionException failure = assertThrows(CompletionException.class, () -> builder.whenLoaded().join());
+        assertInstanceOf(FileNotFoundException.class, failure.getCause());
+        final KeyManagementException buildFailure = assertThrows(KeyManagementException.class, builder::build);
+        assertInstanceOf(FileNotFoundException.class, buildFailure.getCause());
+    }
+
+    @Test
+    void reportsRejectedLoads() throws Exception {
+        final Path store = store("first.p12", CertificateGenerator.trustStore(first.certificate));
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .setLoadExecutor(task -> {
+                throw new RejectedExecutionException("Shut down");
+            })
+            .loadTrustMaterialAsync(store.toFile(), PASSWORD);
+
+        final KeyManagementException failure = assertThrows(KeyManagementException.class, builder::build);
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+    }
+
+    @Test
+    void loadsOnDefaultExecutor() throws Exception {
+        final Path store = store("first.p12", CertificateGenerator.trustStore(first.certificate));
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterialAsync(store.toFile(), PASSWORD)
+            .loadTrustMaterialAsync(store.toUri().toURL(), PASSWORD);
+
+        assertTrue(builder.whenLoaded().join().getTrustMaterial().stream()
+            .allMatch(material -> material.trustManagers.length == 1));
+    }
+
+    @Test
+    void loadsAgainAfterBuildReleasedDefaultExecutor() throws Exception {
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterialAsync(store("first.p12", CertificateGenerator.trustStore(first.certificate)).toFile(),
+                PASSWORD);
+        builder.build();
+
+        builder.loadTrustMaterialAsync(store("second.p12", CertificateGenerator.trustStore(second.certificate))
+            .toFile(), PASSWORD);
+        builder.build();
+        assertEquals(2, builder.getTrustMaterial().size());
+    }
+
+    private Path store(final String name, final KeyStore keyStore) throws Exception {
+        final Path file = dir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            keyStore.store(out, PASSWORD);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,226 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTrustManagerStrategyTest {
+
+    private static X509Certificate[] chain;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        chain = CertificateGenerator.leaf("rejected.example", CertificateGenerator.ca("Async Strategy CA")).chain;
+    }
+
+    @Test
+    void deliversFailuresOfEveryProducerInOrder() throws Exception {
+        final List<TrustFailureEvent> delivered = new CopyOnWriteArrayList<TrustFailureEvent>();
+        final AtomicBoolean onHandshakeThread = new AtomicBoolean();
+        final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(failures -> {
+            onHandshakeThread.compareAndSet(false, Thread.currentThread().getName().startsWith("producer"));
+            delivered.addAll(failures);
+        }, 1 << 14, AsyncTrustManagerStrategy.OverflowPolicy.DROP);
+        final int producers = 4;
+        final int failuresPerProducer = 1000;
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final String authType = "producer-" + p;
+            final Thread thread = new Thread(() -> {
+                for (int i = 1; i <= failuresPerProducer; i++) {
+                    strategy.onServerTrustFailure(chain, authType, i);
+                }
+            }, authType);
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        strategy.close();
+
+        assertEquals(producers * failuresPerProducer, delivered.size());
+        assertEquals(producers * failuresPerProducer, strategy.getDeliveredCount());
+        assertEquals(0, strategy.getDroppedCount());
+        assertFalse(onHandshakeThread.get());
+        for (int p = 0; p < producers; p++) {
+            final String authType = "producer-" + p;
+            int previous = 0;
+            for (final TrustFailureEvent event : delivered) {
+                if (event.getAuthType().equals(authType)) {
+                    assertEquals(previous + 1, event.getRejectCount());
+                    previous = event.getRejectCount();
+                }
+            }
+            assertEquals(failuresPerProducer, previous);
+        }
+        assertFalse(delivered.get(0).isClient());
+        assertEquals(chain[0], delivered.get(0).getChain()[0]);
+    }
+
+    @Test
+    void dropsFailuresWhileBufferIsFull() throws Exception {
+        final BlockingBatchStrategy batches = new BlockingBatchStrategy();
+        final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(batches, 2,
+            AsyncTrustManagerStrategy.OverflowPolicy.DROP);
+        strategy.onClientTrustFailure(chain, "EC");
+        assertTrue(batches.entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            strategy.onClientTrustFailure(chain, "EC");
+        }
+        assertEquals(2, strategy.getDroppedCount());
+        batches.release.countDown();
+        strategy.close();
+        assertEquals(3, strategy.getDeliveredCount());
+        assertEquals(3, batches.failures.size());
+
+        strategy.onClientTrustFailure(chain, "EC");
+        assertEquals(3, strategy.getDroppedCount());
+    }
+
+    @Test
+    void deliversOverflowOnCallingThread() throws Exception {
+        final BlockingBatchStrategy batches = new BlockingBatchStrategy();
+        final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(batches, 2,
+            AsyncTrustManagerStrategy.OverflowPolicy.CALLER_RUNS);
+        strategy.onServerTrustFailure(chain, "ECDHE_ECDSA");
+        assertTrue(batches.entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            strategy.onServerTrustFailure(chain, "ECDHE_ECDSA");
+        }
+        assertEquals(List.of(Thread.currentThread().getName()), batches.callerThreads);
+        batches.release.countDown();
+        strategy.close();
+        assertEquals(4, strategy.getDeliveredCount());
+        assertEquals(0, strategy.getDroppedCount());
+    }
+
+    @Test
+    void decidesOnHandshakeThreadAndKeepsDeliveringAfterSinkFailure() throws Exception {
+        final List<TrustFailureEvent> delivered = new CopyOnWriteArrayList<TrustFailureEvent>();
+        final RejectingStrategy decision = new RejectingStrategy();
+        final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(failures -> {
+            if (delivered.isEmpty() && failures.get(0).isClient()) {
+                delivered.add(failures.get(0));
+                throw new IllegalStateException("Audit sink down");
+            }
+            delivered.addAll(failures);
+        }, 16, AsyncTrustManagerStrategy.OverflowPolicy.DROP, decision);
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy,
+            TrustManagers.rejectingAll());
+
+        assertThrows(IllegalStateException.class, () -> trustManager.checkClientTrusted(chain, "EC"));
+        Thread.sleep(200);
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(chain, "ECDHE_ECDSA"));
+        strategy.close();
+
+        assertEquals(2, decision.rejections.get());
+        assertEquals(2, delivered.size());
+        assertEquals(1, strategy.getDeliveredCount());
+    }
+
+    @Test
+    void keepsEveryFailureOfSingleFailureBuffer() throws Exception {
+        final BlockingBatchStrategy batches = new BlockingBatchStrategy();
+        final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(batches, 1,
+            AsyncTrustManagerStrategy.OverflowPolicy.DROP);
+        strategy.onServerTrustFailure(chain, "ECDHE_ECDSA", 1);
+        assertTrue(batches.entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 2; i <= 4; i++) {
+            strategy.onServerTrustFailure(chain, "ECDHE_ECDSA", i);
+        }
+        batches.release.countDown();
+        strategy.close();
+        assertEquals(List.of(1, 2, 3), batches.failures.stream().map(TrustFailureEvent::getRejectCount)
+            .collect(Collectors.toList()));
+        assertEquals(1, strategy.getDroppedCount());
+    }
+
+    @Test
+    void accountsForFailuresPublishedWhileClosing() throws Exception {
+        final int producers = 4;
+        final int failuresPerProducer = 20_000;
+        for (int round = 0; round < 5; round++) {
+            final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(failures -> {
+            }, 64, AsyncTrustManagerStrategy.OverflowPolicy.DROP);
+            final CountDownLatch started = new CountDownLatch(producers);
+            final List<Thread> threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                final Thread thread = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < failuresPerProducer; i++) {
+                        strategy.onClientTrustFailure(chain, "EC");
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            started.await();
+            strategy.close();
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(producers * failuresPerProducer, strategy.getDeliveredCount() + strategy.getDroppedCount());
+        }
+    }
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        final AsyncTrustManagerStrategy strategy = new AsyncTrustManagerStrategy(failures -> {
+        }, 3, AsyncTrustManagerStrategy.OverflowPolicy.DROP);
+        strategy.close();
+        assertEquals(4, strategy.getCapacity());
+        final AsyncTrustManagerStrategy single = new AsyncTrustManagerStrategy(failures -> {
+        }, 1, AsyncTrustManagerStrategy.OverflowPolicy.DROP);
+        single.close();
+        assertEquals(2, single.getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new AsyncTrustManagerStrategy(failures -> {
+        }, 0, AsyncTrustManagerStrategy.OverflowPolicy.DROP));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncTrustManagerStrategy(null, 1,
+            AsyncTrustManagerStrategy.OverflowPolicy.DROP));
+    }
+
+    /**
+     * Holds the dispatcher in its first batch until released; later batches and caller-run batches pass.
+     */
+    private static final class BlockingBatchStrategy implements BatchTrustManagerStrategy {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<TrustFailureEvent> failures = new CopyOnWriteArrayList<TrustFailureEvent>();
+        final List<String> callerThreads = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void onTrustFailures(final List<TrustFailureEvent> batch) {
+            failures.addAll(batch);
+            final String thread = Thread.currentThread().getName();
+            if (!thread.startsWith("ssl-forge-trust-events")) {
+                callerThreads.add(thread);
+                return;
+            }
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.X509KeyManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The benchmarks and tests run on generated material only; it has to pass the JDK's own PKIX checks.
+ */
+class CertificateGeneratorTest {
+
+    @Test
+    void generatesChainsTheJdkValidates() throws Exception {
+        final CertificateGenerator.Issued root = CertificateGenerator.ca("Generator Root");
+        final CertificateGenerator.Issued intermediate = CertificateGenerator.intermediate("Generator Intermediate",
+            root);
+        final CertificateGenerator.Issued leaf = CertificateGenerator.leaf("localhost", intermediate, "localhost");
+        final X509TrustManager trustManager = TrustManagers.of(root.certificate);
+
+        assertEquals(3, leaf.chain.length);
+        assertEquals(root.certificate, leaf.chain[2]);
+        final X509Certificate[] sent = {leaf.certificate, intermediate.certificate};
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(sent, "ECDHE_ECDSA"));
+        assertDoesNotThrow(() -> trustManager.checkClientTrusted(sent, "EC"));
+        assertEquals(List.of(List.of(2, "localhost")), List.copyOf(leaf.certificate.getSubjectAlternativeNames()));
+        assertEquals(-1, leaf.certificate.getBasicConstraints());
+        assertTrue(intermediate.certificate.getBasicConstraints() >= 0);
+    }
+
+    @Test
+    void generatesChainsOfUntrustedAuthorities() throws Exception {
+        final X509TrustManager trustManager = TrustManagers.of(CertificateGenerator.ca("Generator Root").certificate);
+        final X509Certificate[] chain = CertificateGenerator.leaf("localhost",
+            CertificateGenerator.ca("Generator Other")).chain;
+
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(chain, "ECDHE_ECDSA"));
+    }
+
+    @Test
+    void generatesKeyStoresUsableByKeyManagers() throws Exception {
+        final CertificateGenerator.Issued root = CertificateGenerator.ca("Generator Root");
+        final CertificateGenerator.Issued first = CertificateGenerator.leaf("first.example", root, "first.example");
+        final CertificateGenerator.Issued second = CertificateGenerator.leaf("second.example", root, "second.example");
+        final char[] password = "secret".toCharArray();
+        final KeyStore keyStore = CertificateGenerator.keyStore(password, first, second);
+        final KeyManagerFactory factory = KeyManagerFactory.getInstance("PKIX");
+        factory.init(keyStore, password);
+        final X509KeyManager keyManager = (X509KeyManager) factory.getKeyManagers()[0];
+
+        assertEquals(List.of("key-0", "key-1"), Collections.list(keyStore.aliases()).stream().sorted().toList());
+        final String[] aliases = keyManager.getServerAliases("EC", null);
+        assertEquals(2, aliases.length);
+        final X509Certificate[] chain = keyManager.getCertificateChain(
+            Arrays.stream(aliases).filter(alias -> alias.contains("key-1")).findFirst().orElseThrow());
+        assertArrayEquals(second.chain, chain);
+    }
+}
@@ -0,0 +1,38 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the chains a delegate trust manager is asked to validate and the requests for its accepted issuers.
+ */
+final class CountingTrustManager implements X509TrustManager {
+
+    final AtomicInteger checks = new AtomicInteger();
+    final AtomicInteger issuerRequests = new AtomicInteger();
+    private final X509TrustManager trustManager;
+
+    CountingTrustManager(final X509TrustManager trustManager) {
+        this.trustManager = trustManager;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        checks.incrementAndGet();
+        trustManager.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        checks.incrementAndGet();
+        trustManager.checkServerTrusted(chain, authType);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        issuerRequests.incrementAndGet();
+        return trustManager.getAcceptedIssuers();
+    }
+}
@@ -0,0 +1,113 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.cert.CRLException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrlRevocationIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void looksUpRevokedSerialsPerIssuer() throws GeneralSecurityException, IOException {
+        final CertificateGenerator.Issued ca = CertificateGenerator.ca("CRL CA");
+        final CertificateGenerator.Issued otherCa = CertificateGenerator.ca("CRL Other CA");
+        final CertificateGenerator.Issued revoked = CertificateGenerator.leaf("revoked.example", ca);
+        final CertificateGenerator.Issued valid = CertificateGenerator.leaf("valid.example", ca);
+        final CertificateGenerator.Issued foreign = CertificateGenerator.leaf("foreign.example", otherCa);
+        // Same low 64 bits as the valid certificate, confirmed against the full serial
+        final BigInteger sameLowBits = valid.certificate.getSerialNumber().add(BigInteger.ONE.shiftLeft(64));
+        final CrlRevocationIndex index = CrlRevocationIndex.of(write(dir.resolve("ca.crl"),
+            CertificateGenerator.crl(ca, revoked.certificate.getSerialNumber(), sameLowBits,
+                foreign.certificate.getSerialNumber()), 1));
+
+        assertTrue(index.isRevoked(revoked.certificate));
+        assertFalse(index.isRevoked(valid.certificate));
+        assertFalse(index.isRevoked(foreign.certificate));
+        assertTrue(index.isRevoked(revoked.chain));
+        assertFalse(index.isRevoked(valid.chain));
+        assertFalse(index.isRevoked((X509Certificate[]) null));
+    }
+
+    @Test
+    void loadsSeveralPemEncodedCrlsFromOneFile() throws GeneralSecurityException, IOException {
+        final CertificateGenerator.Issued root = CertificateGenerator.ca("CRL Root");
+        final CertificateGenerator.Issued intermediate = CertificateGenerator.intermediate("CRL Intermediate", root);
+        final CertificateGenerator.Issued leaf = CertificateGenerator.leaf("leaf.example", intermediate);
+        final String pem = pem(CertificateGenerator.crl(intermediate))
+                           + pem(CertificateGenerator.crl(root, intermediate.certificate.getSerialNumber()));
+        final CrlRevocationIndex index = CrlRevocationIndex.of(write(dir.resolve("bundle.pem"),
+            pem.getBytes(StandardCharsets.US_ASCII), 1));
+
+        assertFalse(index.isRevoked(leaf.certificate));
+        assertTrue(index.isRevoked(intermediate.certificate));
+        assertTrue(index.isRevoked(leaf.chain));
+    }
+
+    @Test
+    void compositeRejectsRevokedChainsAfterCachedVerdicts() throws GeneralSecurityException, IOException {
+        final CertificateGenerator.Issued ca = CertificateGenerator.ca("CRL CA");
+        final CertificateGenerator.Issued leaf = CertificateGenerator.leaf("revoked.example", ca);
+        final Path crlFile = write(dir.resolve("ca.crl"), CertificateGenerator.crl(ca), 1);
+        final CrlRevocationIndex index = CrlRevocationIndex.of(crlFile);
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy,
+            TrustManagers.of(ca.certificate))
+            .setVerdictCache(new TrustVerdictCache(16, Duration.ofMinutes(5)))
+            .setRevocationIndex(index);
+        assertDoesNotThrow(() -> trustManager.checkClientTrusted(leaf.chain, "EC"));
+
+        write(crlFile, CertificateGenerator.crl(ca, leaf.certificate.getSerialNumber()), 2);
+        assertTrue(index.reload());
+        assertThrows(IllegalStateException.class, () -> trustManager.checkClientTrusted(leaf.chain, "EC"));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    @Test
+    void retriesCrlFileThatCouldNotBeLoaded() throws GeneralSecurityException, IOException {
+        final CertificateGenerator.Issued ca = CertificateGenerator.ca("CRL CA");
+        final CertificateGenerator.Issued leaf = CertificateGenerator.leaf("revoked.example", ca);
+        final Path crlFile = write(dir.resolve("ca.crl"), CertificateGenerator.crl(ca), 1);
+        final CrlRevocationIndex index = CrlRevocationIndex.of(crlFile);
+        assertFalse(index.isRevoked(leaf.certificate));
+
+        write(crlFile, new byte[]{0x30, 0x03, 0x02}, 2);
+        assertThrows(CRLException.class, index::reload);
+        // Still reported as changed, not silently skipped by the next poll
+        assertThrows(CRLException.class, index::reload);
+
+        write(crlFile, CertificateGenerator.crl(ca, leaf.certificate.getSerialNumber()), 3);
+        assertTrue(index.reload());
+        assertTrue(index.isRevoked(leaf.certificate));
+        assertFalse(index.reload());
+    }
+
+    private static String pem(final byte[] crl) {
+        return "-----BEGIN X509 CRL-----\n" + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(crl)
+               + "\n-----END X509 CRL-----\n";
+    }
+
+    private static Path write(final Path file, final byte[] content, final long second) throws IOException {
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_600_000_000_000L + second * 1000));
+        return file;
+    }
+}
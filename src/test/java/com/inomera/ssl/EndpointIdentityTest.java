@@ -0,0 +1,87 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EndpointIdentityTest {
+
+    private static CertificateGenerator.Issued ca;
+
+    @BeforeAll
+    static void generateCa() throws GeneralSecurityException {
+        ca = CertificateGenerator.ca("Identity CA");
+    }
+
+    @Test
+    void matchesDnsAlternativeNames() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("ignored.example", ca, "api.example.com").certificate;
+        assertDoesNotThrow(() -> EndpointIdentity.match("api.example.com", leaf));
+        assertDoesNotThrow(() -> EndpointIdentity.match("API.Example.COM.", leaf));
+        // The common name is ignored once DNS alternative names are present
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("ignored.example", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("www.example.com", leaf));
+    }
+
+    @Test
+    void fallsBackToCommonNameWithoutDnsAlternativeNames() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("legacy.example.com", ca).certificate;
+        assertDoesNotThrow(() -> EndpointIdentity.match("legacy.example.com", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("other.example.com", leaf));
+    }
+
+    @Test
+    void matchesWildcardOnlyWithinLeftmostLabel() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("wildcard", ca, "*.example.com", "*.com").certificate;
+        assertDoesNotThrow(() -> EndpointIdentity.match("www.example.com", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("example.com", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("a.b.example.com", leaf));
+        // A wildcard directly above a top-level domain is never honoured
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("example.org.com", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("x.com", leaf));
+    }
+
+    @Test
+    void doesNotMatchWildcardAbovePublicSuffix() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("wildcard", ca, "*.co.uk", "*.com.au",
+            "*.example.co.uk").certificate;
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("example.co.uk", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("example.com.au", leaf));
+        assertDoesNotThrow(() -> EndpointIdentity.match("www.example.co.uk", leaf));
+        // Internationalized public suffixes are looked up by their A-labels
+        final X509Certificate idnLeaf = CertificateGenerator.leaf("idn", ca, "*.xn--55qx5d.cn").certificate;
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("example.xn--55qx5d.cn", idnLeaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("example.\u516c\u53f8.cn", idnLeaf));
+    }
+
+    @Test
+    void matchesWildcardAgainstInternationalizedLabelOnlyAsWhole() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("wildcard", ca, "*.example.com", "x*.example.org",
+            "xn--*.example.net").certificate;
+        assertDoesNotThrow(() -> EndpointIdentity.match("xn--bcher-kva.example.com", leaf));
+        assertDoesNotThrow(() -> EndpointIdentity.match("b\u00fccher.example.com", leaf));
+        assertDoesNotThrow(() -> EndpointIdentity.match("xbox.example.org", leaf));
+        // Neither a partial wildcard against an A-label nor a wildcard within one
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("b\u00fccher.example.org", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("xn--bcher-kva.example.net", leaf));
+    }
+
+    @Test
+    void doesNotMatchIpAddressAgainstDnsNames() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("127.0.0.1", ca, "127.0.0.1").certificate;
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("127.0.0.1", leaf));
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match("[::1]", leaf));
+    }
+
+    @Test
+    void rejectsUndefinedHost() throws GeneralSecurityException {
+        final X509Certificate leaf = CertificateGenerator.leaf("host", ca, "host").certificate;
+        assertThrows(CertificateException.class, () -> EndpointIdentity.match(null, leaf));
+    }
+}
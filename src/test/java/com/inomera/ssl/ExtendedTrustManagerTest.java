@@ -0,0 +1,89 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExtendedTrustManagerTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static CertificateGenerator.Issued ca;
+    private static SSLContext server;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        ca = CertificateGenerator.ca("Extended CA");
+        server = MultiTrustSSLContextBuilder.create()
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD,
+                CertificateGenerator.leaf("good.example", ca, "good.example")), PASSWORD)
+            .build();
+    }
+
+    @Test
+    void identifiesServerAcceptedByTrustStrategy() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final SSLContext client = MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(strategy)
+            .loadTrustMaterial((chain, authType) -> true)
+            .build();
+
+        assertDoesNotThrow(() -> Handshakes.run(Handshakes.client(client, "good.example", true),
+            Handshakes.server(server)));
+        assertThrows(IllegalStateException.class, () -> Handshakes.run(Handshakes.client(client, "evil.example", true),
+            Handshakes.server(server)));
+        assertEquals(1, strategy.rejections.get());
+        // Without endpoint identification the strategy still accepts any host
+        assertDoesNotThrow(() -> Handshakes.run(Handshakes.client(client, "evil.example", false),
+            Handshakes.server(server)));
+    }
+
+    @Test
+    void identifiesServerAcceptedByPlainDelegate() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final SSLContext client = SSLContext.getInstance("TLS");
+        client.init(null, new TrustManager[]{new CompositeX509TrustManager(strategy, plain(ca))}, null);
+
+        assertDoesNotThrow(() -> Handshakes.run(Handshakes.client(client, "good.example", true),
+            Handshakes.server(server)));
+        assertThrows(IllegalStateException.class, () -> Handshakes.run(Handshakes.client(client, "evil.example", true),
+            Handshakes.server(server)));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    /**
+     * Hides the connection-aware methods of the JDK trust manager, like trust managers written against
+     * {@link X509TrustManager} only.
+     */
+    private static X509TrustManager plain(final CertificateGenerator.Issued anchor) throws GeneralSecurityException {
+        final X509TrustManager trustManager = TrustManagers.of(anchor.certificate);
+        return new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+                throws CertificateException {
+                trustManager.checkClientTrusted(chain, authType);
+            }
+
+            @Override
+            public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+                throws CertificateException {
+                trustManager.checkServerTrusted(chain, authType);
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return trustManager.getAcceptedIssuers();
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * In-memory handshakes between a client and a server engine, driven by {@link WarmUp#handshake(SSLEngine, SSLEngine)}.
+ */
+final class Handshakes {
+
+    private Handshakes() {
+    }
+
+    /**
+     * Creates a client engine for the peer host, identifying the server by HTTPS rules when
+     * {@code endpointIdentification} is set.
+     */
+    static SSLEngine client(final SSLContext context, final String peerHost, final boolean endpointIdentification) {
+        final SSLEngine engine = context.createSSLEngine(peerHost, 443);
+        engine.setUseClientMode(true);
+        if (endpointIdentification) {
+            final SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+        }
+        return engine;
+    }
+
+    static SSLEngine server(final SSLContext context) {
+        final SSLEngine engine = context.createSSLEngine();
+        engine.setUseClientMode(false);
+        return engine;
+    }
+
+    /**
+     * Runs a full handshake, failing with the exception raised by either side.
+     */
+    static void run(final SSLEngine client, final SSLEngine server) throws SSLException {
+        WarmUp.handshake(client, server);
+    }
+}
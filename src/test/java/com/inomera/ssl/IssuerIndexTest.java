@@ -0,0 +1,86 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.X509Certificate;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IssuerIndexTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued first;
+    private static CertificateGenerator.Issued second;
+    private static CertificateGenerator.Issued intermediate;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        first = CertificateGenerator.ca("Routing First");
+        second = CertificateGenerator.ca("Routing Second");
+        intermediate = CertificateGenerator.intermediate("Routing Intermediate", second);
+    }
+
+    @Test
+    void routesChainToDelegatesKnowingItsIssuers() throws Exception {
+        final IssuerIndex index = new IssuerIndex(new X509TrustManager[]{
+            TrustManagers.of(first.certificate), TrustManagers.of(second.certificate)});
+
+        assertEquals(bits(0), index.route(CertificateGenerator.leaf("a.example", first).chain));
+        // Leaf and intermediate only: the anchor is reached through the intermediate's issuer
+        final X509Certificate[] chain = CertificateGenerator.leaf("b.example", intermediate).chain;
+        assertEquals(bits(1), index.route(new X509Certificate[]{chain[0], chain[1]}));
+        assertEquals(bits(), index.route(CertificateGenerator.leaf("c.example",
+            CertificateGenerator.ca("Routing Unknown")).chain));
+    }
+
+    @Test
+    void alwaysRoutesToDelegatesWithoutAcceptedIssuers() throws Exception {
+        final IssuerIndex index = new IssuerIndex(new X509TrustManager[]{
+            TrustManagers.of(first.certificate), TrustManagers.of()});
+
+        assertEquals(bits(1), index.route(CertificateGenerator.leaf("a.example", second).chain));
+        assertEquals(bits(0, 1), index.route(CertificateGenerator.leaf("b.example", first).chain));
+    }
+
+    @Test
+    void routesMalformedChainToEveryDelegate() throws Exception {
+        final IssuerIndex index = new IssuerIndex(new X509TrustManager[]{
+            TrustManagers.of(first.certificate), TrustManagers.of(second.certificate)});
+
+        assertEquals(bits(0, 1), index.route(new X509Certificate[0]));
+        assertEquals(bits(0, 1), index.route(null));
+    }
+
+    @Test
+    void compositeOnlyAsksRoutedDelegates() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final CountingTrustManager firstDelegate = new CountingTrustManager(TrustManagers.of(first.certificate));
+        final CountingTrustManager secondDelegate = new CountingTrustManager(TrustManagers.of(second.certificate));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy, firstDelegate,
+            secondDelegate);
+
+        trustManager.checkServerTrusted(CertificateGenerator.leaf("a.example", second).chain, AUTH_TYPE);
+        assertEquals(0, firstDelegate.checks.get());
+        assertEquals(1, secondDelegate.checks.get());
+
+        final X509Certificate[] unknown = CertificateGenerator.leaf("b.example",
+            CertificateGenerator.ca("Routing Unknown")).chain;
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(unknown, AUTH_TYPE));
+        assertEquals(0, firstDelegate.checks.get());
+        assertEquals(1, secondDelegate.checks.get());
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    private static BitSet bits(final int... positions) {
+        final BitSet bits = new BitSet();
+        for (final int position : positions) {
+            bits.set(position);
+        }
+        return bits;
+    }
+}
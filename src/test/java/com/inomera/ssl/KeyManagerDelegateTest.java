@@ -0,0 +1,70 @@
+package com.inomera.ssl;
+
+import org.apache.http.ssl.PrivateKeyDetails;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.security.auth.x500.X500Principal;
+import java.security.Principal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class KeyManagerDelegateTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static CertificateGenerator.Issued ca;
+    private static MultiTrustSSLContextBuilder.KeyManagerDelegate keyManager;
+
+    @BeforeAll
+    static void createKeyManager() throws Exception {
+        ca = CertificateGenerator.ca("Alias CA");
+        final KeyManagerFactory factory = KeyManagerFactory.getInstance("PKIX");
+        factory.init(CertificateGenerator.keyStore(PASSWORD, CertificateGenerator.leaf("server.example", ca)), PASSWORD);
+        keyManager = new MultiTrustSSLContextBuilder.KeyManagerDelegate(
+            (X509ExtendedKeyManager) factory.getKeyManagers()[0],
+            (aliases, socket) -> aliases.keySet().iterator().next());
+    }
+
+    @Test
+    void reusesAliasMapWithoutIssuers() {
+        final Map<String, PrivateKeyDetails> aliases = keyManager.getServerAliasMap("EC", null);
+        assertEquals(1, aliases.size());
+        assertSame(aliases, keyManager.getServerAliasMap("EC", null));
+        assertEquals(aliases.keySet().iterator().next(), keyManager.chooseEngineServerAlias("EC", null, null));
+    }
+
+    @Test
+    void reusesAliasMapForSameIssuers() {
+        final Principal[] issuers = {ca.certificate.getSubjectX500Principal()};
+        final Map<String, PrivateKeyDetails> aliases = keyManager.getServerAliasMap("EC", issuers);
+        assertEquals(1, aliases.size());
+        assertSame(aliases, keyManager.getServerAliasMap("EC", issuers.clone()));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedIssuerLists() {
+        final Principal[] issuers = {ca.certificate.getSubjectX500Principal()};
+        final Map<String, PrivateKeyDetails> aliases = keyManager.getServerAliasMap("EC", issuers);
+        // Issuer lists are chosen by the peer, so a flood of distinct lists must not grow the cache
+        for (int i = 0; i < 1000; i++) {
+            final Map<String, PrivateKeyDetails> unknown = keyManager.getServerAliasMap("EC",
+                new Principal[]{new X500Principal("CN=Unknown " + i)});
+            assertEquals(0, unknown.size());
+        }
+        assertNotSame(aliases, keyManager.getServerAliasMap("EC", issuers));
+    }
+
+    @Test
+    void acceptsIssuerListsWithNullElements() {
+        final Principal[] issuers = {null, ca.certificate.getSubjectX500Principal()};
+        assertSame(keyManager.getServerAliasMap("EC", issuers), keyManager.getServerAliasMap("EC", issuers));
+        assertSame(keyManager.getClientAliasMap(new String[]{"EC"}, issuers),
+            keyManager.getClientAliasMap(new String[]{"EC"}, issuers));
+    }
+}
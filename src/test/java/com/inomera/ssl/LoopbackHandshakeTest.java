@@ -0,0 +1,125 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Socket handshakes over loopback between contexts of the builder, as driven by the handshake load test.
+ */
+class LoopbackHandshakeTest {
+
+    private static final char[] PASSWORD = "loopback".toCharArray();
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private static CertificateGenerator.Issued serverRoot;
+    private static CertificateGenerator.Issued clientRoot;
+    private static CertificateGenerator.Issued server;
+    private static CertificateGenerator.Issued client;
+    private static CertificateGenerator.Issued unknownClient;
+
+    private final ExecutorService acceptor = Executors.newSingleThreadExecutor();
+    private SSLServerSocket serverSocket;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        serverRoot = CertificateGenerator.ca("Loopback Server Root");
+        clientRoot = CertificateGenerator.ca("Loopback Client Root");
+        server = CertificateGenerator.leaf("localhost", serverRoot, "localhost");
+        client = CertificateGenerator.leaf("client", clientRoot);
+        unknownClient = CertificateGenerator.leaf("client", CertificateGenerator.ca("Loopback Unknown Root"));
+    }
+
+    @AfterEach
+    void closeServer() throws IOException {
+        acceptor.shutdownNow();
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    void authenticatesClientsAgainstLastDelegate() throws Exception {
+        final TrustMetricsRecorder serverMetrics = new TrustMetricsRecorder();
+        startServer(MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(new RejectingStrategy())
+            .setTrustMetrics(serverMetrics)
+            // Without a list of authorities, the unknown client presents its chain instead of an empty one
+            .setMaxAcceptedIssuers(0)
+            .loadTrustMaterial(CertificateGenerator.trustStore(CertificateGenerator.ca("Other").certificate), null)
+            .loadTrustMaterial(CertificateGenerator.trustStore(clientRoot.certificate), null)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, server), PASSWORD)
+            .build());
+
+        connect(clientContext(client));
+        assertThrows(IOException.class, () -> connect(clientContext(unknownClient)));
+        assertEquals(1, serverMetrics.getClientDecisions().getAccepted());
+        assertEquals(1, serverMetrics.getClientDecisions().getRejected());
+    }
+
+    @Test
+    void resumesSessionsWithoutValidatingChainsAgain() throws Exception {
+        final TrustMetricsRecorder serverMetrics = new TrustMetricsRecorder();
+        startServer(MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(new RejectingStrategy())
+            .setTrustMetrics(serverMetrics)
+            .loadTrustMaterial(CertificateGenerator.trustStore(clientRoot.certificate), null)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, server), PASSWORD)
+            .build());
+        final SSLContext clientContext = clientContext(client);
+
+        for (int i = 0; i < 3; i++) {
+            connect(clientContext);
+        }
+        assertEquals(1, serverMetrics.getClientDecisions().getAttempts());
+    }
+
+    private void startServer(final SSLContext context) throws IOException {
+        serverSocket = (SSLServerSocket) context.getServerSocketFactory()
+            .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setNeedClientAuth(true);
+        acceptor.execute(() -> {
+            while (!serverSocket.isClosed()) {
+                try (SSLSocket socket = (SSLSocket) serverSocket.accept()) {
+                    socket.setSoTimeout(TIMEOUT_MILLIS);
+                    socket.getOutputStream().write(socket.getInputStream().read());
+                    socket.getOutputStream().flush();
+                } catch (IOException | RuntimeException e) {
+                    // rejected client or closed server socket
+                }
+            }
+        });
+    }
+
+    private static SSLContext clientContext(final CertificateGenerator.Issued identity) throws Exception {
+        return MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(new RejectingStrategy())
+            .loadTrustMaterial(CertificateGenerator.trustStore(serverRoot.certificate), null)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, identity), PASSWORD)
+            .build();
+    }
+
+    private void connect(final SSLContext context) throws IOException {
+        try (Socket socket = context.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort())) {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            ((SSLSocket) socket).startHandshake();
+            socket.getOutputStream().write(42);
+            socket.getOutputStream().flush();
+            if (socket.getInputStream().read() != 42) {
+                throw new IOException("Connection closed by server");
+            }
+        }
+    }
+}
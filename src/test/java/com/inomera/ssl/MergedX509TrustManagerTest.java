@@ -0,0 +1,87 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MergedX509TrustManagerTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued first;
+    private static CertificateGenerator.Issued second;
+    private static CertificateGenerator.Issued shared;
+    private static CertificateGenerator.Issued strategyAnchor;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        first = CertificateGenerator.ca("Merged First");
+        second = CertificateGenerator.ca("Merged Second");
+        shared = CertificateGenerator.ca("Merged Shared");
+        strategyAnchor = CertificateGenerator.ca("Merged Strategy");
+    }
+
+    @Test
+    void mergesPlainStoresAtPositionOfFirstOne() throws Exception {
+        final List<MultiTrustSSLContextBuilder.TrustMaterial> material = MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterial(CertificateGenerator.trustStore(first.certificate, shared.certificate), null)
+            .loadTrustMaterial(CertificateGenerator.trustStore(strategyAnchor.certificate), (chain, authType) -> false)
+            .loadTrustMaterial(CertificateGenerator.trustStore(second.certificate, shared.certificate), null)
+            .getTrustMaterial();
+
+        final X509TrustManager[] trustManagers = MergedX509TrustManager.merge(material);
+        assertEquals(2, trustManagers.length);
+        assertInstanceOf(MergedX509TrustManager.class, trustManagers[0]);
+        assertInstanceOf(MultiTrustSSLContextBuilder.TrustManagerDelegate.class, trustManagers[1]);
+        assertEquals(3, trustManagers[0].getAcceptedIssuers().length);
+
+        final Map<X509Certificate, List<String>> sources = new CompositeX509TrustManager(null, trustManagers)
+            .getAnchorSources();
+        assertEquals(List.of("trust material #0"), sources.get(first.certificate));
+        assertEquals(List.of("trust material #2"), sources.get(second.certificate));
+        assertEquals(List.of("trust material #0", "trust material #2"), sources.get(shared.certificate));
+        assertFalse(sources.containsKey(strategyAnchor.certificate));
+    }
+
+    @Test
+    void validatesChainsOfEveryMergedStoreOnce() throws Exception {
+        final List<MultiTrustSSLContextBuilder.TrustMaterial> material = MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterial(CertificateGenerator.trustStore(first.certificate), null)
+            .loadTrustMaterial(CertificateGenerator.trustStore(second.certificate), null)
+            .getTrustMaterial();
+        final CountingTrustManager merged = new CountingTrustManager(MergedX509TrustManager.merge(material)[0]);
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(), merged);
+
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(CertificateGenerator.leaf("a", first).chain,
+            AUTH_TYPE));
+        assertDoesNotThrow(() -> trustManager.checkClientTrusted(CertificateGenerator.leaf("b", second).chain, "EC"));
+        assertEquals(2, merged.checks.get());
+        final X509Certificate[] untrusted = CertificateGenerator.leaf("c", strategyAnchor).chain;
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(untrusted, AUTH_TYPE));
+    }
+
+    @Test
+    void keepsSingleStoreAsIs() throws Exception {
+        final List<MultiTrustSSLContextBuilder.TrustMaterial> material = MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterial(CertificateGenerator.trustStore(first.certificate), null)
+            .loadTrustMaterial(CertificateGenerator.trustStore(strategyAnchor.certificate), (chain, authType) -> true)
+            .getTrustMaterial();
+
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(null,
+            MultiTrustSSLContextBuilder.toX509TrustManagers(material, true));
+        assertEquals(2, trustManager.getTrustManagers().length);
+        assertFalse(trustManager.getTrustManagers()[0] instanceof MergedX509TrustManager);
+        assertTrue(trustManager.getAnchorSources().isEmpty());
+    }
+}
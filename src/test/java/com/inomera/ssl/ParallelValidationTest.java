@@ -0,0 +1,93 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ParallelValidationTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static final Duration DEADLINE = Duration.ofSeconds(10);
+
+    private static ExecutorService executor;
+    private static CertificateGenerator.Issued ca;
+    private static CertificateGenerator.Issued other;
+    private static SSLContext server;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        ca = CertificateGenerator.ca("Parallel CA");
+        other = CertificateGenerator.ca("Other CA");
+        server = MultiTrustSSLContextBuilder.create()
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD,
+                CertificateGenerator.leaf("parallel.example", ca, "parallel.example")), PASSWORD)
+            .build();
+    }
+
+    @AfterAll
+    static void stopExecutor() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void validatesEngineHandshakeInParallel() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final SSLContext client = client(strategy);
+
+        // Delegates used to wait for the engine lock held by the delegated task, until the deadline
+        assertTimeoutPreemptively(DEADLINE.dividedBy(2), () -> Handshakes.run(
+            Handshakes.client(client, "parallel.example", true), Handshakes.server(server)));
+        assertEquals(0, strategy.rejections.get());
+    }
+
+    @Test
+    void identifiesEndpointOfEngineHandshakeValidatedInParallel() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final SSLContext client = client(strategy);
+
+        assertThrows(IllegalStateException.class, () -> Handshakes.run(
+            Handshakes.client(client, "evil.example", true), Handshakes.server(server)));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    @Test
+    void racesDelegatesWithoutConnection() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy,
+            TrustManagers.of(ca.certificate), TrustManagers.of(ca.certificate, other.certificate))
+            .setParallelValidation(executor, DEADLINE);
+        final X509Certificate[] trusted = CertificateGenerator.leaf("direct.example", ca).chain;
+        final X509Certificate[] untrusted = CertificateGenerator.leaf("direct.example",
+            CertificateGenerator.ca("Parallel CA")).chain;
+
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(trusted, "ECDHE_ECDSA"));
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(untrusted, "ECDHE_ECDSA"));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    /**
+     * Two trust stores holding the authority, so every chain is routed to both delegates.
+     */
+    private static SSLContext client(final TrustManagerStrategy strategy) throws Exception {
+        return MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(strategy)
+            .setParallelValidation(executor, DEADLINE)
+            .loadTrustMaterial(CertificateGenerator.trustStore(ca.certificate), null)
+            .loadTrustMaterial(CertificateGenerator.trustStore(ca.certificate, other.certificate), null)
+            .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.SSLContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PemTrustSourceTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static CertificateGenerator.Issued first;
+    private static CertificateGenerator.Issued second;
+    private static CertificateGenerator.Issued third;
+    private static SSLContext firstServer;
+    private static SSLContext secondServer;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startServers() throws Exception {
+        first = CertificateGenerator.ca("First PEM CA");
+        second = CertificateGenerator.ca("Second PEM CA");
+        third = CertificateGenerator.ca("Third PEM CA");
+        firstServer = server(first);
+        secondServer = server(second);
+    }
+
+    @Test
+    void deduplicatesAnchorsAcrossFilesAndDirectories() throws Exception {
+        final Path bundle = write(dir.resolve("bundle.pem"), CertificateGenerator.pem(first.certificate, second.certificate));
+        final Path certs = Files.createDirectory(dir.resolve("certs"));
+        write(certs.resolve("first.pem"), CertificateGenerator.pem(first.certificate));
+        write(certs.resolve("third.pem"), "Subject: third\n" + CertificateGenerator.pem(third.certificate));
+        write(certs.resolve("index.txt"), "first.pem\nthird.pem\n");
+
+        final PemTrustSource source = new PemTrustSource(null, null);
+        source.add(bundle);
+        source.add(certs);
+        assertEquals(3, source.size());
+        assertEquals(3, source.complete().join().keyStore.size());
+    }
+
+    @Test
+    void rejectsUnterminatedCertificate() throws Exception {
+        final String pem = CertificateGenerator.pem(first.certificate);
+        final Path file = write(dir.resolve("broken.pem"), pem.substring(0, pem.indexOf("-----END")));
+        assertThrows(CertificateException.class, () -> new PemTrustSource(null, null).add(file));
+    }
+
+    @Test
+    void completesWhenLoaded() throws Exception {
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .loadPemTrustMaterial(write(dir.resolve("first.pem"), CertificateGenerator.pem(first.certificate)));
+        // Used to wait for a material only created by build()
+        assertSame(builder, builder.whenLoaded().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void usesFilesLoadedAfterBuild() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(strategy)
+            .loadPemTrustMaterial(write(dir.resolve("first.pem"), CertificateGenerator.pem(first.certificate)));
+        final SSLContext before = builder.build();
+
+        builder.loadPemTrustMaterial(write(dir.resolve("second.pem"), CertificateGenerator.pem(second.certificate)));
+        final SSLContext after = builder.build();
+
+        assertDoesNotThrow(() -> handshake(after, firstServer));
+        assertDoesNotThrow(() -> handshake(after, secondServer));
+        assertDoesNotThrow(() -> handshake(before, firstServer));
+        assertThrows(IllegalStateException.class, () -> handshake(before, secondServer));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    private static SSLContext server(final CertificateGenerator.Issued ca) throws Exception {
+        return MultiTrustSSLContextBuilder.create()
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, CertificateGenerator.leaf("pem.example", ca)),
+                PASSWORD)
+            .build();
+    }
+
+    private static void handshake(final SSLContext client, final SSLContext server) throws Exception {
+        Handshakes.run(Handshakes.client(client, "pem.example", false), Handshakes.server(server));
+    }
+
+    private static Path write(final Path file, final String content) throws Exception {
+        return Files.writeString(file, content, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,25 @@
+package com.inomera.ssl;
+
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fails the handshake on every rejected chain, instead of the fail-open default of the composite trust manager,
+ * and counts the rejections.
+ */
+final class RejectingStrategy implements TrustManagerStrategy {
+
+    final AtomicInteger rejections = new AtomicInteger();
+
+    @Override
+    public void onClientTrustFailure(final X509Certificate[] chain, final String authType) {
+        rejections.incrementAndGet();
+        throw new IllegalStateException("Client certificate chain not trusted: " + chain[0].getSubjectX500Principal());
+    }
+
+    @Override
+    public void onServerTrustFailure(final X509Certificate[] chain, final String authType) {
+        rejections.incrementAndGet();
+        throw new IllegalStateException("Server certificate chain not trusted: " + chain[0].getSubjectX500Principal());
+    }
+}
@@ -0,0 +1,95 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReloadableSSLContextTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reloadsChangedTrustStore() throws Exception {
+        final CertificateGenerator.Issued first = CertificateGenerator.ca("First CA");
+        final CertificateGenerator.Issued second = CertificateGenerator.ca("Second CA");
+        final X509Certificate[] firstChain = CertificateGenerator.leaf("first.example", first).chain;
+        final X509Certificate[] secondChain = CertificateGenerator.leaf("second.example", second).chain;
+        final Path trustStore = store(dir.resolve("trust.p12"), CertificateGenerator.trustStore(first.certificate), 1);
+
+        try (ReloadableSSLContext context = MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(new RejectingStrategy())
+            .loadTrustMaterial(trustStore.toFile(), PASSWORD)
+            .buildReloadable(Duration.ofHours(1))) {
+            final CompositeX509TrustManager trustManager = context.getTrustManager();
+            assertDoesNotThrow(() -> trustManager.checkServerTrusted(firstChain, "ECDHE_ECDSA"));
+            assertFalse(context.reload());
+
+            store(trustStore, CertificateGenerator.trustStore(second.certificate), 2);
+            assertTrue(context.reload());
+            assertDoesNotThrow(() -> trustManager.checkServerTrusted(secondChain, "ECDHE_ECDSA"));
+            assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(firstChain, "ECDHE_ECDSA"));
+            assertFalse(context.reload());
+        }
+    }
+
+    @Test
+    void keepsPreviousTrustStoreUntilChangedFileLoads() throws Exception {
+        final CertificateGenerator.Issued first = CertificateGenerator.ca("First CA");
+        final CertificateGenerator.Issued second = CertificateGenerator.ca("Second CA");
+        final X509Certificate[] firstChain = CertificateGenerator.leaf("first.example", first).chain;
+        final X509Certificate[] secondChain = CertificateGenerator.leaf("second.example", second).chain;
+        final Path trustStore = store(dir.resolve("trust.p12"), CertificateGenerator.trustStore(first.certificate), 1);
+
+        try (ReloadableSSLContext context = MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(new RejectingStrategy())
+            .loadTrustMaterial(trustStore.toFile(), PASSWORD)
+            .buildReloadable(Duration.ofHours(1))) {
+            final CompositeX509TrustManager trustManager = context.getTrustManager();
+
+            // Polled while preallocated but not yet written
+            final byte[] complete = encode(CertificateGenerator.trustStore(second.certificate));
+            write(trustStore, new byte[complete.length], 2);
+            assertFalse(context.reload());
+            assertDoesNotThrow(() -> trustManager.checkServerTrusted(firstChain, "ECDHE_ECDSA"));
+
+            // Written within the same modification time, so only the content tells the two versions apart
+            write(trustStore, complete, 2);
+            assertTrue(context.reload());
+            assertDoesNotThrow(() -> trustManager.checkServerTrusted(secondChain, "ECDHE_ECDSA"));
+        }
+    }
+
+    private static Path store(final Path file, final KeyStore keyStore, final long second)
+        throws GeneralSecurityException, IOException {
+        return write(file, encode(keyStore), second);
+    }
+
+    private static Path write(final Path file, final byte[] content, final long second) throws IOException {
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_600_000_000_000L + second * 1000));
+        return file;
+    }
+
+    private static byte[] encode(final KeyStore keyStore) throws GeneralSecurityException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        keyStore.store(out, PASSWORD);
+        return out.toByteArray();
+    }
+}
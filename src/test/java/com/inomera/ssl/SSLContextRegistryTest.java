@@ -0,0 +1,100 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SSLContextRegistryTest {
+
+    private static final char[] PASSWORD = "secret".toCharArray();
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued server;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Registry Root");
+        server = CertificateGenerator.leaf("localhost", root, "localhost");
+    }
+
+    @Test
+    void sharesContextBetweenBuildersLoadingEqualStores() throws Exception {
+        final SSLContextRegistry registry = new SSLContextRegistry();
+        // Distinct key store instances with the same contents, as two clients loading the same files get
+        try (SSLContextRegistry.SharedSSLContext first = builder(CertificateGenerator.trustStore(root.certificate))
+            .buildShared(registry);
+             SSLContextRegistry.SharedSSLContext second = builder(CertificateGenerator.trustStore(root.certificate))
+                 .buildShared(registry)) {
+            assertSame(first.getSSLContext(), second.getSSLContext());
+            assertEquals(1, registry.size());
+            assertEquals(2, registry.materialSize());
+        }
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.materialSize());
+    }
+
+    @Test
+    void sharesMaterialBetweenDifferentConfigurations() throws Exception {
+        final SSLContextRegistry registry = new SSLContextRegistry();
+        try (SSLContextRegistry.SharedSSLContext tls = builder(CertificateGenerator.trustStore(root.certificate))
+            .buildShared(registry);
+             SSLContextRegistry.SharedSSLContext tls13 = builder(CertificateGenerator.trustStore(root.certificate))
+                 .setProtocol("TLSv1.3")
+                 .buildShared(registry)) {
+            assertNotSame(tls.getSSLContext(), tls13.getSSLContext());
+            assertEquals(2, registry.size());
+            assertEquals(2, registry.materialSize());
+        }
+    }
+
+    @Test
+    void separatesDifferentStoresAndStrategyInstances() throws Exception {
+        final SSLContextRegistry registry = new SSLContextRegistry();
+        try (SSLContextRegistry.SharedSSLContext plain = builder(CertificateGenerator.trustStore(root.certificate))
+            .buildShared(registry);
+             SSLContextRegistry.SharedSSLContext otherStore = builder(CertificateGenerator.trustStore(
+                 CertificateGenerator.ca("Registry Other").certificate))
+                 .buildShared(registry);
+             SSLContextRegistry.SharedSSLContext otherStrategy = builder(CertificateGenerator.trustStore(
+                 root.certificate))
+                 .setTrustManagerStrategy(new RejectingStrategy())
+                 .buildShared(registry)) {
+            assertNotSame(plain.getSSLContext(), otherStore.getSSLContext());
+            assertNotSame(plain.getSSLContext(), otherStrategy.getSSLContext());
+            assertEquals(3, registry.size());
+            // One key store, two trust stores
+            assertEquals(3, registry.materialSize());
+        }
+    }
+
+    @Test
+    void evictsContextOnceEveryHandleIsClosed() throws Exception {
+        final SSLContextRegistry registry = new SSLContextRegistry();
+        final SSLContextRegistry.SharedSSLContext first = builder(CertificateGenerator.trustStore(root.certificate))
+            .buildShared(registry);
+        final SSLContextRegistry.SharedSSLContext second = builder(CertificateGenerator.trustStore(root.certificate))
+            .buildShared(registry);
+
+        first.close();
+        first.close();
+        assertEquals(1, registry.size());
+        second.close();
+        assertEquals(0, registry.size());
+
+        try (SSLContextRegistry.SharedSSLContext third = builder(CertificateGenerator.trustStore(root.certificate))
+            .buildShared(registry)) {
+            assertNotSame(first.getSSLContext(), third.getSSLContext());
+        }
+    }
+
+    private static MultiTrustSSLContextBuilder builder(final KeyStore trustStore) throws Exception {
+        return MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterial(trustStore, null)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, server), PASSWORD);
+    }
+}
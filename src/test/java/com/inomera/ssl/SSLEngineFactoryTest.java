@@ -0,0 +1,166 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SSLEngineFactoryTest {
+
+    private static final char[] PASSWORD = "engine".toCharArray();
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued server;
+    private static CertificateGenerator.Issued client;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Engine Root");
+        server = CertificateGenerator.leaf("localhost", root, "localhost");
+        client = CertificateGenerator.leaf("client", root);
+    }
+
+    @Test
+    void appliesSettingsOfBuilder() throws Exception {
+        final SSLEngineFactory factory = builder(server)
+            .setEnabledProtocols("TLSv1.2")
+            .setEnabledCipherSuites("TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256")
+            .setClientAuth(SSLEngineFactory.ClientAuth.WANT)
+            .buildEngineFactory();
+
+        final SSLEngine serverEngine = factory.createServerEngine();
+        assertFalse(serverEngine.getUseClientMode());
+        assertArrayEquals(new String[]{"TLSv1.2"}, serverEngine.getEnabledProtocols());
+        assertArrayEquals(new String[]{"TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256"},
+            serverEngine.getEnabledCipherSuites());
+        assertTrue(serverEngine.getWantClientAuth());
+        assertFalse(serverEngine.getNeedClientAuth());
+
+        final SSLEngine clientEngine = factory.createClientEngine("localhost", 8443);
+        assertTrue(clientEngine.getUseClientMode());
+        assertEquals("localhost", clientEngine.getPeerHost());
+        assertEquals(8443, clientEngine.getPeerPort());
+        assertArrayEquals(new String[]{"TLSv1.2"}, clientEngine.getEnabledProtocols());
+    }
+
+    @Test
+    void runsDelegatedTasksOnExecutor() throws Exception {
+        final ExecutorService workers = Executors.newFixedThreadPool(2);
+        final AtomicInteger offloaded = new AtomicInteger();
+        try {
+            final SSLEngineFactory serverFactory = builder(server)
+                .setClientAuth(SSLEngineFactory.ClientAuth.NEED)
+                .setDelegatedTaskExecutor(task -> {
+                    offloaded.incrementAndGet();
+                    workers.execute(task);
+                })
+                .buildEngineFactory();
+            final SSLEngineFactory clientFactory = builder(client).buildEngineFactory();
+            final SSLEngine serverEngine = serverFactory.createServerEngine();
+            final SSLEngine clientEngine = clientFactory.createClientEngine("localhost", 8443);
+
+            handshake(clientFactory, clientEngine, serverFactory, serverEngine);
+            assertTrue(offloaded.get() > 0);
+            assertEquals("CN=client", serverEngine.getSession().getPeerPrincipal().getName());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    void reportsTasksTheExecutorRejects() throws Exception {
+        final SSLEngineFactory clientFactory = builder(client)
+            .setDelegatedTaskExecutor(task -> {
+                throw new RejectedExecutionException("Shut down");
+            })
+            .buildEngineFactory();
+        final SSLEngine clientEngine = clientFactory.createClientEngine("localhost", 8443);
+        final SSLEngineFactory serverFactory = builder(server).buildEngineFactory();
+        final SSLEngine serverEngine = serverFactory.createServerEngine();
+
+        assertThrows(RejectedExecutionException.class,
+            () -> handshake(clientFactory, clientEngine, serverFactory, serverEngine));
+    }
+
+    @Test
+    void completesWithHandshakeStatusAfterTasks() throws Exception {
+        final SSLEngineFactory factory = builder(server).buildEngineFactory();
+        final SSLEngine engine = factory.createClientEngine("localhost", 8443);
+        engine.beginHandshake();
+
+        final HandshakeStatus status = factory.runDelegatedTasks(engine).join();
+        assertNotEquals(HandshakeStatus.NEED_TASK, status);
+    }
+
+    private static MultiTrustSSLContextBuilder builder(final CertificateGenerator.Issued identity) throws Exception {
+        return MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(new RejectingStrategy())
+            .loadTrustMaterial(CertificateGenerator.trustStore(root.certificate), null)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, identity), PASSWORD);
+    }
+
+    /**
+     * Drives both engines the way an event loop would: wrapping and unwrapping on this thread, and waiting for
+     * the delegated tasks of an engine to complete on its factory before touching that engine again.
+     */
+    private static void handshake(final SSLEngineFactory clientFactory, final SSLEngine clientEngine,
+                                  final SSLEngineFactory serverFactory, final SSLEngine serverEngine)
+        throws Exception {
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+        final ByteBuffer clientToServer = ByteBuffer.allocate(clientEngine.getSession().getPacketBufferSize());
+        final ByteBuffer serverToClient = ByteBuffer.allocate(serverEngine.getSession().getPacketBufferSize());
+        final ByteBuffer in = ByteBuffer.allocate(Math.max(clientEngine.getSession().getApplicationBufferSize(),
+            serverEngine.getSession().getApplicationBufferSize()));
+        for (int step = 0; step < 1000; step++) {
+            if (isFinished(clientEngine) && isFinished(serverEngine)) {
+                return;
+            }
+            clientEngine.wrap(EMPTY, clientToServer);
+            runTasks(clientFactory, clientEngine);
+            serverEngine.wrap(EMPTY, serverToClient);
+            runTasks(serverFactory, serverEngine);
+            clientToServer.flip();
+            serverToClient.flip();
+            clientEngine.unwrap(serverToClient, in);
+            runTasks(clientFactory, clientEngine);
+            in.clear();
+            serverEngine.unwrap(clientToServer, in);
+            runTasks(serverFactory, serverEngine);
+            in.clear();
+            clientToServer.compact();
+            serverToClient.compact();
+        }
+        throw new AssertionError("Handshake did not complete");
+    }
+
+    private static void runTasks(final SSLEngineFactory factory, final SSLEngine engine) throws Exception {
+        if (engine.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+            try {
+                factory.runDelegatedTasks(engine).join();
+            } catch (CompletionException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+
+    private static boolean isFinished(final SSLEngine engine) {
+        final HandshakeStatus status = engine.getHandshakeStatus();
+        return status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED;
+    }
+}
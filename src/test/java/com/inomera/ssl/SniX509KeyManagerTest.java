@@ -0,0 +1,73 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.security.cert.Certificate;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SniX509KeyManagerTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static CertificateGenerator.Issued current;
+    private static CertificateGenerator.Issued wildcard;
+    private static CertificateGenerator.Issued fallback;
+    private static SSLContext server;
+    private static SSLContext client;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        final CertificateGenerator.Issued ca = CertificateGenerator.ca("SNI CA");
+        final Instant now = Instant.now();
+        current = CertificateGenerator.leaf("current", ca, now.minus(Duration.ofDays(30)),
+            now.plus(Duration.ofDays(10)), "www.example.com");
+        final CertificateGenerator.Issued renewal = CertificateGenerator.leaf("renewal", ca,
+            now.plus(Duration.ofDays(1)), now.plus(Duration.ofDays(400)), "www.example.com");
+        final CertificateGenerator.Issued expired = CertificateGenerator.leaf("expired", ca,
+            now.minus(Duration.ofDays(60)), now.minus(Duration.ofDays(1)), "www.example.com", "*.example.org");
+        wildcard = CertificateGenerator.leaf("wildcard", ca, "*.example.org");
+        fallback = CertificateGenerator.leaf("fallback", ca, "fallback.example.net");
+        // Aliases key-0 to key-4 in this order; the strategy always picks the fallback
+        server = MultiTrustSSLContextBuilder.create()
+            .setSniKeySelection(true)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, renewal, current, expired, wildcard, fallback),
+                PASSWORD, (aliases, socket) -> aliases.keySet().stream()
+                    .filter(alias -> alias.endsWith("key-4"))
+                    .findFirst()
+                    .orElse(null))
+            .build();
+        client = MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterial(CertificateGenerator.trustStore(ca.certificate), null)
+            .build();
+    }
+
+    @Test
+    void servesValidCertificateWhileRenewalIsNotValidYet() throws Exception {
+        assertEquals(current.certificate, serverCertificate("www.example.com"));
+        assertEquals(current.certificate, serverCertificate("WWW.Example.COM"));
+    }
+
+    @Test
+    void servesValidWildcardCertificate() throws Exception {
+        assertEquals(wildcard.certificate, serverCertificate("api.example.org"));
+    }
+
+    @Test
+    void leavesUnknownHostNameToStrategy() throws Exception {
+        assertEquals(fallback.certificate, serverCertificate("unknown.example.net"));
+        // A wildcard covers a single label only
+        assertEquals(fallback.certificate, serverCertificate("a.b.example.org"));
+    }
+
+    private static Certificate serverCertificate(final String hostName) throws Exception {
+        final SSLEngine engine = Handshakes.client(client, hostName, false);
+        Handshakes.run(engine, Handshakes.server(server));
+        return engine.getSession().getPeerCertificates()[0];
+    }
+}
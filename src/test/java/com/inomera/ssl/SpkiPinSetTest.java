@@ -0,0 +1,100 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpkiPinSetTest {
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued leaf;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Pin Set Root");
+        leaf = CertificateGenerator.leaf("pins.example", root, "pins.example");
+    }
+
+    @Test
+    void parsesPinsWithAndWithoutPrefix() throws Exception {
+        final String pin = SpkiPinSet.pinOf(leaf.certificate);
+        final byte[] hash = MessageDigest.getInstance("SHA-256").digest(leaf.certificate.getPublicKey().getEncoded());
+        assertEquals("sha256/" + Base64.getEncoder().encodeToString(hash), pin);
+
+        assertTrue(SpkiPinSet.parse(pin).isPinned(leaf.certificate));
+        assertTrue(SpkiPinSet.parse(pin.substring("sha256/".length())).isPinned(leaf.certificate));
+        assertFalse(SpkiPinSet.parse(pin).isPinned(root.certificate));
+    }
+
+    @Test
+    void findsHashesSharingTheirFirstLong() {
+        final List<byte[]> hashes = new ArrayList<byte[]>();
+        for (int i = 1; i <= 16; i++) {
+            final byte[] hash = new byte[32];
+            Arrays.fill(hash, 0, 8, (byte) 0x5A);
+            hash[31] = (byte) i;
+            hashes.add(hash);
+        }
+        final SpkiPinSet pins = SpkiPinSet.of(hashes);
+
+        assertEquals(16, pins.size());
+        for (final byte[] hash : hashes) {
+            assertTrue(pins.contains(hash));
+        }
+        final byte[] absent = hashes.get(0).clone();
+        absent[31] = 17;
+        assertFalse(pins.contains(absent));
+    }
+
+    @Test
+    void countsDistinctPins() {
+        final byte[] hash = new byte[32];
+        hash[0] = 1;
+        final SpkiPinSet pins = SpkiPinSet.of(Arrays.asList(hash, hash.clone(), new byte[32], new byte[32]));
+
+        assertEquals(2, pins.size());
+        assertEquals("[pins=2]", pins.toString());
+    }
+
+    @Test
+    void pinsZeroHashSeparately() {
+        final byte[] hash = new byte[32];
+        hash[5] = 1;
+        assertFalse(SpkiPinSet.of(Arrays.asList(hash)).contains(new byte[32]));
+        assertTrue(SpkiPinSet.of(Arrays.asList(new byte[32])).contains(new byte[32]));
+        assertFalse(SpkiPinSet.of(Arrays.asList(new byte[32])).contains(hash));
+    }
+
+    @Test
+    void rejectsHashesOfWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> SpkiPinSet.of(Arrays.asList(new byte[20])));
+        assertThrows(IllegalArgumentException.class, () -> SpkiPinSet.parse("sha256/not base64"));
+        assertFalse(SpkiPinSet.of(Arrays.asList(new byte[32])).contains(new byte[31]));
+        assertFalse(SpkiPinSet.of(Arrays.asList(new byte[32])).contains(null));
+    }
+
+    @Test
+    void emptySetPinsNothing() {
+        final SpkiPinSet pins = SpkiPinSet.parse();
+        assertEquals(0, pins.size());
+        assertFalse(pins.isPinned(leaf.certificate));
+        assertFalse(pins.isAnyPinned(leaf.chain, 0));
+    }
+
+    @Test
+    void findsPinnedCertificateFromPosition() {
+        final SpkiPinSet pins = SpkiPinSet.ofCertificates(root.certificate);
+        assertTrue(pins.isAnyPinned(leaf.chain, 1));
+        assertFalse(pins.isAnyPinned(leaf.chain, 2));
+    }
+}
@@ -0,0 +1,88 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpkiPinningTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued trusted;
+    private static CertificateGenerator.Issued untrusted;
+    private static CertificateGenerator.Issued pinned;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        trusted = CertificateGenerator.ca("Trusted Pinning CA");
+        untrusted = CertificateGenerator.ca("Untrusted Pinning CA");
+        pinned = CertificateGenerator.leaf("pinned.example", untrusted, "pinned.example");
+    }
+
+    @Test
+    void acceptsPinnedLeafWithoutDelegates() throws Exception {
+        final CompositeX509TrustManager trustManager = trustManager(new RejectingStrategy(),
+            SpkiPinSet.ofCertificates(pinned.certificate), false);
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(pinned.chain, AUTH_TYPE));
+    }
+
+    @Test
+    void rejectsExpiredPinnedLeaf() throws Exception {
+        final Instant now = Instant.now();
+        final CertificateGenerator.Issued expired = CertificateGenerator.leaf("pinned.example", untrusted,
+            now.minus(Duration.ofDays(30)), now.minus(Duration.ofDays(1)), "pinned.example");
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final CompositeX509TrustManager trustManager = trustManager(strategy,
+            SpkiPinSet.ofCertificates(expired.certificate), false);
+
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(expired.chain, AUTH_TYPE));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    @Test
+    void identifiesEndpointOfPinnedLeaf() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final SSLContext client = SSLContext.getInstance("TLS");
+        client.init(null, new TrustManager[]{
+            trustManager(strategy, SpkiPinSet.ofCertificates(pinned.certificate), false)}, null);
+        final SSLContext server = MultiTrustSSLContextBuilder.create()
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, pinned), PASSWORD)
+            .build();
+
+        assertDoesNotThrow(() -> Handshakes.run(Handshakes.client(client, "pinned.example", true),
+            Handshakes.server(server)));
+        assertThrows(IllegalStateException.class, () -> Handshakes.run(
+            Handshakes.client(client, "evil.example", true), Handshakes.server(server)));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    @Test
+    void rejectsValidatedChainWithoutPinInStrictMode() throws Exception {
+        final X509Certificate[] chain = CertificateGenerator.leaf("other.example", trusted).chain;
+        final RejectingStrategy strategy = new RejectingStrategy();
+
+        assertDoesNotThrow(() -> trustManager(strategy, SpkiPinSet.ofCertificates(pinned.certificate), false)
+            .checkServerTrusted(chain, AUTH_TYPE));
+        final CompositeX509TrustManager strict = trustManager(strategy, SpkiPinSet.ofCertificates(pinned.certificate),
+            true);
+        assertThrows(IllegalStateException.class, () -> strict.checkServerTrusted(chain, AUTH_TYPE));
+        // The root is sent along, so its pin satisfies strict mode
+        assertDoesNotThrow(() -> trustManager(strategy, SpkiPinSet.ofCertificates(trusted.certificate), true)
+            .checkServerTrusted(chain, AUTH_TYPE));
+    }
+
+    private static CompositeX509TrustManager trustManager(final TrustManagerStrategy strategy, final SpkiPinSet pins,
+                                                          final boolean strict) throws Exception {
+        return new CompositeX509TrustManager(strategy, TrustManagers.of(trusted.certificate)).setSpkiPins(pins, strict);
+    }
+}
@@ -0,0 +1,56 @@
+package com.inomera.ssl;
+
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+/**
+ * JDK PKIX trust managers over in-memory trust stores.
+ */
+final class TrustManagers {
+
+    private TrustManagers() {
+    }
+
+    static X509TrustManager of(final X509Certificate... anchors) throws GeneralSecurityException {
+        final TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(CertificateGenerator.trustStore(anchors));
+        return (X509TrustManager) factory.getTrustManagers()[0];
+    }
+
+    /**
+     * Returns a JDK PKIX trust manager marked as validating the plain way, like the builder loads trust stores.
+     */
+    static X509TrustManager pkix(final X509Certificate... anchors) throws GeneralSecurityException {
+        final TrustManagerFactory factory = TrustManagerFactory.getInstance("PKIX");
+        factory.init(CertificateGenerator.trustStore(anchors));
+        return (X509TrustManager) PkixX509TrustManager.of(factory)[0];
+    }
+
+    /**
+     * Returns a trust manager rejecting every chain without reporting any accepted issuers, so the composite asks
+     * it about every chain.
+     */
+    static X509TrustManager rejectingAll() {
+        return new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+                throws CertificateException {
+                throw new CertificateException("Rejecting all client chains");
+            }
+
+            @Override
+            public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+                throws CertificateException {
+                throw new CertificateException("Rejecting all server chains");
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package com.inomera.ssl;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustMetricsTest {
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued other;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Metrics Root");
+        other = CertificateGenerator.ca("Metrics Other");
+    }
+
+    @Test
+    void recordsDecisionsAndDelegateValidationsPerSide() throws Exception {
+        final TrustMetricsRecorder metrics = new TrustMetricsRecorder();
+        // A delegate without accepted issuers is asked for every chain, before the one that anchors it
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            TrustManagers.rejectingAll(), TrustManagers.of(root.certificate)).setTrustMetrics(metrics);
+
+        trustManager.checkServerTrusted(CertificateGenerator.leaf("server", root).chain, "ECDHE_ECDSA");
+        final X509Certificate[] untrusted = CertificateGenerator.leaf("client", other).chain;
+        assertThrows(IllegalStateException.class, () -> trustManager.checkClientTrusted(untrusted, "EC"));
+
+        assertEquals(1, metrics.getServerDecisions().getAccepted());
+        assertEquals(0, metrics.getServerDecisions().getRejected());
+        assertEquals(1, metrics.getClientDecisions().getRejected());
+        assertEquals(1, metrics.getServerValidations(0).getRejected());
+        assertEquals(1, metrics.getServerValidations(1).getAccepted());
+        assertEquals(1, metrics.getClientValidations(0).getRejected());
+        assertEquals(0, metrics.getClientValidations(1).getAttempts());
+        assertEquals(2, metrics.getDelegateCount());
+        assertEquals(1, metrics.getServerDecisions().getLatency().getCount());
+        assertTrue(metrics.getServerDecisions().getLatency().getTotalNanos() > 0);
+    }
+
+    @Test
+    void reportsPercentilesAsBucketUpperBounds() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+        histogram.record(-5);
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(99 * 1000 + 1_000_000, histogram.getTotalNanos());
+        assertEquals(0, histogram.getPercentileNanos(0));
+        assertEquals(1023, histogram.getPercentileNanos(50));
+        assertEquals(1023, histogram.getPercentileNanos(98));
+        assertEquals((1 << 20) - 1, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void emitsJfrEventsForDelegatesAndDecisions(@TempDir final Path directory) throws Exception {
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            TrustManagers.of(root.certificate)).setTrustMetrics(new JfrTrustMetrics());
+        final Path dump = directory.resolve("trust.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.inomera.ssl.TrustValidation");
+            recording.start();
+            trustManager.checkServerTrusted(CertificateGenerator.leaf("server", root).chain, "ECDHE_ECDSA");
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+            .filter(event -> "com.inomera.ssl.TrustValidation".equals(event.getEventType().getName()))
+            .collect(Collectors.toList());
+        assertEquals(List.of(0, JfrTrustMetrics.DECISION),
+            events.stream().map(event -> event.getInt("delegate")).collect(Collectors.toList()));
+        assertTrue(events.stream().allMatch(event -> event.getBoolean("accepted") && !event.getBoolean("client")));
+    }
+
+    @Test
+    void skipsMetricsThatAreNotEnabled() throws Exception {
+        final AtomicInteger callbacks = new AtomicInteger();
+        final TrustMetrics disabled = new TrustMetrics() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public void onDelegateValidation(final int delegate, final boolean client, final boolean accepted,
+                                             final long nanos) {
+                callbacks.incrementAndGet();
+            }
+
+            @Override
+            public void onTrustDecision(final boolean client, final boolean trusted, final long nanos) {
+                callbacks.incrementAndGet();
+            }
+        };
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            TrustManagers.of(root.certificate)).setTrustMetrics(disabled);
+
+        trustManager.checkServerTrusted(CertificateGenerator.leaf("server", root).chain, "ECDHE_ECDSA");
+        assertEquals(0, callbacks.get());
+        // No recording enables the event outside of emitsJfrEventsForDelegatesAndDecisions
+        assertFalse(new JfrTrustMetrics().isEnabled());
+    }
+}
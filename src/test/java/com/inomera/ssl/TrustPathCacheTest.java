@@ -0,0 +1,198 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.AlgorithmConstraints;
+import java.security.AlgorithmParameters;
+import java.security.CryptoPrimitive;
+import java.security.Key;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustPathCacheTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued intermediate;
+    private static CertificateGenerator.Issued trustedLeaf;
+    private static CertificateGenerator.Issued attacker;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Path Root");
+        intermediate = CertificateGenerator.intermediate("Path Intermediate", root);
+        // A self-signed certificate trusted as is, e.g. a pinned service certificate
+        trustedLeaf = CertificateGenerator.ca("trusted.example");
+        attacker = CertificateGenerator.ca("Attacker CA");
+    }
+
+    @Test
+    void acceptsNewLeafOfCachedPathWithLeafChecksOnly() throws Exception {
+        final TrustPathCache paths = new TrustPathCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = trustManager(new RejectingStrategy(), paths);
+
+        trustManager.checkServerTrusted(leafChain("first.example"), AUTH_TYPE);
+        assertEquals(1, paths.size());
+        trustManager.checkServerTrusted(leafChain("second.example"), AUTH_TYPE);
+        assertEquals(1, paths.getHitCount());
+    }
+
+    @Test
+    void doesNotCachePathAfterTrustedLeaf() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustPathCache paths = new TrustPathCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = trustManager(strategy, paths);
+
+        // Accepted because the leaf is trusted, whatever follows it
+        final X509Certificate[] trustedLeafChain = {trustedLeaf.certificate, attacker.certificate};
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(trustedLeafChain, AUTH_TYPE));
+        assertEquals(0, paths.size());
+
+        // Same path after the leaf, but nothing about it was validated
+        final X509Certificate[] forged = CertificateGenerator.leaf("victim.example", attacker).chain;
+        final X509Certificate[] forgedChain = {forged[0], attacker.certificate};
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(forgedChain, AUTH_TYPE));
+        assertEquals(1, strategy.rejections.get());
+        assertEquals(0, paths.getHitCount());
+    }
+
+    @Test
+    void doesNotCachePathNotEndingAtAnchor() throws Exception {
+        final TrustPathCache paths = new TrustPathCache(16, Duration.ofMinutes(5));
+        final X509TrustManager acceptingAll = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(final X509Certificate[] chain, final String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(final X509Certificate[] chain, final String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            acceptingAll).setPathCache(paths);
+
+        trustManager.checkServerTrusted(leafChain("first.example"), AUTH_TYPE);
+        assertEquals(0, paths.size());
+    }
+
+    @Test
+    void discardsCachedPathsWhenTrustManagersChange() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustPathCache paths = new TrustPathCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = trustManager(strategy, paths);
+        trustManager.checkServerTrusted(leafChain("first.example"), AUTH_TYPE);
+
+        trustManager.setTrustManagers(TrustManagers.pkix(trustedLeaf.certificate));
+        final X509Certificate[] chain = leafChain("second.example");
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+        assertEquals(0, paths.getHitCount());
+    }
+
+    @Test
+    void doesNotStandInForTrustManagersNotKnownToBePlain() throws Exception {
+        final TrustPathCache paths = new TrustPathCache(16, Duration.ofMinutes(5));
+        // e.g. a trust manager checking revocation, which may reject any new leaf
+        final CountingTrustManager custom = new CountingTrustManager(TrustManagers.of(root.certificate));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(), custom)
+            .setPathCache(paths);
+
+        trustManager.checkServerTrusted(leafChain("first.example"), AUTH_TYPE);
+        trustManager.checkServerTrusted(leafChain("second.example"), AUTH_TYPE);
+        assertEquals(0, paths.size());
+        assertEquals(2, custom.checks.get());
+    }
+
+    @Test
+    void doesNotMarkTrustManagersCheckingRevocationAsPlain() throws Exception {
+        final String checkRevocation = "com.sun.net.ssl.checkRevocation";
+        System.setProperty(checkRevocation, "true");
+        try {
+            assertFalse(PkixX509TrustManager.isPlain(TrustManagers.pkix(root.certificate)));
+        } finally {
+            System.clearProperty(checkRevocation);
+        }
+        assertTrue(PkixX509TrustManager.isPlain(TrustManagers.pkix(root.certificate)));
+    }
+
+    @Test
+    void appliesAlgorithmConstraintsOfConnectionToCachedPath() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustPathCache paths = new TrustPathCache(16, Duration.ofMinutes(5));
+        final SSLContext client = SSLContext.getInstance("TLS");
+        client.init(null, new TrustManager[]{trustManager(strategy, paths)}, null);
+        Handshakes.run(Handshakes.client(client, "first.example", false), server("first.example"));
+        assertEquals(1, paths.size());
+
+        final SSLEngine constrained = Handshakes.client(client, "second.example", false);
+        final SSLParameters parameters = constrained.getSSLParameters();
+        parameters.setAlgorithmConstraints(rejecting(intermediate.certificate.getPublicKey()));
+        constrained.setSSLParameters(parameters);
+        final SSLEngine server = server("second.example");
+        assertThrows(IllegalStateException.class, () -> Handshakes.run(constrained, server));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    private static SSLEngine server(final String hostName) throws Exception {
+        final char[] password = "changeit".toCharArray();
+        final SSLContext context = MultiTrustSSLContextBuilder.create()
+            .loadKeyMaterial(CertificateGenerator.keyStore(password,
+                CertificateGenerator.leaf(hostName, intermediate, hostName)), password)
+            .build();
+        return Handshakes.server(context);
+    }
+
+    /**
+     * Returns constraints rejecting one key and permitting everything else.
+     */
+    private static AlgorithmConstraints rejecting(final Key rejected) {
+        return new AlgorithmConstraints() {
+            @Override
+            public boolean permits(final Set<CryptoPrimitive> primitives, final String algorithm,
+                                   final AlgorithmParameters parameters) {
+                return true;
+            }
+
+            @Override
+            public boolean permits(final Set<CryptoPrimitive> primitives, final Key key) {
+                return !rejected.equals(key);
+            }
+
+            @Override
+            public boolean permits(final Set<CryptoPrimitive> primitives, final String algorithm, final Key key,
+                                   final AlgorithmParameters parameters) {
+                return !rejected.equals(key);
+            }
+        };
+    }
+
+    private static CompositeX509TrustManager trustManager(final TrustManagerStrategy strategy,
+                                                          final TrustPathCache paths) throws Exception {
+        return new CompositeX509TrustManager(strategy, TrustManagers.pkix(trustedLeaf.certificate, root.certificate))
+            .setPathCache(paths);
+    }
+
+    private static X509Certificate[] leafChain(final String hostName) throws Exception {
+        final X509Certificate[] chain = CertificateGenerator.leaf(hostName, intermediate, hostName).chain;
+        // Servers usually leave out the root
+        return new X509Certificate[]{chain[0], chain[1]};
+    }
+}
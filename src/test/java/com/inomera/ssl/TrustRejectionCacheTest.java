@@ -0,0 +1,126 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrustRejectionCacheTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued root;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Rejection Root");
+    }
+
+    @Test
+    void rejectsRepeatedChainWithoutDelegatesAndCountsRejections() throws Exception {
+        final CountingStrategy strategy = new CountingStrategy();
+        final CountingTrustManager delegate = new CountingTrustManager(TrustManagers.rejectingAll());
+        final TrustRejectionCache cache = new TrustRejectionCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy, delegate)
+            .setRejectionCache(cache)
+            .setFailureLogInterval(Duration.ofMinutes(1));
+        final X509Certificate[] chain = CertificateGenerator.leaf("a.example", root).chain;
+
+        for (int i = 0; i < 3; i++) {
+            trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        }
+        trustManager.checkClientTrusted(chain, "EC");
+        assertEquals(2, delegate.checks.get());
+        assertEquals(List.of(1, 2, 3), strategy.serverRejectCounts);
+        assertEquals(List.of(1), strategy.clientRejectCounts);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void revalidatesChainAfterTimeToLive() throws Exception {
+        final CountingStrategy strategy = new CountingStrategy();
+        final CountingTrustManager delegate = new CountingTrustManager(TrustManagers.rejectingAll());
+        final TrustRejectionCache cache = new TrustRejectionCache(16, Duration.ofMillis(50));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy, delegate)
+            .setRejectionCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("b.example", root).chain;
+
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        Thread.sleep(100);
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        assertEquals(2, delegate.checks.get());
+        assertEquals(List.of(1, 1), strategy.serverRejectCounts);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedRejection() throws Exception {
+        final TrustRejectionCache cache = new TrustRejectionCache(1, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new CountingStrategy(),
+            TrustManagers.rejectingAll()).setRejectionCache(cache);
+
+        trustManager.checkServerTrusted(CertificateGenerator.leaf("c.example", root).chain, AUTH_TYPE);
+        trustManager.checkServerTrusted(CertificateGenerator.leaf("d.example", root).chain, AUTH_TYPE);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void forgetsRejectionsWhenTrustManagersChange() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustRejectionCache cache = new TrustRejectionCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy,
+            TrustManagers.rejectingAll()).setRejectionCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("e.example", root).chain;
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+
+        trustManager.setTrustManagers(TrustManagers.of(root.certificate));
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+        assertEquals(0, cache.size());
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new TrustRejectionCache(0, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new TrustRejectionCache(1, Duration.ofSeconds(-1)));
+    }
+
+    /**
+     * Records the rejection counts handed to the strategy, without failing the handshake.
+     */
+    private static final class CountingStrategy implements TrustManagerStrategy {
+
+        final List<Integer> clientRejectCounts = new CopyOnWriteArrayList<Integer>();
+        final List<Integer> serverRejectCounts = new CopyOnWriteArrayList<Integer>();
+
+        @Override
+        public void onClientTrustFailure(final X509Certificate[] chain, final String authType) {
+            throw new AssertionError("Reject count not passed");
+        }
+
+        @Override
+        public void onServerTrustFailure(final X509Certificate[] chain, final String authType) {
+            throw new AssertionError("Reject count not passed");
+        }
+
+        @Override
+        public void onClientTrustFailure(final X509Certificate[] chain, final String authType, final int rejectCount) {
+            clientRejectCounts.add(rejectCount);
+        }
+
+        @Override
+        public void onServerTrustFailure(final X509Certificate[] chain, final String authType, final int rejectCount) {
+            serverRejectCounts.add(rejectCount);
+        }
+    }
+}
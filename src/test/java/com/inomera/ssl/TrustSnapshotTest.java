@@ -0,0 +1,121 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustSnapshotTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued first;
+    private static CertificateGenerator.Issued second;
+    private static CertificateGenerator.Issued rolledOver;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        first = CertificateGenerator.ca("Snapshot First");
+        second = CertificateGenerator.ca("Snapshot Second");
+        // Same subject, new key
+        rolledOver = CertificateGenerator.ca("Snapshot Second");
+    }
+
+    @Test
+    void validatesAgainstDeduplicatedAnchors() throws Exception {
+        final Path path = dir.resolve("trust.snapshot");
+        TrustSnapshot.write(path, List.of(first.certificate, second.certificate, first.certificate,
+            rolledOver.certificate));
+        final SnapshotX509TrustManager trustManager = new SnapshotX509TrustManager(TrustSnapshot.open(path), null);
+
+        assertEquals(3, trustManager.getSnapshot().size());
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(leafChain(first), AUTH_TYPE));
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(leafChain(second), AUTH_TYPE));
+        assertDoesNotThrow(() -> trustManager.checkClientTrusted(leafChain(rolledOver), "EC"));
+        final X509Certificate[] unknown = leafChain(CertificateGenerator.ca("Snapshot Unknown"));
+        final CertificateException failure = assertThrows(CertificateException.class,
+            () -> trustManager.checkServerTrusted(unknown, AUTH_TYPE));
+        assertTrue(failure.getMessage().startsWith("No trust anchor in "));
+        assertEquals(3, trustManager.getAcceptedIssuers().length);
+    }
+
+    @Test
+    void decodesAnchorsOnlyWhenChainsNeedThem() throws Exception {
+        final Path path = dir.resolve("trust.snapshot");
+        TrustSnapshot.write(path, List.of(first.certificate, second.certificate));
+        corrupt(path, second.certificate);
+        final SnapshotX509TrustManager trustManager = new SnapshotX509TrustManager(TrustSnapshot.open(path), null);
+
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(leafChain(first), AUTH_TYPE));
+        final CertificateException failure = assertThrows(CertificateException.class,
+            () -> trustManager.checkServerTrusted(leafChain(second), AUTH_TYPE));
+        assertTrue(failure.getMessage().startsWith("Corrupted trust anchor"));
+        assertEquals(1, trustManager.getAcceptedIssuers().length);
+    }
+
+    @Test
+    void rejectsInvalidFiles() throws Exception {
+        final Path path = dir.resolve("trust.snapshot");
+        Files.write(path, "not a snapshot at all, but long enough to hold a header".getBytes());
+        assertThrows(IOException.class, () -> TrustSnapshot.open(path));
+
+        TrustSnapshot.write(path, List.of(first.certificate));
+        final byte[] bytes = Files.readAllBytes(path);
+        // Inside the subject hash of the only index entry
+        bytes[20] ^= 1;
+        Files.write(path, bytes);
+        final IOException failure = assertThrows(IOException.class, () -> TrustSnapshot.open(path));
+        assertTrue(failure.getMessage().startsWith("Corrupted trust snapshot index"));
+    }
+
+    @Test
+    void compilesTrustMaterialOfBuilder() throws Exception {
+        final Path path = dir.resolve("trust.snapshot");
+        TrustSnapshot.compile(MultiTrustSSLContextBuilder.create()
+            .loadTrustMaterial(CertificateGenerator.trustStore(first.certificate), null)
+            .loadTrustMaterial(CertificateGenerator.trustStore(first.certificate, second.certificate), null), path);
+
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create().loadTrustSnapshot(path);
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            MultiTrustSSLContextBuilder.toX509TrustManagers(builder.getTrustMaterial()));
+        assertEquals(2, TrustSnapshot.open(path).size());
+        assertDoesNotThrow(() -> trustManager.checkServerTrusted(leafChain(second), AUTH_TYPE));
+        final X509Certificate[] untrusted = leafChain(rolledOver);
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(untrusted, AUTH_TYPE));
+    }
+
+    private static X509Certificate[] leafChain(final CertificateGenerator.Issued root) throws Exception {
+        return CertificateGenerator.leaf("leaf.example", root).chain;
+    }
+
+    /**
+     * Flips a byte within the DER encoding of the anchor, leaving the index intact.
+     */
+    private static void corrupt(final Path path, final X509Certificate anchor) throws Exception {
+        final byte[] bytes = Files.readAllBytes(path);
+        final byte[] der = anchor.getEncoded();
+        for (int i = 0; i + der.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + der.length, der, 0, der.length)) {
+                bytes[i + der.length - 1] ^= 1;
+                Files.write(path, bytes);
+                return;
+            }
+        }
+        throw new AssertionError("Anchor not found in snapshot");
+    }
+}
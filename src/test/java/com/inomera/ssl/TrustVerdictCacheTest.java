@@ -0,0 +1,142 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrustVerdictCacheTest {
+
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued other;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Verdict Root");
+        other = CertificateGenerator.ca("Verdict Other");
+    }
+
+    @Test
+    void skipsDelegatesForRepeatedChain() throws Exception {
+        final CountingTrustManager delegate = new CountingTrustManager(TrustManagers.of(root.certificate));
+        final TrustVerdictCache cache = new TrustVerdictCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            delegate).setVerdictCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("a.example", root, "a.example").chain;
+
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        assertEquals(1, delegate.checks.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        // The verdict is bound to the side that presented the chain
+        trustManager.checkClientTrusted(chain, "EC");
+        assertEquals(2, delegate.checks.get());
+    }
+
+    @Test
+    void doesNotCacheRejections() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustVerdictCache cache = new TrustVerdictCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy,
+            TrustManagers.of(root.certificate)).setVerdictCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("b.example", other, "b.example").chain;
+
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+        assertEquals(2, strategy.rejections.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedChain() throws Exception {
+        final TrustVerdictCache cache = new TrustVerdictCache(2, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            TrustManagers.of(root.certificate)).setVerdictCache(cache);
+        final X509Certificate[] first = CertificateGenerator.leaf("1.example", root).chain;
+        final X509Certificate[] second = CertificateGenerator.leaf("2.example", root).chain;
+        final X509Certificate[] third = CertificateGenerator.leaf("3.example", root).chain;
+
+        trustManager.checkServerTrusted(first, AUTH_TYPE);
+        trustManager.checkServerTrusted(second, AUTH_TYPE);
+        trustManager.checkServerTrusted(first, AUTH_TYPE);
+        trustManager.checkServerTrusted(third, AUTH_TYPE);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        trustManager.checkServerTrusted(first, AUTH_TYPE);
+        assertEquals(2, cache.getHitCount());
+        trustManager.checkServerTrusted(second, AUTH_TYPE);
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    void expiresVerdictsAfterTimeToLive() throws Exception {
+        final CountingTrustManager delegate = new CountingTrustManager(TrustManagers.of(root.certificate));
+        final TrustVerdictCache cache = new TrustVerdictCache(16, Duration.ofMillis(50));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(new RejectingStrategy(),
+            delegate).setVerdictCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("c.example", root).chain;
+
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        Thread.sleep(100);
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+        assertEquals(2, delegate.checks.get());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void discardsVerdictsWhenTrustManagersChange() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustVerdictCache cache = new TrustVerdictCache(16, Duration.ofMinutes(5));
+        final CompositeX509TrustManager trustManager = new CompositeX509TrustManager(strategy,
+            TrustManagers.of(root.certificate)).setVerdictCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("d.example", root).chain;
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+
+        trustManager.setTrustManagers(TrustManagers.of(other.certificate));
+        assertEquals(0, cache.size());
+        assertThrows(IllegalStateException.class, () -> trustManager.checkServerTrusted(chain, AUTH_TYPE));
+        assertEquals(1, strategy.rejections.get());
+    }
+
+    @Test
+    void neverReusesVerdictCachedAcrossReload() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final CompositeX509TrustManager[] trustManager = new CompositeX509TrustManager[1];
+        final X509TrustManager reloaded = TrustManagers.of(other.certificate);
+        // Reloads between the validation by the old delegates and the caching of their verdict
+        final TrustVerdictCache cache = new TrustVerdictCache(16, Duration.ofMinutes(5)) {
+            @Override
+            void put(final ChainKey key, final X509Certificate[] chain, final long generation) {
+                trustManager[0].setTrustManagers(reloaded);
+                super.put(key, chain, generation);
+            }
+        };
+        trustManager[0] = new CompositeX509TrustManager(strategy, TrustManagers.of(root.certificate))
+            .setVerdictCache(cache);
+        final X509Certificate[] chain = CertificateGenerator.leaf("e.example", root).chain;
+        trustManager[0].checkServerTrusted(chain, AUTH_TYPE);
+        assertEquals(1, cache.size());
+
+        assertThrows(IllegalStateException.class, () -> trustManager[0].checkServerTrusted(chain, AUTH_TYPE));
+        assertEquals(1, strategy.rejections.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new TrustVerdictCache(0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> new TrustVerdictCache(1, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new TrustVerdictCache(1, null));
+    }
+}
@@ -0,0 +1,104 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarmUpTest {
+
+    private static final char[] PASSWORD = "warm".toCharArray();
+
+    private static CertificateGenerator.Issued root;
+    private static CertificateGenerator.Issued server;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        root = CertificateGenerator.ca("Warm-Up Root");
+        server = CertificateGenerator.leaf("localhost", root, "localhost");
+    }
+
+    @Test
+    void runsHandshakesAndTrustChecks() throws Exception {
+        final WarmUpReport report = MultiTrustSSLContextBuilder.create().warmUp(3, 7);
+
+        assertEquals(3, report.getHandshakes());
+        assertEquals(0, report.getFailedHandshakes());
+        assertEquals(7, report.getTrustChecks());
+        assertTrue(report.getDuration().toNanos() > 0);
+    }
+
+    @Test
+    void countsHandshakesTheCipherSuitesCannotComplete() throws Exception {
+        // The warm-up certificate is an EC one, so RSA-only suites leave the server without a certificate
+        final WarmUpReport report = MultiTrustSSLContextBuilder.create()
+            .setEnabledProtocols("TLSv1.2")
+            .setEnabledCipherSuites("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256")
+            .warmUp(2, 0);
+
+        assertEquals(0, report.getHandshakes());
+        assertEquals(2, report.getFailedHandshakes());
+    }
+
+    @Test
+    void validatesThroughConfiguredTrustMaterialAndCaches() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final TrustMetricsRecorder metrics = new TrustMetricsRecorder();
+        final TrustVerdictCache verdicts = new TrustVerdictCache(16, Duration.ofMinutes(5));
+        final AtomicInteger consulted = new AtomicInteger();
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(strategy)
+            .setTrustMetrics(metrics)
+            .setVerdictCache(verdicts)
+            .loadTrustMaterial(CertificateGenerator.trustStore(root.certificate),
+                (chain, authType) -> consulted.incrementAndGet() < 0)
+            .loadKeyMaterial(CertificateGenerator.keyStore(PASSWORD, server), PASSWORD);
+
+        final WarmUpReport report = builder.warmUp(2, 4);
+        assertEquals(2, report.getHandshakes());
+        assertEquals(4, report.getTrustChecks());
+        assertTrue(consulted.get() > 0);
+        assertTrue(verdicts.size() > 0);
+        assertEquals(0, strategy.rejections.get());
+        // Metrics only count real peers
+        assertEquals(0, metrics.getServerDecisions().getAttempts());
+        assertEquals(0, metrics.getClientDecisions().getAttempts());
+
+        final SSLContext sslContext = builder.build();
+        final SSLEngine client = sslContext.createSSLEngine("localhost", 443);
+        client.setUseClientMode(true);
+        final SSLEngine serverEngine = sslContext.createSSLEngine();
+        serverEngine.setUseClientMode(false);
+        assertDoesNotThrow(() -> WarmUp.handshake(client, serverEngine));
+        assertEquals("CN=localhost", client.getSession().getPeerPrincipal().getName());
+        assertEquals(1, metrics.getServerDecisions().getAccepted());
+    }
+
+    @Test
+    void countsTrustChecksTheStrategyFails() throws Exception {
+        final RejectingStrategy strategy = new RejectingStrategy();
+        final WarmUpReport report = MultiTrustSSLContextBuilder.create()
+            .setTrustManagerStrategy(strategy)
+            .setSpkiPins(SpkiPinSet.ofCertificates(server.certificate), true)
+            .warmUp(0, 4);
+
+        assertEquals(0, report.getTrustChecks());
+        assertEquals(4, report.getFailedTrustChecks());
+        assertEquals(4, strategy.rejections.get());
+    }
+
+    @Test
+    void rejectsNegativeCounts() {
+        final MultiTrustSSLContextBuilder builder = MultiTrustSSLContextBuilder.create();
+        assertThrows(IllegalArgumentException.class, () -> builder.warmUp(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> builder.warmUp(0, -1));
+    }
+}
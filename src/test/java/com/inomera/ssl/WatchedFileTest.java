@@ -0,0 +1,61 @@
+package com.inomera.ssl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchedFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reportsChangedContentUntilCommitted() throws IOException {
+        final Path file = write(dir.resolve("store"), "first", 1);
+        final WatchedFile watchedFile = new WatchedFile(file);
+        assertFalse(watchedFile.hasChanged());
+
+        write(file, "second", 2);
+        assertTrue(watchedFile.hasChanged());
+        // The reload failed, so the change is reported again
+        assertTrue(watchedFile.hasChanged());
+
+        watchedFile.commit();
+        assertFalse(watchedFile.hasChanged());
+    }
+
+    @Test
+    void ignoresFileTouchedWithIdenticalContent() throws IOException {
+        final Path file = write(dir.resolve("store"), "content", 1);
+        final WatchedFile watchedFile = new WatchedFile(file);
+
+        write(file, "content", 2);
+        assertFalse(watchedFile.hasChanged());
+    }
+
+    @Test
+    void reportsFileCreatedAfterWatching() throws IOException {
+        final Path file = dir.resolve("store");
+        final WatchedFile watchedFile = new WatchedFile(file);
+
+        write(file, "content", 1);
+        assertTrue(watchedFile.hasChanged());
+        watchedFile.commit();
+        assertFalse(watchedFile.hasChanged());
+    }
+
+    static Path write(final Path file, final String content, final long second) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        // Distinct modification times, independent of the file system's timestamp granularity
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_600_000_000_000L + second * 1000));
+        return file;
+    }
+}
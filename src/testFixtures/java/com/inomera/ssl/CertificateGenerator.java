@@ -0,0 +1,293 @@
+package com.inomera.ssl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Generates EC P-256 certificate authorities and leaf certificates in memory, so tests and benchmarks run
+ * offline without keystore fixtures. Only the DER structures needed for PKIX validation are encoded.
+ */
+final class CertificateGenerator {
+
+    private static final String EC_WITH_SHA256 = "1.2.840.10045.4.3.2";
+    private static final String COMMON_NAME = "2.5.4.3";
+    private static final String BASIC_CONSTRAINTS = "2.5.29.19";
+    private static final String KEY_USAGE = "2.5.29.15";
+    private static final String EXTENDED_KEY_USAGE = "2.5.29.37";
+    private static final String SUBJECT_ALTERNATIVE_NAME = "2.5.29.17";
+    private static final String SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+    private static final String CLIENT_AUTH = "1.3.6.1.5.5.7.3.2";
+
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'")
+        .withZone(ZoneOffset.UTC);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private CertificateGenerator() {
+    }
+
+    /**
+     * A generated certificate with its key pair and the chain up to, and including, its root.
+     */
+    static final class Issued {
+
+        final KeyPair keyPair;
+        final X509Certificate certificate;
+        final X509Certificate[] chain;
+
+        private Issued(final KeyPair keyPair, final X509Certificate certificate, final X509Certificate[] chain) {
+            this.keyPair = keyPair;
+            this.certificate = certificate;
+            this.chain = chain;
+        }
+    }
+
+    static Issued ca(final String commonName) throws GeneralSecurityException {
+        final KeyPair keyPair = keyPair();
+        final Instant now = Instant.now();
+        final X509Certificate certificate = sign(name(commonName), keyPair, name(commonName), keyPair, true,
+            now.minus(Duration.ofHours(1)), now.plus(Duration.ofDays(3650)));
+        return new Issued(keyPair, certificate, new X509Certificate[]{certificate});
+    }
+
+    static Issued intermediate(final String commonName, final Issued issuer) throws GeneralSecurityException {
+        return issue(commonName, issuer, true, Duration.ofDays(1825));
+    }
+
+    static Issued leaf(final String commonName, final Issued issuer, final String... dnsNames) throws GeneralSecurityException {
+        return issue(commonName, issuer, false, Duration.ofDays(30), dnsNames);
+    }
+
+    /**
+     * Issues a leaf certificate valid from {@code notBefore} to {@code notAfter}, e.g. an expired certificate or a
+     * renewal that is not valid yet.
+     */
+    static Issued leaf(final String commonName, final Issued issuer, final Instant notBefore, final Instant notAfter,
+                       final String... dnsNames) throws GeneralSecurityException {
+        return issue(commonName, issuer, false, notBefore, notAfter, dnsNames);
+    }
+
+    /**
+     * Issues a CRL of the issuer listing the given serial numbers as revoked.
+     *
+     * @return the DER encoding of the CRL
+     */
+    static byte[] crl(final Issued issuer, final BigInteger... revokedSerials) throws GeneralSecurityException {
+        final Instant now = Instant.now();
+        final byte[][] entries = new byte[revokedSerials.length][];
+        for (int i = 0; i < revokedSerials.length; i++) {
+            entries[i] = sequence(integer(revokedSerials[i]), time(now.minus(Duration.ofHours(1))));
+        }
+        final byte[] algorithm = sequence(oid(EC_WITH_SHA256));
+        final byte[] tbs = revokedSerials.length > 0
+            ? sequence(integer(BigInteger.ONE), algorithm, issuer.certificate.getSubjectX500Principal().getEncoded(),
+            time(now.minus(Duration.ofHours(1))), time(now.plus(Duration.ofDays(7))), sequence(entries))
+            : sequence(integer(BigInteger.ONE), algorithm, issuer.certificate.getSubjectX500Principal().getEncoded(),
+            time(now.minus(Duration.ofHours(1))), time(now.plus(Duration.ofDays(7))));
+        final Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(issuer.keyPair.getPrivate());
+        signature.update(tbs);
+        return sequence(tbs, algorithm, bitString(signature.sign()));
+    }
+
+    /**
+     * Encodes certificates as a PEM bundle.
+     */
+    static String pem(final X509Certificate... certificates) throws GeneralSecurityException {
+        final StringBuilder pem = new StringBuilder();
+        for (final X509Certificate certificate : certificates) {
+            pem.append("-----BEGIN CERTIFICATE-----\n")
+                .append(Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(certificate.getEncoded()))
+                .append("\n-----END CERTIFICATE-----\n");
+        }
+        return pem.toString();
+    }
+
+    static KeyStore trustStore(final X509Certificate... anchors) throws GeneralSecurityException {
+        final KeyStore keyStore = emptyKeyStore();
+        for (int i = 0; i < anchors.length; i++) {
+            keyStore.setCertificateEntry("anchor-" + i, anchors[i]);
+        }
+        return keyStore;
+    }
+
+    static KeyStore keyStore(final char[] password, final Issued... entries) throws GeneralSecurityException {
+        final KeyStore keyStore = emptyKeyStore();
+        for (int i = 0; i < entries.length; i++) {
+            keyStore.setKeyEntry("key-" + i, entries[i].keyPair.getPrivate(), password, entries[i].chain);
+        }
+        return keyStore;
+    }
+
+    private static KeyStore emptyKeyStore() throws GeneralSecurityException {
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try {
+            keyStore.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        return keyStore;
+    }
+
+    private static Issued issue(final String commonName, final Issued issuer, final boolean ca, final Duration validity,
+                                final String... dnsNames) throws GeneralSecurityException {
+        final Instant now = Instant.now();
+        return issue(commonName, issuer, ca, now.minus(Duration.ofHours(1)), now.plus(validity), dnsNames);
+    }
+
+    private static Issued issue(final String commonName, final Issued issuer, final boolean ca, final Instant notBefore,
+                                final Instant notAfter, final String... dnsNames) throws GeneralSecurityException {
+        final KeyPair keyPair = keyPair();
+        final X509Certificate certificate = sign(name(commonName), keyPair,
+            issuer.certificate.getSubjectX500Principal().getEncoded(), issuer.keyPair, ca, notBefore, notAfter, dnsNames);
+        final X509Certificate[] chain = new X509Certificate[issuer.chain.length + 1];
+        chain[0] = certificate;
+        System.arraycopy(issuer.chain, 0, chain, 1, issuer.chain.length);
+        return new Issued(keyPair, certificate, chain);
+    }
+
+    private static KeyPair keyPair() throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"), RANDOM);
+        return generator.generateKeyPair();
+    }
+
+    private static X509Certificate sign(final byte[] subject, final KeyPair subjectKey, final byte[] issuer,
+                                        final KeyPair issuerKey, final boolean ca, final Instant notBefore,
+                                        final Instant notAfter, final String... dnsNames) throws GeneralSecurityException {
+        final byte[] algorithm = sequence(oid(EC_WITH_SHA256));
+        final byte[] extensions = extensions(subjectKey, issuerKey, ca, dnsNames);
+        final byte[] tbs = sequence(
+            tlv(0xA0, integer(BigInteger.valueOf(2))),
+            integer(new BigInteger(64, RANDOM).add(BigInteger.ONE)),
+            algorithm,
+            issuer,
+            sequence(time(notBefore), time(notAfter)),
+            subject,
+            subjectKey.getPublic().getEncoded(),
+            tlv(0xA3, extensions));
+        final Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(issuerKey.getPrivate());
+        signature.update(tbs);
+        final byte[] encoded = sequence(tbs, algorithm, bitString(signature.sign()));
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(encoded));
+    }
+
+    private static byte[] extensions(final KeyPair subjectKey, final KeyPair issuerKey, final boolean ca,
+                                     final String... dnsNames) throws GeneralSecurityException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, extension(BASIC_CONSTRAINTS, true, ca ? sequence(tlv(0x01, new byte[]{(byte) 0xFF})) : sequence()));
+        write(out, extension(KEY_USAGE, true, ca ? new byte[]{0x03, 0x02, 0x01, 0x06} : new byte[]{0x03, 0x02, 0x07, (byte) 0x80}));
+        write(out, extension(X509Extensions.SUBJECT_KEY_IDENTIFIER, false, tlv(0x04, keyIdentifier(subjectKey))));
+        write(out, extension(X509Extensions.AUTHORITY_KEY_IDENTIFIER, false, sequence(tlv(0x80, keyIdentifier(issuerKey)))));
+        if (!ca) {
+            write(out, extension(EXTENDED_KEY_USAGE, false, sequence(oid(SERVER_AUTH), oid(CLIENT_AUTH))));
+        }
+        if (dnsNames.length > 0) {
+            final byte[][] names = new byte[dnsNames.length][];
+            for (int i = 0; i < dnsNames.length; i++) {
+                names[i] = tlv(0x82, dnsNames[i].getBytes(StandardCharsets.US_ASCII));
+            }
+            write(out, extension(SUBJECT_ALTERNATIVE_NAME, false, sequence(names)));
+        }
+        return tlv(0x30, out.toByteArray());
+    }
+
+    private static byte[] extension(final String oid, final boolean critical, final byte[] value) {
+        return critical
+            ? sequence(oid(oid), tlv(0x01, new byte[]{(byte) 0xFF}), tlv(0x04, value))
+            : sequence(oid(oid), tlv(0x04, value));
+    }
+
+    private static byte[] keyIdentifier(final KeyPair keyPair) throws GeneralSecurityException {
+        return Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(keyPair.getPublic().getEncoded()), 20);
+    }
+
+    private static byte[] name(final String commonName) {
+        return sequence(tlv(0x31, sequence(oid(COMMON_NAME), tlv(0x0C, commonName.getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    private static byte[] time(final Instant instant) {
+        return tlv(0x17, UTC_TIME.format(instant).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] integer(final BigInteger value) {
+        return tlv(0x02, value.toByteArray());
+    }
+
+    private static byte[] bitString(final byte[] bits) {
+        final byte[] content = new byte[bits.length + 1];
+        System.arraycopy(bits, 0, content, 1, bits.length);
+        return tlv(0x03, content);
+    }
+
+    private static byte[] oid(final String oid) {
+        final String[] arcs = oid.split("\\.");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(arcs[0]) * 40 + Integer.parseInt(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            final long arc = Long.parseLong(arcs[i]);
+            int shift = 63 - Long.numberOfLeadingZeros(arc | 1);
+            shift -= shift % 7;
+            for (; shift > 0; shift -= 7) {
+                out.write((int) ((arc >>> shift) & 0x7F) | 0x80);
+            }
+            out.write((int) (arc & 0x7F));
+        }
+        return tlv(0x06, out.toByteArray());
+    }
+
+    private static byte[] sequence(final byte[]... elements) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final byte[] element : elements) {
+            write(out, element);
+        }
+        return tlv(0x30, out.toByteArray());
+    }
+
+    private static byte[] tlv(final int tag, final byte[] content) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 6);
+        out.write(tag);
+        final int length = content.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length < 0x100) {
+            out.write(0x81);
+            out.write(length);
+        } else if (length < 0x10000) {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length);
+        } else {
+            out.write(0x83);
+            out.write(length >> 16);
+            out.write(length >> 8);
+            out.write(length);
+        }
+        write(out, content);
+        return out.toByteArray();
+    }
+
+    private static void write(final ByteArrayOutputStream out, final byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+}